@@ -0,0 +1,33 @@
+//Compares the heap retained by a parsed SimpleNode tree against the FlatTree the parser builds of the same programme.
+//Both are parsed on a stream that is dropped afterwards so only what the tree references stays reachable.
+//Usage: java AstFootprint [functions...], each size is a generated programme with that many functions
+public class AstFootprint {
+
+    public static void main(String[] args) throws ParseException {
+        String[] sizes = args.length > 0 ? args : new String[]{"100", "1000", "5000"};
+        System.out.println(String.format("%10s %10s %10s %14s %14s %8s", "functions", "chars", "nodes", "SimpleNode B", "FlatTree B", "ratio"));
+        for (String size : sizes) {
+            String source = ProgramGenerator.generate(Integer.parseInt(size));
+
+            long before = usedHeap();
+            SimpleNode root = CCALParser.parseNodes(source);
+            long pointerTree = usedHeap() - before;
+            root = null;
+
+            before = usedHeap();
+            FlatTree flat = CCALParser.parse(source);
+            long flatTree = usedHeap() - before;
+
+            System.out.println(String.format("%10s %10d %10d %14d %14d %7.1fx", size, source.length(), flat.size(),
+                    pointerTree, flatTree, (double) pointerTree / flatTree));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
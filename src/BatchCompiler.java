@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+//Runs parse -> Visitor -> IrBuilder -> passes over many .ccal files inside one JVM
+public class BatchCompiler {
+
+    private static final String EXTENSION = ".ccal";
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean checkOnly = false;
+        ValueTracking tracking = ValueTracking.FIRST;
+        boolean parallelFunctions = false;
+        List<String> pipeline = PassManager.O0;
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            List<String> picked = PassManager.pipeline(args[i], i + 1 < args.length ? args[i + 1] : null);
+            if (picked != null) {
+                pipeline = picked;
+                if (args[i].equals("-passes")) {
+                    i++;
+                }
+            } else if (args[i].equals("-j") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-check")) {
+                checkOnly = true;
+            } else if (args[i].equals("-history")) {
+                tracking = ValueTracking.HISTORY;
+            } else if (args[i].equals("-functions")) {
+                parallelFunctions = true;
+            } else {
+                patterns.add(args[i]);
+            }
+        }
+        PassManager passes = new PassManager(NullSink.INSTANCE);
+        String unknown = passes.unknownPass(pipeline);
+        if (unknown != null) {
+            System.out.println("BatchCompiler: Unknown pass \"" + unknown + "\", passes are " + String.join(", ", passes.getNames()));
+            return;
+        }
+        if (patterns.isEmpty()) {
+            System.out.println("BatchCompiler: You must use the following:");
+            System.out.println("         java BatchCompiler [-j threads] [-check] [-history] [-functions] [-O0 | -O1 | -passes name,...] (file | directory | glob)...");
+            System.out.println("-check only reports the summary, per file reports are never formatted and nothing is lowered without -O1 or -passes");
+            System.out.println("-history keeps every assigned value in the symbol table instead of only the first");
+            System.out.println("-functions also checks the function bodies of each file concurrently");
+            System.out.println("-O0 (the default) runs no passes over the three address code, -O1 runs " + String.join(", ", PassManager.O1));
+            System.out.println("-passes runs the listed passes, which can be " + String.join(", ", passes.getNames()));
+            return;
+        }
+
+        List<File> files;
+        try {
+            files = collectFiles(patterns);
+        } catch (IOException e) {
+            System.out.println("BatchCompiler: Could not list the input files. " + e.getMessage());
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ReportSink out = new WriterSink(System.out);
+        List<CompileResult> results;
+        try {
+            results = run(files, pool, out, checkOnly, tracking, parallelFunctions, pipeline);
+        } finally {
+            pool.shutdown();
+            out.flush();
+        }
+        for (CompileResult result : results) {
+            if (result.failed()) {
+                System.exit(1);
+            }
+        }
+    }
+
+    //Compile every file on the pool and print the results in input order followed by a summary
+    static List<CompileResult> run(List<File> files, ForkJoinPool pool, ReportSink out, boolean checkOnly, ValueTracking tracking,
+                                  boolean parallelFunctions, List<String> pipeline) {
+        final ExecutorService functionPool = parallelFunctions ? pool : null;
+        long start = System.nanoTime();
+        List<ReportSink> sinks = new ArrayList<>();
+        List<Callable<CompileResult>> tasks = new ArrayList<>();
+        for (final File file : files) {
+            final ReportSink sink = checkOnly ? NullSink.INSTANCE : new MemorySink();
+            sinks.add(sink);
+            tasks.add(() -> compile(file, sink, tracking, functionPool, pipeline));
+        }
+
+        List<CompileResult> results = new ArrayList<>();
+        List<Future<CompileResult>> futures = pool.invokeAll(tasks);
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                //invokeAll has waited for every compile, the interrupt only stopped get() handing over a finished
+                //result: take it again so every file is in the summary, and restore the flag once they all are
+                interrupted = true;
+                i--;
+            } catch (ExecutionException e) {
+                //eg. a StackOverflowError on deeply nested source, only this file's result is lost
+                CompileResult result = new CompileResult(files.get(i), sinks.get(i));
+                result.error = String.valueOf(e.getCause());
+                if (result.output.isEnabled()) {
+                    result.output.println("CCALParser: Compiling " + files.get(i).getPath() + " failed. " + result.error);
+                }
+                results.add(result);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        long wallTime = System.nanoTime() - start;
+
+        //Everything has finished by now so the order only depends on the order of the inputs
+        for (CompileResult result : results) {
+            if (result.output.isEnabled()) {
+                out.print(result.output.toString());
+            }
+        }
+        printSummary(results, wallTime, out);
+        return results;
+    }
+
+    //Compile a single file, its report goes to its own sink so it can be replayed in order later
+    //functionPool is where function bodies are checked, null checks them one after the other
+    //pipeline is run over the three address code of a file that checks without errors
+    static CompileResult compile(File file, ReportSink out, ValueTracking tracking, ExecutorService functionPool,
+                                 List<String> pipeline) {
+        CompileResult result = new CompileResult(file, out);
+        if (out.isEnabled()) {
+            out.println("CCALParser: Reading the file " + file.getPath() + " ...");
+        }
+
+        long start = System.nanoTime();
+        FlatTree tree = null;
+        try {
+            tree = CCALParser.parse(file);
+        } catch (IOException e) {
+            if (out.isEnabled()) {
+                out.println("CCALParser: The file " + file.getPath() + " could not be read.");
+            }
+            result.parseFailed = true;
+        } catch (ParseException e) {
+            if (out.isEnabled()) {
+                out.println("CCALParser: There was an error during the parse.");
+                out.println(e.getMessage());
+            }
+            result.parseFailed = true;
+        } catch (TokenMgrError e) {
+            if (out.isEnabled()) {
+                out.println("CCALParser: There was an error.");
+                out.println(e.getMessage());
+            }
+            result.parseFailed = true;
+        }
+        result.parseTime = System.nanoTime() - start;
+
+        if (tree != null) {
+            out.println("---- Abstract Syntax Tree ----");
+            tree.dump(out);
+            out.println("---- End Syntax Tree ----");
+            out.println();
+
+            start = System.nanoTime();
+            try {
+                Visitor visitor = new Visitor(out, tracking, functionPool);
+                visitor.check(tree);
+                result.semanticErrors = visitor.getErrorCount();
+            } catch (RuntimeException e) {
+                if (out.isEnabled()) {
+                    out.println("CCALParser: The checker failed on " + file.getPath() + ". " + e);
+                }
+                result.checkerFailed = true;
+            }
+            result.checkTime = System.nanoTime() - start;
+
+            //a check only run with no passes to time has no use for the three address code
+            if (!result.checkerFailed && result.semanticErrors == 0 && (out.isEnabled() || !pipeline.isEmpty())) {
+                start = System.nanoTime();
+                try {
+                    IrProgram program = CCALParser.lower(tree, pipeline, out);
+                    if (out.isEnabled()) {
+                        new IrPrinter(out).print(program);
+                    }
+                } catch (RuntimeException e) {
+                    if (out.isEnabled()) {
+                        out.println("CCALParser: Lowering failed on " + file.getPath() + ". " + e);
+                    }
+                    result.lowerFailed = true;
+                }
+                result.lowerTime = System.nanoTime() - start;
+            }
+            if (!result.checkerFailed && !result.lowerFailed) {
+                out.println("CCALParser: The input was read successfully.");
+            }
+        }
+
+        return result;
+    }
+
+    private static void printSummary(List<CompileResult> results, long wallTime, ReportSink out) {
+        int parseFailures = 0;
+        int checkerFailures = 0;
+        int lowerFailures = 0;
+        int crashes = 0;
+        int semanticErrors = 0;
+        int filesWithErrors = 0;
+        long parseTime = 0;
+        long checkTime = 0;
+        long lowerTime = 0;
+        for (CompileResult result : results) {
+            if (result.parseFailed) {
+                parseFailures++;
+            }
+            if (result.checkerFailed) {
+                checkerFailures++;
+            }
+            if (result.lowerFailed) {
+                lowerFailures++;
+            }
+            if (result.error != null) {
+                crashes++;
+            }
+            if (result.semanticErrors > 0) {
+                filesWithErrors++;
+            }
+            semanticErrors += result.semanticErrors;
+            parseTime += result.parseTime;
+            checkTime += result.checkTime;
+            lowerTime += result.lowerTime;
+        }
+        out.println("---- Batch Summary ----");
+        out.println("Files compiled: " + results.size());
+        out.println("Parse errors: " + parseFailures);
+        out.println("Checker failures: " + checkerFailures);
+        out.println("Lowering failures: " + lowerFailures);
+        out.println("Crashed: " + crashes);
+        for (CompileResult result : results) {
+            if (result.error != null) {
+                out.println("  " + result.file.getPath() + ": " + result.error);
+            }
+        }
+        out.println("Semantic errors: " + semanticErrors + " in " + filesWithErrors + " file(s)");
+        out.println("Parse time: " + millis(parseTime) + " ms (summed over files)");
+        out.println("Check time: " + millis(checkTime) + " ms (summed over files)");
+        out.println("Lower time: " + millis(lowerTime) + " ms (summed over files, passes included)");
+        out.println("Wall time: " + millis(wallTime) + " ms");
+        out.println("---- End Batch Summary ----");
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    //Expand directories (recursively) and globs into a sorted list of .ccal files, keeping the argument order
+    static List<File> collectFiles(List<String> patterns) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String pattern : patterns) {
+            List<File> matched = new ArrayList<>();
+            if (isGlob(pattern)) {
+                matchGlob(pattern, matched);
+            } else {
+                Path path = Paths.get(pattern);
+                if (Files.isDirectory(path)) {
+                    walk(path, path.getFileSystem().getPathMatcher("glob:**" + EXTENSION), matched);
+                } else {
+                    matched.add(path.toFile());
+                }
+            }
+            Collections.sort(matched);
+            files.addAll(matched);
+        }
+        return files;
+    }
+
+    private static boolean isGlob(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('[') >= 0 || pattern.indexOf('{') >= 0;
+    }
+
+    //Walk from the deepest directory without wildcards and match the whole pattern against what we find
+    private static void matchGlob(String pattern, List<File> matched) throws IOException {
+        String normalised = pattern.replace(File.separatorChar, '/');
+        int wildcard = normalised.length();
+        for (char c : new char[]{'*', '?', '[', '{'}) {
+            int index = normalised.indexOf(c);
+            if (index >= 0 && index < wildcard) {
+                wildcard = index;
+            }
+        }
+        int slash = normalised.lastIndexOf('/', wildcard);
+        Path root = slash < 0 ? Paths.get(".") : Paths.get(slash == 0 ? "/" : normalised.substring(0, slash));
+        String relativePattern = slash < 0 ? normalised : normalised.substring(slash + 1);
+        PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + relativePattern);
+        if (Files.isDirectory(root)) {
+            walk(root, matcher, matched);
+        }
+    }
+
+    private static void walk(final Path root, final PathMatcher matcher, final List<File> matched) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(root.relativize(file))) {
+                    matched.add(file.normalize().toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static class CompileResult {
+        final File file;
+        final ReportSink output;
+        boolean parseFailed;
+        boolean checkerFailed;
+        boolean lowerFailed;
+        String error; //what the compile threw, null if it didn't
+        int semanticErrors;
+        long parseTime;
+        long checkTime;
+        long lowerTime;
+
+        CompileResult(File file, ReportSink output) {
+            this.file = file;
+            this.output = output;
+        }
+
+        boolean failed() {
+            return parseFailed || checkerFailed || lowerFailed || error != null;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.util.Arrays;
+
+//A programme compiled for RegisterVm. Every instruction is four ints in one int[] for the whole programme: the
+//opcode, with flags for sources that are immediates, then a, b and c. Each function's frame is a window of
+//registers holding its parameters, then its locals, then its temps, then two scratch registers; operands are
+//register numbers within the window. Globals aren't registers, they are read into a scratch register with
+//LOAD_GLOBAL and written with STORE_GLOBAL. Jumps and calls hold the position in the int[] they go to.
+//The code has to be out of SSA form.
+final class Bytecode {
+
+    static final int WIDTH = 4;
+
+    //Set on the opcode when b or c is the value itself rather than a register
+    static final int IMMEDIATE_B = 1 << 8;
+    static final int IMMEDIATE_C = 1 << 9;
+    static final int OPCODE = 0xFF;
+
+    static final int MOVE = 0; //a = b
+    static final int NEG = 1; //a = -b
+    static final int NOT = 2; //a = b == 0
+    static final int ADD = 3; //a = b + c, and so on to OR
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int EQ = 6;
+    static final int NE = 7;
+    static final int LT = 8;
+    static final int LE = 9;
+    static final int GT = 10;
+    static final int GE = 11;
+    static final int AND = 12;
+    static final int OR = 13;
+    static final int JUMP = 14; //go to a
+    static final int JUMP_IF_TRUE = 15; //go to a if b isn't 0
+    static final int JUMP_IF_FALSE = 16; //go to a if b is 0
+    static final int LOAD_GLOBAL = 17; //a = global b
+    static final int STORE_GLOBAL = 18; //global a = b
+    static final int ARG = 19; //parameter a of the next call = b
+    static final int CALL = 20; //a = call of function c starting at b, a is -1 to drop the result
+    static final int RETURN = 21; //return b
+    static final int RETURN_NOTHING = 22;
+
+    private static final String[] NAMES = {"move", "neg", "not", "add", "sub", "mul", "eq", "ne", "lt", "le", "gt", "ge",
+            "and", "or", "jump", "jumpIfTrue", "jumpIfFalse", "loadGlobal", "storeGlobal", "arg", "call", "return", "return"};
+
+    private final IrProgram program;
+    private int[] code = new int[64];
+    private int size = 0;
+    private final int[] entries; //first instruction of each function
+    private final int[] registers; //frame size of each function
+    private final int[] reaches; //frame size plus room for the arguments of its calls
+    private final int[] parameters;
+    private int[] mainSlots; //register of each of main's locals by symbol id, -1 for other symbols
+
+    private Bytecode(IrProgram program) {
+        this.program = program;
+        int count = program.getFunctions().size();
+        entries = new int[count];
+        registers = new int[count];
+        reaches = new int[count];
+        parameters = new int[count];
+    }
+
+    static Bytecode compile(IrProgram program) {
+        Bytecode bytecode = new Bytecode(program);
+        int count = program.getFunctions().size();
+        for (int f = 0; f < count; f++) {
+            IrFunction function = program.function(f);
+            bytecode.parameters[f] = function.getParams().length;
+            bytecode.registers[f] = function.getParams().length + function.getLocals().length + function.tempCount() + 2;
+        }
+        int[][] calls = new int[count][];
+        for (int f = 0; f < count; f++) {
+            calls[f] = bytecode.compile(f);
+        }
+        //now every entry is known
+        for (int f = 0; f < count; f++) {
+            int arguments = 0;
+            for (int call : calls[f]) {
+                int callee = bytecode.code[call + 3];
+                bytecode.code[call + 2] = bytecode.entries[callee];
+                arguments = Math.max(arguments, bytecode.parameters[callee]);
+            }
+            bytecode.reaches[f] = bytecode.registers[f] + arguments;
+        }
+        bytecode.code = Arrays.copyOf(bytecode.code, bytecode.size);
+        return bytecode;
+    }
+
+    //Emit the function, returns where its CALLs are so their entries can be filled in
+    private int[] compile(int f) {
+        IrFunction function = program.function(f);
+        int[] slots = new int[program.symbolCount()];
+        Arrays.fill(slots, -1);
+        int register = 0;
+        for (int id : function.getParams()) {
+            slots[id] = register++;
+        }
+        for (int id : function.getLocals()) {
+            slots[id] = register++;
+        }
+        if (function.isMain()) {
+            mainSlots = slots;
+        }
+        int temps = register;
+        int scratch = registers[f] - 2;
+
+        entries[f] = size;
+        int[] starts = new int[function.size() + 1]; //first instruction of each IR instruction
+        int[] labels = new int[function.labelCount()];
+        int[] jumps = new int[4]; //jumps to patch, with the IR label operand they go to
+        long[] targets = new long[4];
+        int jumpCount = 0;
+        int[] calls = new int[4];
+        int callCount = 0;
+        int arguments = 0;
+        for (int i = 0; i < function.size(); i++) {
+            starts[i] = size;
+            Opcode opcode = function.opcode(i);
+            long dest = function.dest(i);
+            long left = function.left(i);
+            long right = function.right(i);
+            switch (opcode) {
+                case LABEL:
+                    labels[Operand.value(left)] = size;
+                    continue;
+                case PHI:
+                    throw new IllegalArgumentException(function.getName() + " is in SSA form");
+                case JUMP:
+                case JUMP_IF_TRUE:
+                case JUMP_IF_FALSE:
+                    long label = opcode == Opcode.JUMP ? left : right;
+                    int condition = opcode == Opcode.JUMP ? 0 : source(left, temps, slots, scratch);
+                    if (jumpCount == jumps.length) {
+                        jumps = Arrays.copyOf(jumps, jumpCount * 2);
+                        targets = Arrays.copyOf(targets, jumpCount * 2);
+                    }
+                    jumps[jumpCount] = size;
+                    targets[jumpCount++] = label;
+                    int jump = opcode == Opcode.JUMP ? JUMP : opcode == Opcode.JUMP_IF_TRUE ? JUMP_IF_TRUE : JUMP_IF_FALSE;
+                    emit(jump | (opcode == Opcode.JUMP ? 0 : flags(left, 0)), 0, condition, 0);
+                    continue;
+                case ARG:
+                    int argument = source(left, temps, slots, scratch);
+                    emit(ARG | flags(left, 0), arguments++, argument, 0);
+                    continue;
+                case CALL:
+                    if (callCount == calls.length) {
+                        calls = Arrays.copyOf(calls, callCount * 2);
+                    }
+                    calls[callCount++] = size;
+                    int result = Operand.isAbsent(dest) ? -1 : destination(dest, temps, slots, scratch);
+                    emit(CALL, result, 0, Operand.value(left));
+                    store(dest, slots, scratch);
+                    arguments = 0;
+                    continue;
+                case RETURN:
+                    if (Operand.isAbsent(left)) {
+                        emit(RETURN_NOTHING, 0, 0, 0);
+                    } else {
+                        int value = source(left, temps, slots, scratch);
+                        emit(RETURN | flags(left, 0), 0, value, 0);
+                    }
+                    continue;
+                default:
+                    if (opcode == Opcode.COPY && isGlobal(dest)) {
+                        int value = source(left, temps, slots, scratch);
+                        emit(STORE_GLOBAL | flags(left, 0), Operand.value(dest), value, 0);
+                        continue;
+                    }
+                    int b = source(left, temps, slots, scratch);
+                    int c = opcode.isBinary() ? source(right, temps, slots, scratch + 1) : 0;
+                    emit(operation(opcode) | flags(left, opcode.isBinary() ? right : 0), destination(dest, temps, slots, scratch), b, c);
+                    store(dest, slots, scratch);
+            }
+        }
+        starts[function.size()] = size;
+        for (int k = 0; k < jumpCount; k++) {
+            long label = targets[k];
+            code[jumps[k] + 1] = Operand.kind(label) == Operand.TARGET ? starts[Operand.value(label)] : labels[Operand.value(label)];
+        }
+        return Arrays.copyOf(calls, callCount);
+    }
+
+    private static int operation(Opcode opcode) {
+        switch (opcode) {
+            case COPY:
+                return MOVE;
+            case NEG:
+                return NEG;
+            case NOT:
+                return NOT;
+            default:
+                return ADD + opcode.ordinal() - Opcode.ADD.ordinal();
+        }
+    }
+
+    private boolean isGlobal(long operand) {
+        return Operand.kind(operand) == Operand.SYMBOL && program.isGlobal(Operand.value(operand));
+    }
+
+    private static int flags(long b, long c) {
+        return (Operand.isConstant(b) ? IMMEDIATE_B : 0) | (Operand.isConstant(c) ? IMMEDIATE_C : 0);
+    }
+
+    //The register or immediate of a source, a global is loaded into the scratch register first
+    private int source(long operand, int temps, int[] slots, int scratch) {
+        switch (Operand.kind(operand)) {
+            case Operand.TEMP:
+                return temps + Operand.value(operand);
+            case Operand.INT:
+            case Operand.BOOL:
+                return Operand.value(operand);
+            case Operand.SYMBOL:
+                if (isGlobal(operand)) {
+                    emit(LOAD_GLOBAL, scratch, Operand.value(operand), 0);
+                    return scratch;
+                }
+                return slots[Operand.value(operand)];
+            default:
+                throw new IllegalArgumentException("Can't compile operand kind " + Operand.kind(operand));
+        }
+    }
+
+    //The register a result goes to, the scratch register for a global which store() then writes
+    private int destination(long operand, int temps, int[] slots, int scratch) {
+        if (Operand.kind(operand) == Operand.TEMP) {
+            return temps + Operand.value(operand);
+        }
+        return isGlobal(operand) ? scratch : slots[Operand.value(operand)];
+    }
+
+    private void store(long dest, int[] slots, int scratch) {
+        if (isGlobal(dest)) {
+            emit(STORE_GLOBAL, Operand.value(dest), scratch, 0);
+        }
+    }
+
+    private void emit(int opcode, int a, int b, int c) {
+        if (size + WIDTH > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[size++] = opcode;
+        code[size++] = a;
+        code[size++] = b;
+        code[size++] = c;
+    }
+
+    IrProgram getProgram() {
+        return program;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    //Index of the first instruction of the function
+    int entry(int function) {
+        return entries[function];
+    }
+
+    //Registers the function's frame needs
+    int registers(int function) {
+        return registers[function];
+    }
+
+    //Registers from the start of the function's frame its calls' arguments can reach
+    int reach(int function) {
+        return reaches[function];
+    }
+
+    int parameters(int function) {
+        return parameters[function];
+    }
+
+    //Register of one of main's locals, -1 for other symbols
+    int mainSlot(int symbol) {
+        return mainSlots[symbol];
+    }
+
+    //Instructions, not ints
+    int size() {
+        return code.length / WIDTH;
+    }
+
+    //One line per instruction, for looking at what the compiler did
+    void print(ReportSink out) {
+        for (int pc = 0; pc < code.length; pc += WIDTH) {
+            int opcode = code[pc];
+            StringBuilder line = new StringBuilder(String.format("%6d %-12s", pc, NAMES[opcode & OPCODE]));
+            line.append(' ').append(code[pc + 1]).append(", ").append((opcode & IMMEDIATE_B) != 0 ? "#" : "r")
+                    .append(code[pc + 2]).append(", ").append((opcode & IMMEDIATE_C) != 0 ? "#" : "r").append(code[pc + 3]);
+            out.println(line.toString());
+        }
+    }
+}
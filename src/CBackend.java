@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+//Emits a programme as portable C99 to build ahead of time. Every function becomes a static C function of int32_t
+//parameters returning int32_t, main becomes ccal_main, and the C main runs it and prints how the run ended and then
+//name=value for each global and each of main's locals, in symbol order. Locals and temps are C locals starting at 0,
+//booleans are 0 or 1, globals are statics, and global constants main sets to a literal before anything else are
+//static const. Arithmetic goes through uint32_t and back so it wraps like IrInterpreter's instead of overflowing,
+//and a depth counter stops runs that go deeper than IrInterpreter allows. Jumps are gotos.
+//The code has to be out of SSA form.
+//CBackendCheck builds programmes with gcc and checks they run like IrInterpreter.
+public class CBackend {
+
+    private static final String PRELUDE = String.join("\n",
+            "#include <stdint.h>",
+            "#include <stdio.h>",
+            "#include <stdlib.h>",
+            "",
+            "static int32_t ccal_wrap(uint32_t value) {",
+            "    return value <= INT32_MAX ? (int32_t) value : (int32_t) (value - (uint32_t) INT32_MIN) + INT32_MIN;",
+            "}",
+            "",
+            "static int32_t ccal_add(int32_t a, int32_t b) { return ccal_wrap((uint32_t) a + (uint32_t) b); }",
+            "static int32_t ccal_sub(int32_t a, int32_t b) { return ccal_wrap((uint32_t) a - (uint32_t) b); }",
+            "static int32_t ccal_mul(int32_t a, int32_t b) { return ccal_wrap((uint32_t) a * (uint32_t) b); }",
+            "static int32_t ccal_neg(int32_t a) { return ccal_wrap(0u - (uint32_t) a); }",
+            "",
+            "static long ccal_depth = 1;",
+            "",
+            "static void ccal_enter(void) {",
+            "    if (++ccal_depth > " + IrInterpreter.MAX_DEPTH + ") {",
+            "        printf(\"too_deep\\n\");",
+            "        exit(0);",
+            "    }",
+            "}",
+            "", "");
+
+    private final IrProgram program;
+    private final StringBuilder c = new StringBuilder(PRELUDE);
+    private final boolean[] constant; //global constants emitted as static const
+    private final int[] initialisers; //index in main of the COPY giving each its value
+
+    private CBackend(IrProgram program) {
+        this.program = program;
+        constant = new boolean[program.symbolCount()];
+        initialisers = new int[program.symbolCount()];
+        Arrays.fill(initialisers, -1);
+    }
+
+    static String emit(IrProgram program) {
+        return new CBackend(program).emit();
+    }
+
+    private String emit() {
+        findConstants();
+        boolean globals = false;
+        for (int id = 0; id < program.symbolCount(); id++) {
+            if (program.isGlobal(id) && program.symbolKind(id) != SymbolType.FUNC) {
+                globals = true;
+                if (constant[id]) {
+                    c.append("static const int32_t ").append(name(Operand.symbol(id))).append(" = ")
+                            .append(literal(Operand.value(program.main().left(initialisers[id])))).append(";\n");
+                } else {
+                    c.append("static int32_t ").append(name(Operand.symbol(id))).append(";\n");
+                }
+            }
+        }
+        if (globals) {
+            c.append('\n');
+        }
+        for (IrFunction function : program.getFunctions()) {
+            c.append(signature(function)).append(";\n");
+        }
+        for (IrFunction function : program.getFunctions()) {
+            c.append('\n');
+            function(function);
+        }
+        c.append("\nint main(void) {\n    ccal_main();\n    return 0;\n}\n");
+        return c.toString();
+    }
+
+    //Global constants main gives a literal before it jumps or calls anywhere, and that nothing else writes
+    private void findConstants() {
+        int[] writes = new int[program.symbolCount()];
+        for (IrFunction function : program.getFunctions()) {
+            for (int i = 0; i < function.size(); i++) {
+                long dest = function.dest(i);
+                if (Operand.kind(dest) == Operand.SYMBOL) {
+                    writes[Operand.value(dest)]++;
+                }
+            }
+        }
+        IrFunction main = program.main();
+        for (int i = 0; i < main.size(); i++) {
+            Opcode opcode = main.opcode(i);
+            if (opcode == Opcode.LABEL || opcode == Opcode.JUMP || opcode == Opcode.JUMP_IF_TRUE
+                    || opcode == Opcode.JUMP_IF_FALSE || opcode == Opcode.CALL || opcode == Opcode.RETURN) {
+                break;
+            }
+            long dest = main.dest(i);
+            if (opcode == Opcode.COPY && Operand.isConstant(main.left(i)) && Operand.kind(dest) == Operand.SYMBOL
+                    && program.isGlobal(Operand.value(dest)) && program.symbolKind(Operand.value(dest)) == SymbolType.CONST
+                    && writes[Operand.value(dest)] == 1) {
+                constant[Operand.value(dest)] = true;
+                initialisers[Operand.value(dest)] = i;
+            }
+        }
+    }
+
+    private String signature(IrFunction function) {
+        if (function.isMain()) {
+            return "static void ccal_main(void)";
+        }
+        StringBuilder signature = new StringBuilder("static int32_t f_").append(identifier(function.getName())).append('(');
+        int[] params = function.getParams();
+        for (int k = 0; k < params.length; k++) {
+            signature.append(k == 0 ? "" : ", ").append("int32_t ").append(name(Operand.symbol(params[k])));
+        }
+        return signature.append(params.length == 0 ? "void)" : ")").toString();
+    }
+
+    private void function(IrFunction function) {
+        c.append(signature(function)).append(" {\n");
+        for (int id : function.getLocals()) {
+            c.append("    int32_t ").append(name(Operand.symbol(id))).append(" = 0;\n");
+        }
+        for (int t = 0; t < function.tempCount(); t++) {
+            c.append("    int32_t t").append(t).append(" = 0;\n");
+        }
+        int arguments = 0;
+        int pending = 0;
+        boolean[] targeted = new boolean[function.size() + 1];
+        for (int i = 0; i < function.size(); i++) {
+            if (function.opcode(i) == Opcode.ARG) {
+                arguments = Math.max(arguments, ++pending);
+            } else if (function.opcode(i) == Opcode.CALL) {
+                pending = 0;
+            }
+            for (long operand : new long[] {function.left(i), function.right(i)}) {
+                if (Operand.kind(operand) == Operand.TARGET) {
+                    targeted[Operand.value(operand)] = true;
+                }
+            }
+        }
+        for (int k = 0; k < arguments; k++) {
+            c.append("    int32_t a").append(k).append(" = 0;\n");
+        }
+        if (!function.isMain()) {
+            c.append("    ccal_enter();\n");
+        }
+
+        pending = 0;
+        for (int i = 0; i < function.size(); i++) {
+            if (targeted[i]) {
+                c.append("I").append(i).append(":;\n");
+            }
+            Opcode opcode = function.opcode(i);
+            long dest = function.dest(i);
+            long left = function.left(i);
+            long right = function.right(i);
+            switch (opcode) {
+                case LABEL:
+                    c.append("L").append(Operand.value(left)).append(":;\n");
+                    continue;
+                case PHI:
+                    throw new IllegalArgumentException(function.getName() + " is in SSA form");
+                case JUMP:
+                    c.append("    goto ").append(label(left)).append(";\n");
+                    continue;
+                case JUMP_IF_TRUE:
+                case JUMP_IF_FALSE:
+                    c.append("    if (").append(opcode == Opcode.JUMP_IF_TRUE ? "" : "!").append(value(left))
+                            .append(") goto ").append(label(right)).append(";\n");
+                    continue;
+                case ARG:
+                    c.append("    a").append(pending++).append(" = ").append(value(left)).append(";\n");
+                    continue;
+                case CALL:
+                    c.append("    ");
+                    if (Operand.isAbsent(dest)) {
+                        c.append("(void) ");
+                    } else {
+                        c.append(name(dest)).append(" = ");
+                    }
+                    c.append("f_").append(identifier(program.function(Operand.value(left)).getName())).append('(');
+                    for (int k = 0; k < pending; k++) {
+                        c.append(k == 0 ? "a" : ", a").append(k);
+                    }
+                    c.append(");\n");
+                    pending = 0;
+                    continue;
+                case RETURN:
+                    if (function.isMain()) {
+                        c.append("    goto end;\n");
+                    } else {
+                        c.append("    ccal_depth--;\n    return ").append(Operand.isAbsent(left) ? "0" : value(left)).append(";\n");
+                    }
+                    continue;
+                default:
+                    if (Operand.kind(dest) == Operand.SYMBOL && constant[Operand.value(dest)]) {
+                        continue;
+                    }
+                    c.append("    ").append(name(dest)).append(" = ").append(expression(opcode, left, right)).append(";\n");
+            }
+        }
+        if (targeted[function.size()]) {
+            c.append("I").append(function.size()).append(":;\n");
+        }
+        if (function.isMain()) {
+            c.append("end:;\n");
+            c.append("    printf(\"finished\\n\");\n");
+            for (int id = 0; id < program.symbolCount(); id++) {
+                if (IrInterpreter.isResult(program, id)) {
+                    c.append("    printf(\"").append(program.symbolName(id)).append("=%ld\\n\", (long) ")
+                            .append(name(Operand.symbol(id))).append(");\n");
+                }
+            }
+        } else {
+            c.append("    ccal_depth--;\n    return 0;\n");
+        }
+        c.append("}\n");
+    }
+
+    private String expression(Opcode opcode, long left, long right) {
+        switch (opcode) {
+            case COPY:
+                return value(left);
+            case NEG:
+                return "ccal_neg(" + value(left) + ")";
+            case NOT:
+                return "!" + value(left);
+            case ADD:
+                return "ccal_add(" + value(left) + ", " + value(right) + ")";
+            case SUB:
+                return "ccal_sub(" + value(left) + ", " + value(right) + ")";
+            case MUL:
+                return "ccal_mul(" + value(left) + ", " + value(right) + ")";
+            case AND:
+                return value(left) + " & " + value(right);
+            case OR:
+                return value(left) + " | " + value(right);
+            case EQ:
+            case NE:
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                return value(left) + " " + opcode.symbol() + " " + value(right);
+            default:
+                throw new IllegalArgumentException("Can't emit " + opcode);
+        }
+    }
+
+    private String value(long operand) {
+        switch (Operand.kind(operand)) {
+            case Operand.INT:
+            case Operand.BOOL:
+                return literal(Operand.value(operand));
+            case Operand.TEMP:
+            case Operand.SYMBOL:
+                return name(operand);
+            default:
+                throw new IllegalArgumentException("Can't emit operand kind " + Operand.kind(operand));
+        }
+    }
+
+    //The smallest int can't be written as a negated literal in C
+    private static String literal(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return "INT32_MIN";
+        }
+        return value < 0 ? "(" + value + ")" : String.valueOf(value);
+    }
+
+    //Names carry the symbol id, so they are unique and can't be C keywords
+    private String name(long operand) {
+        if (Operand.kind(operand) == Operand.TEMP) {
+            return "t" + Operand.value(operand);
+        }
+        int id = Operand.value(operand);
+        return (program.isGlobal(id) ? "g" : "v") + id + "_" + identifier(program.symbolName(id));
+    }
+
+    private static String label(long operand) {
+        return (Operand.kind(operand) == Operand.TARGET ? "I" : "L") + Operand.value(operand);
+    }
+
+    private static String identifier(String name) {
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Builds programmes emitted by CBackend with the system gcc, runs them and checks they end like IrInterpreter's run.
+//Usage: java CBackendCheck [-O1] [-keep] [file...]
+//with no files the test*.ccal files in the working directory and generated workloads are used. -keep leaves the C
+//files behind.
+public class CBackendCheck {
+
+    private static final long BUDGET = 1_000_000_000L;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean optimise = false;
+        boolean keep = false;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("-O1")) {
+                optimise = true;
+            } else if (arg.equals("-keep")) {
+                keep = true;
+            } else if (arg.startsWith("-")) {
+                System.out.println("Usage: java CBackendCheck [-O1] [-keep] [file...]");
+                return;
+            } else {
+                files.add(arg);
+            }
+        }
+
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("100 multiplies by 10000", () -> ProgramGenerator.generateLoops(100, 10000)));
+        generated.add(Workload.generated("1000 functions", () -> ProgramGenerator.generate(1000)));
+        generated.addAll(Workload.random("random", 1, 2000));
+
+        Path directory = Files.createTempDirectory("ccal");
+        int checked = 0;
+        int skipped = 0;
+        int failed = 0;
+        List<Workload> workloads = Workload.select(files, true, generated);
+        for (int i = 0; i < workloads.size(); i++) {
+            String name = workloads.get(i).getName();
+            IrProgram program;
+            try {
+                program = IrDump.lower(workloads.get(i).parse());
+            } catch (ParseException e) {
+                program = null;
+            }
+            if (program == null) {
+                System.out.println(name + ": doesn't parse or has semantic errors, skipped");
+                skipped++;
+                continue;
+            }
+            if (optimise) {
+                program = new PassManager(NullSink.INSTANCE).run(program, PassManager.O1);
+            }
+            long start = System.nanoTime();
+            IrInterpreter.Outcome expected = new IrInterpreter(program, BUDGET).run();
+            long interpreting = System.nanoTime() - start;
+            if (expected.getStatus() == IrInterpreter.Status.OUT_OF_STEPS) {
+                System.out.println(name + ": " + expected.describe(program) + ", skipped");
+                skipped++;
+                continue;
+            }
+
+            Path source = directory.resolve("programme" + i + ".c");
+            Path binary = directory.resolve("programme" + i);
+            Files.write(source, CBackend.emit(program).getBytes(StandardCharsets.UTF_8));
+            start = System.nanoTime();
+            String built = execute(directory, "gcc", "-std=c99", "-pedantic-errors", "-O2", "-o", binary.toString(), source.toString());
+            long building = System.nanoTime() - start;
+            if (built == null) {
+                System.out.println(name + ": gcc failed, see " + source);
+                keep = true;
+                failed++;
+                continue;
+            }
+            start = System.nanoTime();
+            String output = execute(directory, binary.toString());
+            long running = System.nanoTime() - start;
+            IrInterpreter.Outcome outcome = output == null ? null : parseOutput(program, output);
+            if (outcome == null || !outcome.sameAs(expected)) {
+                System.out.println(name + ": the C programme ran it differently, see " + source);
+                System.out.println("  expected " + expected.describe(program));
+                System.out.println("  got      " + (outcome == null ? output : outcome.describe(program)));
+                keep = true;
+                failed++;
+                continue;
+            }
+            System.out.println(String.format("%-28s gcc %9.3f ms, native run %9.3f ms, interpreted %9.3f ms", name,
+                    building / 1e6, running / 1e6, interpreting / 1e6));
+            checked++;
+        }
+        System.out.println(checked + " programmes ran the same compiled with gcc, " + failed + " didn't, " + skipped + " skipped");
+        if (!keep) {
+            File[] written = directory.toFile().listFiles();
+            if (written != null) {
+                for (File file : written) {
+                    Files.delete(file.toPath());
+                }
+            }
+            Files.delete(directory);
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    //What the command wrote, null if it couldn't be run, timed out or failed
+    private static String execute(Path directory, String... command) throws IOException, InterruptedException {
+        Path output = directory.resolve("output");
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output.toFile()).start();
+        } catch (IOException e) {
+            System.out.println("Can't run " + command[0] + ": " + e.getMessage());
+            return null;
+        }
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            System.out.println(command[0] + " took over " + TIMEOUT_SECONDS + " s");
+            return null;
+        }
+        String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+        if (process.exitValue() != 0) {
+            System.out.print(text);
+            return null;
+        }
+        return text;
+    }
+
+    //The status line and then a name=value line for each result, in symbol order; null if it isn't that
+    private static IrInterpreter.Outcome parseOutput(IrProgram program, String output) {
+        String[] lines = output.split("\n");
+        if (lines[0].equals("too_deep")) {
+            return new IrInterpreter.Outcome(IrInterpreter.Status.TOO_DEEP, 0, new int[program.symbolCount()]);
+        }
+        if (!lines[0].equals("finished")) {
+            return null;
+        }
+        int[] values = new int[program.symbolCount()];
+        int line = 1;
+        for (int id = 0; id < values.length; id++) {
+            if (IrInterpreter.isResult(program, id)) {
+                String expected = program.symbolName(id) + "=";
+                if (line == lines.length || !lines[line].startsWith(expected)) {
+                    return null;
+                }
+                values[id] = Integer.parseInt(lines[line++].substring(expected.length()));
+            }
+        }
+        return new IrInterpreter.Outcome(IrInterpreter.Status.FINISHED, 0, values);
+    }
+}
@@ -0,0 +1,227 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Evaluates calls at compile time, over functions in SSA form. A function is pure if neither it nor anything it can
+//call reads or writes a global, so what it returns depends only on its arguments. A call of a pure function whose
+//arguments are all constants, as constant propagation leaves them, is run in IrInterpreter and replaced by a copy of
+//the value it returned, its ARGs dropped; a call nothing reads the value of is just dropped. Values found this way
+//count as constant arguments of later calls, directly or through copies, so a chain of calls where each takes the
+//last one's result goes in one run. A call only goes if its run finishes within a budget of instructions, so one
+//that doesn't terminate or goes too deep stays, and each function and set of arguments is run once. Run constant
+//propagation again to fold the values further.
+final class CallEvaluation implements Pass {
+
+    static final long DEFAULT_BUDGET = 100_000;
+
+    private final long budget;
+    private int evaluated = 0;
+    private long steps = 0;
+    private int impure = 0;
+    private int variable = 0;
+    private int unfinished = 0;
+
+    CallEvaluation(long budget) {
+        this.budget = budget;
+    }
+
+    //Calls replaced by their value or dropped
+    int getEvaluated() {
+        return evaluated;
+    }
+
+    //Instructions run evaluating them
+    long getSteps() {
+        return steps;
+    }
+
+    //Calls of functions that use globals
+    int getImpure() {
+        return impure;
+    }
+
+    //Calls of pure functions with an argument that isn't constant
+    int getVariable() {
+        return variable;
+    }
+
+    //Calls that ran out of budget or went too deep
+    int getUnfinished() {
+        return unfinished;
+    }
+
+    @Override
+    public String getName() {
+        return "evaluate-calls";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Arrays.asList(PassManager.SSA, PassManager.CALL_GRAPH);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program, manager.getAnalysis(PassManager.CALL_GRAPH, CallGraph.class));
+    }
+
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + evaluated + " calls evaluated in " + steps + " steps, " + impure + " impure, " + variable
+                + " with arguments that aren't constant, " + unfinished + " unfinished");
+    }
+
+    IrProgram run(IrProgram program) {
+        return run(program, new CallGraph(program));
+    }
+
+    IrProgram run(IrProgram program, CallGraph calls) {
+        boolean[] pure = pure(program, calls);
+        IrInterpreter interpreter = new IrInterpreter(program, budget);
+        Map<List<Integer>, Long> results = new HashMap<>(); //function then arguments, to the value or ABSENT
+        return program.transform(function -> run(program, function, pure, interpreter, results));
+    }
+
+    //Functions that use no globals and only call functions that don't either
+    private static boolean[] pure(IrProgram program, CallGraph calls) {
+        int count = program.getFunctions().size();
+        boolean[] pure = new boolean[count];
+        for (int f = 0; f < count; f++) {
+            IrFunction function = program.function(f);
+            pure[f] = !function.isMain();
+            for (int i = 0; i < function.size() && pure[f]; i++) {
+                pure[f] = !isGlobal(program, function.dest(i)) && !isGlobal(program, function.left(i))
+                        && !isGlobal(program, function.right(i));
+                for (int k = 0; function.opcode(i) == Opcode.PHI && k < function.phiArgumentCount(i); k++) {
+                    pure[f] &= !isGlobal(program, function.phiArgument(i, k));
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int f = 0; f < count; f++) {
+                for (int callee : calls.callees(f)) {
+                    if (pure[f] && !pure[callee]) {
+                        pure[f] = false;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return pure;
+    }
+
+    private static boolean isGlobal(IrProgram program, long operand) {
+        return Operand.kind(operand) == Operand.SYMBOL && program.isGlobal(Operand.value(operand));
+    }
+
+    private IrFunction run(IrProgram program, IrFunction function, boolean[] pure, IrInterpreter interpreter,
+                           Map<List<Integer>, Long> results) {
+        //the value each call is replaced by, and which ARGs go with it
+        long[] values = null;
+        boolean[] dropped = null;
+        long[] known = new long[function.tempCount()]; //temps holding the value of an evaluated call
+        for (int i = 0; i < function.size(); i++) {
+            if (function.opcode(i) == Opcode.COPY && Operand.kind(function.dest(i)) == Operand.TEMP) {
+                long source = constant(function.left(i), known);
+                if (Operand.isConstant(source)) {
+                    known[Operand.value(function.dest(i))] = source;
+                }
+            }
+            if (function.opcode(i) != Opcode.CALL) {
+                continue;
+            }
+            int callee = Operand.value(function.left(i));
+            if (!pure[callee]) {
+                impure++;
+                continue;
+            }
+            int count = Operand.value(function.right(i));
+            Integer[] key = new Integer[count + 1];
+            key[0] = callee;
+            int first = i - count;
+            for (int k = 0; k < count && key[0] != null; k++) {
+                int arg = first + k;
+                long argument = arg < 0 || function.opcode(arg) != Opcode.ARG ? Operand.ABSENT : constant(function.left(arg), known);
+                if (!Operand.isConstant(argument)) {
+                    key[0] = null;
+                } else {
+                    key[k + 1] = Operand.value(argument);
+                }
+            }
+            if (key[0] == null) {
+                variable++;
+                continue;
+            }
+            List<Integer> arguments = Arrays.asList(key);
+            Long value = results.get(arguments);
+            if (value == null) {
+                value = evaluate(program, callee, arguments, interpreter);
+                results.put(arguments, value);
+            }
+            if (value == Operand.ABSENT) {
+                unfinished++;
+                continue;
+            }
+            if (values == null) {
+                values = new long[function.size()];
+                dropped = new boolean[function.size()];
+            }
+            values[i] = value;
+            Arrays.fill(dropped, first, i, true);
+            evaluated++;
+            if (Operand.kind(function.dest(i)) == Operand.TEMP) {
+                known[Operand.value(function.dest(i))] = value;
+            }
+        }
+        if (values == null) {
+            return function;
+        }
+
+        ControlFlowGraph graph = ControlFlowGraph.of(function);
+        SsaRewriter rewriter = new SsaRewriter(function, graph);
+        for (int block = 0; block < graph.blockCount(); block++) {
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                if (dropped[i]) {
+                    continue;
+                }
+                if (function.opcode(i) == Opcode.PHI) {
+                    rewriter.emitPhi(block, i);
+                } else if (values[i] != Operand.ABSENT) {
+                    if (!Operand.isAbsent(function.dest(i))) {
+                        rewriter.emit(block, Opcode.COPY, function.dest(i), values[i], Operand.ABSENT);
+                    }
+                } else {
+                    rewriter.emit(block, function.opcode(i), function.dest(i), function.left(i), function.right(i));
+                }
+            }
+        }
+        return rewriter.finish();
+    }
+
+    //The operand, or the value of an evaluated call the temp holds
+    private static long constant(long operand, long[] known) {
+        if (Operand.kind(operand) == Operand.TEMP && known[Operand.value(operand)] != Operand.ABSENT) {
+            return known[Operand.value(operand)];
+        }
+        return operand;
+    }
+
+    //The constant the call returns, ABSENT if it doesn't finish within the budget
+    private long evaluate(IrProgram program, int callee, List<Integer> key, IrInterpreter interpreter) {
+        int[] arguments = new int[key.size() - 1];
+        for (int k = 0; k < arguments.length; k++) {
+            arguments[k] = key.get(k + 1);
+        }
+        IrInterpreter.Outcome outcome = interpreter.call(callee, arguments);
+        steps += outcome.getSteps();
+        if (outcome.getStatus() != IrInterpreter.Status.FINISHED) {
+            return Operand.ABSENT;
+        }
+        int value = interpreter.getReturned();
+        IrFunction function = program.function(callee);
+        return "boolean".equals(function.getReturnType()) ? Operand.bool(value != 0) : Operand.integer(value);
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+//Which functions of a programme call which, from its CALL instructions, with function indexes as nodes. Functions
+//calling each other round a cycle are recursive. order() lists the functions main can get to with every callee
+//before its callers, except round a cycle, so a pass can handle callees first.
+final class CallGraph {
+
+    private final int[][] callees;
+    private final boolean[] recursive;
+    private final int[] order;
+
+    CallGraph(IrProgram program) {
+        int count = program.getFunctions().size();
+        callees = new int[count][];
+        for (int f = 0; f < count; f++) {
+            IrFunction function = program.function(f);
+            boolean[] seen = new boolean[count];
+            int[] called = new int[4];
+            int size = 0;
+            for (int i = 0; i < function.size(); i++) {
+                if (function.opcode(i) == Opcode.CALL && !seen[Operand.value(function.left(i))]) {
+                    seen[Operand.value(function.left(i))] = true;
+                    if (size == called.length) {
+                        called = Arrays.copyOf(called, size * 2);
+                    }
+                    called[size++] = Operand.value(function.left(i));
+                }
+            }
+            callees[f] = Arrays.copyOf(called, size);
+        }
+        recursive = new boolean[count];
+        order = components(count);
+    }
+
+    //Tarjan's strongly connected components from main, iteratively. Components are finished callees first.
+    private int[] components(int count) {
+        int[] index = new int[count];
+        int[] lowest = new int[count];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] path = new int[count]; //functions being visited and how many of their callees are done
+        int[] next = new int[count];
+        int depth = 0;
+        int[] finished = new int[count];
+        int finishedSize = 0;
+        int counter = 0;
+
+        int main = count - 1;
+        index[main] = lowest[main] = counter++;
+        stack[stackSize++] = main;
+        onStack[main] = true;
+        path[depth++] = main;
+        while (depth > 0) {
+            int f = path[depth - 1];
+            if (next[f] < callees[f].length) {
+                int callee = callees[f][next[f]++];
+                if (callee == f) {
+                    recursive[f] = true;
+                } else if (index[callee] < 0) {
+                    index[callee] = lowest[callee] = counter++;
+                    stack[stackSize++] = callee;
+                    onStack[callee] = true;
+                    path[depth++] = callee;
+                } else if (onStack[callee]) {
+                    lowest[f] = Math.min(lowest[f], index[callee]);
+                }
+                continue;
+            }
+            depth--;
+            if (depth > 0) {
+                int caller = path[depth - 1];
+                lowest[caller] = Math.min(lowest[caller], lowest[f]);
+            }
+            if (lowest[f] == index[f]) {
+                int member;
+                int first = stackSize;
+                do {
+                    member = stack[--stackSize];
+                    onStack[member] = false;
+                    finished[finishedSize++] = member;
+                } while (member != f);
+                if (first - stackSize > 1) {
+                    for (int k = stackSize; k < first; k++) {
+                        recursive[stack[k]] = true;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(finished, finishedSize);
+    }
+
+    //Distinct functions the function calls
+    int[] callees(int function) {
+        return callees[function];
+    }
+
+    //Whether the function can end up calling itself
+    boolean isRecursive(int function) {
+        return recursive[function];
+    }
+
+    //Functions main can get to, callees before callers
+    int[] order() {
+        return order;
+    }
+}
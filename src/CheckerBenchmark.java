@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.List;
+
+//Measures the semantic check on a generated, condition heavy programme, and the operator dispatch on its own: every
+//node's operator looked up through the Operators table against the instanceof ladder the checker used before it.
+//Lowering isn't part of the check, the drivers run it afterwards through a PassManager.
+//Usage: java CheckerBenchmark [statements] [iterations]
+//Each pass checks a freshly parsed tree, since the checker binds resolved symbols to it. Parsing isn't timed. The
+//dispatch comparison runs over the SimpleNode tree, which is what the instanceof ladder needs.
+public class CheckerBenchmark {
+
+    private static final int WARMUP = 10;
+
+    public static void main(String[] args) throws ParseException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String source = ProgramGenerator.generateConditions(statements);
+        List<Node> nodes = new ArrayList<>();
+        collect(CCALParser.parseNodes(source), nodes);
+        System.out.println("Checking " + statements + " if statements (" + nodes.size() + " nodes), " + iterations + " iterations");
+
+        for (int i = 0; i < WARMUP; i++) {
+            check(CCALParser.parse(source));
+        }
+        long nanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            FlatTree tree = CCALParser.parse(source);
+            long start = System.nanoTime();
+            check(tree);
+            nanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("check            %8.2f ms per pass, Mnodes/s %.1f", nanos / 1e6 / iterations,
+                (double) nodes.size() * iterations / (nanos / 1e3)));
+
+        //the lookups are summed so neither loop can be dropped, and both have to agree
+        Node[] all = nodes.toArray(new Node[0]);
+        int table = 0;
+        int ladder = 0;
+        for (int i = 0; i < WARMUP * 10; i++) {
+            table += byTable(all);
+            ladder += byInstanceof(all);
+        }
+        if (table != ladder) {
+            throw new IllegalStateException("The table and the instanceof ladder disagree");
+        }
+        long tableNanos = 0;
+        long ladderNanos = 0;
+        for (int i = 0; i < iterations * 10; i++) {
+            long start = System.nanoTime();
+            table += byTable(all);
+            tableNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            ladder += byInstanceof(all);
+            ladderNanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("table dispatch   %8.3f ms per pass", tableNanos / 1e6 / iterations / 10));
+        System.out.println(String.format("instanceof       %8.3f ms per pass", ladderNanos / 1e6 / iterations / 10));
+        System.out.println(String.format("Speedup: %.2fx", (double) ladderNanos / tableNanos));
+    }
+
+    private static int byTable(Node[] nodes) {
+        int found = 0;
+        for (Node node : nodes) {
+            String symbol = Operators.symbol(node.getId());
+            found += symbol == null ? Operators.arity(node.getId()) + 1 : symbol.length();
+        }
+        return found;
+    }
+
+    //How operators were told apart before the table, with the same answers as Operators.symbol and Operators.arity
+    private static int byInstanceof(Node[] nodes) {
+        int found = 0;
+        for (Node node : nodes) {
+            String symbol;
+            if (node instanceof ASTAdd) {
+                symbol = "+";
+            } else if (node instanceof ASTSubtract || node instanceof ASTMinus) {
+                symbol = "-";
+            } else if (node instanceof ASTEqual) {
+                symbol = "==";
+            } else if (node instanceof ASTNotEqual) {
+                symbol = "!=";
+            } else if (node instanceof ASTLessThan) {
+                symbol = "<";
+            } else if (node instanceof ASTLessThanEqual) {
+                symbol = "<=";
+            } else if (node instanceof ASTGreaterThan) {
+                symbol = ">";
+            } else if (node instanceof ASTGreaterThanEqual) {
+                symbol = ">=";
+            } else if (node instanceof ASTOr) {
+                symbol = "||";
+            } else if (node instanceof ASTAnd) {
+                symbol = "&&";
+            } else if (node instanceof ASTNot) {
+                symbol = "~";
+            } else {
+                symbol = null;
+            }
+            boolean operand = node instanceof ASTVariable || node instanceof ASTDigit || node instanceof ASTBoolean;
+            found += symbol != null ? symbol.length() : operand ? 1 : 0;
+        }
+        return found;
+    }
+
+    private static void check(FlatTree tree) {
+        new Visitor(NullSink.INSTANCE).check(tree);
+    }
+
+    private static void collect(Node node, List<Node> nodes) {
+        nodes.add(node);
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            collect(node.jjtGetChild(i), nodes);
+        }
+    }
+}
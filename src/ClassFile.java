@@ -0,0 +1,189 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Writes a JVM class file with fields and methods, only as much of the format as JvmBackend needs. The class
+//file version is 49, the last one verified by type inference, so methods need no StackMapTable.
+final class ClassFile {
+
+    static final int PUBLIC = 0x0001;
+    static final int PRIVATE = 0x0002;
+    static final int STATIC = 0x0008;
+    static final int FINAL = 0x0010;
+    static final int SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int FIELD = 9;
+    private static final int METHOD = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+    private int fieldCount = 0;
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount = 0;
+    private final String name;
+    private final int self;
+    private final int superclass;
+    private final List<Integer> interfaces = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        this.name = name;
+        self = classRef(name);
+        superclass = classRef(superName);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void addInterface(String internalName) {
+        interfaces.add(classRef(internalName));
+    }
+
+    int utf8(String text) {
+        Integer index = entries.get("U" + text);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(UTF8);
+            pool.writeUTF(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add("U" + text);
+    }
+
+    int classRef(String internalName) {
+        return entry("C" + internalName, CLASS, utf8(internalName), -1);
+    }
+
+    int integer(int value) {
+        Integer index = entries.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(INTEGER);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add("I" + value);
+    }
+
+    int fieldRef(String owner, String field, String descriptor) {
+        return entry("F" + owner + "." + field + ":" + descriptor, FIELD, classRef(owner), nameAndType(field, descriptor));
+    }
+
+    int methodRef(String owner, String method, String descriptor) {
+        return entry("M" + owner + "." + method + descriptor, METHOD, classRef(owner), nameAndType(method, descriptor));
+    }
+
+    private int nameAndType(String member, String descriptor) {
+        return entry("N" + member + ":" + descriptor, NAME_AND_TYPE, utf8(member), utf8(descriptor));
+    }
+
+    //An entry of two u2 indexes, or one when second is negative
+    private int entry(String key, int tag, int first, int second) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            if (second >= 0) {
+                pool.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key);
+    }
+
+    private int add(String key) {
+        if (poolCount == 0xFFFF) {
+            throw new IllegalArgumentException(name + " has too many constants for a class file");
+        }
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    void addField(int access, String field, String descriptor) {
+        try {
+            fields.writeShort(access);
+            fields.writeShort(utf8(field));
+            fields.writeShort(utf8(descriptor));
+            fields.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fieldCount++;
+    }
+
+    void addMethod(int access, String method, String descriptor, byte[] code, int maxStack, int maxLocals) {
+        if (code.length > 0xFFFF) {
+            throw new IllegalArgumentException(method + " is " + code.length + " bytes, over the JVM's limit for a method");
+        }
+        try {
+            methods.writeShort(access);
+            methods.writeShort(utf8(method));
+            methods.writeShort(utf8(descriptor));
+            methods.writeShort(1);
+            methods.writeShort(utf8("Code"));
+            methods.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(code.length);
+            methods.write(code);
+            methods.writeShort(0); //exception table
+            methods.writeShort(0); //attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methodCount++;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(PUBLIC | FINAL | SUPER);
+            out.writeShort(self);
+            out.writeShort(superclass);
+            out.writeShort(interfaces.size());
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fieldCount);
+            fieldBytes.writeTo(out);
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            out.writeShort(0); //attributes
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
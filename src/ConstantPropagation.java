@@ -0,0 +1,379 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//Sparse conditional constant propagation over functions in SSA form (Wegman and Zadeck). Every temp starts out
+//unknown (TOP) and only blocks reached along edges found to be taken are evaluated, so a value that is constant on
+//every path that can run is folded even when a branch that can't run would say otherwise. Temps that end up
+//constant are replaced by their value and their instructions dropped, jumps on a constant condition become gotos
+//or fall through, and blocks that are never reached are dropped.
+//Global constants initialised with a literal at the start of main are known everywhere, as nothing can run before
+//that and they can't be assigned again. Other globals, parameters and calls are never constant.
+final class ConstantPropagation implements Pass {
+
+    private static final long TOP = Operand.ABSENT;
+    private static final long BOTTOM = Operand.of(Operand.NONE, 1);
+
+    private int folded = 0;
+    private int branches = 0;
+    private int blocks = 0;
+
+    //Instructions dropped because their value is a constant
+    int getFolded() {
+        return folded;
+    }
+
+    //Conditional jumps whose condition is a constant
+    int getBranches() {
+        return branches;
+    }
+
+    //Blocks never reached once those jumps go one way
+    int getBlocks() {
+        return blocks;
+    }
+
+    @Override
+    public String getName() {
+        return "constants";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Collections.singletonList(PassManager.SSA);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program);
+    }
+
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + folded + " folded, " + branches + " branches decided, " + blocks + " blocks dropped");
+    }
+
+    IrProgram run(IrProgram program) {
+        long[] globals = constantGlobals(program);
+        return program.transform(function -> run(function, globals));
+    }
+
+    //The literal each global constant is initialised with, TOP for other symbols
+    static long[] constantGlobals(IrProgram program) {
+        long[] globals = new long[program.symbolCount()];
+        IrFunction main = program.main();
+        for (int i = 0; i < main.size(); i++) {
+            Opcode opcode = main.opcode(i);
+            if (opcode == Opcode.CALL || opcode == Opcode.LABEL || opcode.isBranch()) {
+                break;
+            }
+            long dest = main.dest(i);
+            if (opcode == Opcode.COPY && Operand.kind(dest) == Operand.SYMBOL && Operand.isConstant(main.left(i))) {
+                int id = Operand.value(dest);
+                if (program.isGlobal(id) && program.symbolKind(id) == SymbolType.CONST) {
+                    globals[id] = main.left(i);
+                }
+            }
+        }
+        return globals;
+    }
+
+    IrFunction run(IrFunction function, long[] globals) {
+        return new Propagation(function, globals).rewrite();
+    }
+
+    private final class Propagation {
+
+        private final IrFunction function;
+        private final long[] globals;
+        private final ControlFlowGraph graph;
+        private final int[] blockOf;
+        private final long[] values; //lattice value of each temp, TOP, BOTTOM or a constant operand
+        private final int[] useStarts; //instructions using temp t are uses[useStarts[t]..useStarts[t + 1])
+        private final int[] uses;
+        private final boolean[] reached;
+        private final boolean[][] taken; //taken[block][k], the edge from the block's k-th predecessor
+        private int[] blockWork;
+        private int blockWorkSize = 0;
+        private int[] instructionWork;
+        private int instructionWorkSize = 0;
+
+        Propagation(IrFunction function, long[] globals) {
+            this.function = function;
+            this.globals = globals;
+            graph = ControlFlowGraph.of(function);
+            blockOf = new int[function.size()];
+            for (int block = 0; block < graph.blockCount(); block++) {
+                Arrays.fill(blockOf, graph.start(block), graph.end(block), block);
+            }
+            values = new long[function.tempCount()];
+            reached = new boolean[graph.blockCount()];
+            taken = new boolean[graph.blockCount()][];
+            for (int block = 0; block < graph.blockCount(); block++) {
+                taken[block] = new boolean[graph.predecessors(block).length];
+            }
+
+            useStarts = new int[function.tempCount() + 1];
+            for (int i = 0; i < function.size(); i++) {
+                forEachUse(i, true, null);
+            }
+            for (int t = 0; t < function.tempCount(); t++) {
+                useStarts[t + 1] += useStarts[t];
+            }
+            uses = new int[useStarts[function.tempCount()]];
+            int[] filled = Arrays.copyOf(useStarts, function.tempCount());
+            for (int i = 0; i < function.size(); i++) {
+                forEachUse(i, false, filled);
+            }
+            blockWork = new int[Math.max(1, graph.blockCount())];
+            instructionWork = new int[16];
+        }
+
+        //Count the temps the instruction reads, or record it as a user of each
+        private void forEachUse(int i, boolean counting, int[] filled) {
+            Opcode opcode = function.opcode(i);
+            if (opcode == Opcode.PHI) {
+                for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                    use(function.phiArgument(i, k), i, counting, filled);
+                }
+                return;
+            }
+            if (opcode.sources() > 0) {
+                use(function.left(i), i, counting, filled);
+            }
+            if (opcode.sources() > 1) {
+                use(function.right(i), i, counting, filled);
+            }
+        }
+
+        private void use(long operand, int i, boolean counting, int[] filled) {
+            if (Operand.kind(operand) != Operand.TEMP) {
+                return;
+            }
+            int t = Operand.value(operand);
+            if (counting) {
+                useStarts[t + 1]++;
+            } else {
+                uses[filled[t]++] = i;
+            }
+        }
+
+        private IrFunction rewrite() {
+            propagate();
+            SsaRewriter rewriter = new SsaRewriter(function, graph);
+            for (int block = 0; block < graph.blockCount(); block++) {
+                if (!reached[block]) {
+                    blocks += graph.isReachable(block) ? 1 : 0;
+                    continue;
+                }
+                for (int i = graph.start(block); i < graph.end(block); i++) {
+                    Opcode opcode = function.opcode(i);
+                    long dest = function.dest(i);
+                    if (Operand.kind(dest) == Operand.TEMP && Operand.isConstant(values[Operand.value(dest)]) && opcode != Opcode.CALL) {
+                        folded++;
+                        continue;
+                    }
+                    if (opcode == Opcode.PHI) {
+                        int phi = rewriter.emitPhi(block, i);
+                        for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                            rewriter.getCode().setPhiArgument(phi, k, replace(function.phiArgument(i, k)));
+                        }
+                        continue;
+                    }
+                    long left = opcode.sources() > 0 ? replace(function.left(i)) : function.left(i);
+                    long right = opcode.sources() > 1 ? replace(function.right(i)) : function.right(i);
+                    if ((opcode == Opcode.JUMP_IF_TRUE || opcode == Opcode.JUMP_IF_FALSE) && Operand.isConstant(left)) {
+                        branches++;
+                        if ((Operand.value(left) != 0) == (opcode == Opcode.JUMP_IF_TRUE)) {
+                            rewriter.emit(block, Opcode.JUMP, Operand.ABSENT, right, Operand.ABSENT);
+                        }
+                        continue;
+                    }
+                    rewriter.emit(block, opcode, dest, left, right);
+                }
+            }
+            return rewriter.finish();
+        }
+
+        //The constant a temp or global constant is known to hold, otherwise the operand itself
+        private long replace(long operand) {
+            long value = value(operand);
+            return Operand.isConstant(value) ? value : operand;
+        }
+
+        private long value(long operand) {
+            switch (Operand.kind(operand)) {
+                case Operand.TEMP:
+                    return values[Operand.value(operand)];
+                case Operand.INT:
+                case Operand.BOOL:
+                    return operand;
+                case Operand.SYMBOL:
+                    long global = globals[Operand.value(operand)];
+                    return global == TOP ? BOTTOM : global;
+                default:
+                    return BOTTOM;
+            }
+        }
+
+        private void propagate() {
+            if (graph.blockCount() == 0) {
+                return;
+            }
+            reach(0);
+            while (blockWorkSize > 0 || instructionWorkSize > 0) {
+                if (blockWorkSize > 0) {
+                    int block = blockWork[--blockWorkSize];
+                    for (int i = graph.start(block); i < graph.end(block); i++) {
+                        evaluate(i);
+                    }
+                    if (!endsInJump(block) && block + 1 < graph.blockCount()) {
+                        take(block, block + 1);
+                    }
+                } else {
+                    int i = instructionWork[--instructionWorkSize];
+                    if (reached[blockOf[i]]) {
+                        evaluate(i);
+                    }
+                }
+            }
+        }
+
+        private boolean endsInJump(int block) {
+            Opcode last = function.opcode(graph.end(block) - 1);
+            return last.isBranch();
+        }
+
+        private void reach(int block) {
+            reached[block] = true;
+            blockWork[blockWorkSize++] = block;
+        }
+
+        private void take(int from, int to) {
+            int[] predecessors = graph.predecessors(to);
+            int k = 0;
+            while (predecessors[k] != from) {
+                k++;
+            }
+            if (taken[to][k]) {
+                return;
+            }
+            taken[to][k] = true;
+            if (!reached[to]) {
+                reach(to);
+                return;
+            }
+            //already evaluated, only its PHIs can see the new edge
+            for (int i = graph.start(to); i < graph.end(to); i++) {
+                if (function.opcode(i) == Opcode.PHI) {
+                    evaluate(i);
+                }
+            }
+        }
+
+        private void evaluate(int i) {
+            Opcode opcode = function.opcode(i);
+            int block = blockOf[i];
+            switch (opcode) {
+                case LABEL:
+                case ARG:
+                case RETURN:
+                    return;
+                case JUMP:
+                    take(block, graph.blockOf(function.left(i)));
+                    return;
+                case JUMP_IF_TRUE:
+                case JUMP_IF_FALSE:
+                    long condition = value(function.left(i));
+                    int target = graph.blockOf(function.right(i));
+                    if (condition == TOP) {
+                        return;
+                    }
+                    boolean constant = condition != BOTTOM;
+                    boolean jumps = constant && (Operand.value(condition) != 0) == (opcode == Opcode.JUMP_IF_TRUE);
+                    if (!constant || jumps) {
+                        take(block, target);
+                    }
+                    if ((!constant || !jumps) && block + 1 < graph.blockCount()) {
+                        take(block, block + 1);
+                    }
+                    return;
+                case CALL:
+                    set(function.dest(i), BOTTOM);
+                    return;
+                case PHI:
+                    long merged = TOP;
+                    for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                        if (taken[block][k]) {
+                            merged = meet(merged, value(function.phiArgument(i, k)));
+                        }
+                    }
+                    set(function.dest(i), merged);
+                    return;
+                default:
+                    long left = value(function.left(i));
+                    long right = opcode.isBinary() ? value(function.right(i)) : TOP;
+                    set(function.dest(i), fold(opcode, left, right));
+            }
+        }
+
+        private void set(long dest, long value) {
+            if (Operand.kind(dest) != Operand.TEMP) {
+                return;
+            }
+            int t = Operand.value(dest);
+            long old = values[t];
+            if (old == value || old == BOTTOM) {
+                return;
+            }
+            values[t] = old == TOP ? value : BOTTOM; //a constant can only go to BOTTOM
+            for (int u = useStarts[t]; u < useStarts[t + 1]; u++) {
+                if (instructionWorkSize == instructionWork.length) {
+                    instructionWork = Arrays.copyOf(instructionWork, instructionWorkSize * 2);
+                }
+                instructionWork[instructionWorkSize++] = uses[u];
+            }
+        }
+    }
+
+    private static long meet(long a, long b) {
+        if (a == TOP) {
+            return b;
+        }
+        if (b == TOP || a == b) {
+            return a;
+        }
+        return BOTTOM;
+    }
+
+    //The value of the operation on two lattice values, right is TOP for unary operations
+    static long fold(Opcode opcode, long left, long right) {
+        if (opcode == Opcode.AND && (left == Operand.bool(false) || right == Operand.bool(false))) {
+            return Operand.bool(false);
+        }
+        if (opcode == Opcode.OR && (left == Operand.bool(true) || right == Operand.bool(true))) {
+            return Operand.bool(true);
+        }
+        if (left == BOTTOM || right == BOTTOM) {
+            return BOTTOM;
+        }
+        if (left == TOP || (opcode.isBinary() && right == TOP)) {
+            return TOP;
+        }
+        int a = Operand.value(left);
+        switch (opcode) {
+            case COPY:
+                return left;
+            case NEG:
+                return Operand.integer(-a);
+            case NOT:
+                return Operand.bool(a == 0);
+            case ADD:
+            case SUB:
+            case MUL:
+                return Operand.integer(IrInterpreter.evaluate(opcode, a, Operand.value(right)));
+            default:
+                return Operand.bool(IrInterpreter.evaluate(opcode, a, Operand.value(right)) != 0);
+        }
+    }
+}
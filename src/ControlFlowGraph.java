@@ -0,0 +1,253 @@
+import java.util.Arrays;
+
+//Basic blocks of an IrFunction. A block starts at the first instruction, at every LABEL and after every jump or
+//return, and is the instruction range [start, end). Blocks are numbered densely in code order, block 0 is the entry.
+//A conditional jump's successors are its fall through block first, then its target.
+final class ControlFlowGraph {
+
+    private static final int[] NONE = new int[0];
+
+    private final IrFunction function;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    //Block each label starts, indexed by label number, -1 for labels that aren't placed
+    private final int[] labelBlocks;
+    private final boolean[] reachable;
+
+    private ControlFlowGraph(IrFunction function, int[] starts, int[] ends, int[] labelBlocks) {
+        this.function = function;
+        this.starts = starts;
+        this.ends = ends;
+        this.labelBlocks = labelBlocks;
+        int blocks = starts.length;
+        successors = new int[blocks][];
+        int[] predecessorCounts = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            successors[block] = findSuccessors(block);
+            for (int successor : successors[block]) {
+                predecessorCounts[successor]++;
+            }
+        }
+        predecessors = new int[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            predecessors[block] = predecessorCounts[block] == 0 ? NONE : new int[predecessorCounts[block]];
+            predecessorCounts[block] = 0;
+        }
+        for (int block = 0; block < blocks; block++) {
+            for (int successor : successors[block]) {
+                predecessors[successor][predecessorCounts[successor]++] = block;
+            }
+        }
+        reachable = new boolean[blocks];
+        markReachable();
+    }
+
+    static ControlFlowGraph of(IrFunction function) {
+        int size = function.size();
+        boolean[] leaders = new boolean[size + 1];
+        leaders[0] = true;
+        int[] labelBlocks = new int[function.labelCount()];
+        Arrays.fill(labelBlocks, -1);
+        for (int i = 0; i < size; i++) {
+            Opcode opcode = function.opcode(i);
+            if (opcode == Opcode.LABEL) {
+                leaders[i] = true;
+            } else if (opcode.isBranch()) {
+                leaders[i + 1] = true;
+            }
+        }
+        int blocks = 0;
+        for (int i = 0; i < size; i++) {
+            if (leaders[i]) {
+                blocks++;
+            }
+        }
+        int[] starts = new int[blocks];
+        int[] ends = new int[blocks];
+        int block = -1;
+        for (int i = 0; i < size; i++) {
+            if (leaders[i]) {
+                block++;
+                starts[block] = i;
+            }
+            ends[block] = i + 1;
+            if (function.opcode(i) == Opcode.LABEL) {
+                labelBlocks[Operand.value(function.left(i))] = block;
+            }
+        }
+        return new ControlFlowGraph(function, starts, ends, labelBlocks);
+    }
+
+    IrFunction getFunction() {
+        return function;
+    }
+
+    int blockCount() {
+        return starts.length;
+    }
+
+    //Index of the block's first instruction
+    int start(int block) {
+        return starts[block];
+    }
+
+    //Index after the block's last instruction
+    int end(int block) {
+        return ends[block];
+    }
+
+    int[] successors(int block) {
+        return successors[block];
+    }
+
+    int[] predecessors(int block) {
+        return predecessors[block];
+    }
+
+    //Block the label starts
+    int blockOf(long label) {
+        return labelBlocks[Operand.value(label)];
+    }
+
+    //Whether control can get to the block from the entry
+    boolean isReachable(int block) {
+        return reachable[block];
+    }
+
+    //Reachable blocks ordered so each comes before its successors, apart from loop back edges
+    int[] reversePostorder() {
+        int[] order = new int[blockCount()];
+        int count = 0;
+        boolean[] visited = new boolean[blockCount()];
+        //iterative depth first walk, the stack holds blocks and how many of their successors have been followed
+        int[] stack = new int[blockCount()];
+        int[] next = new int[blockCount()];
+        int depth = 0;
+        if (blockCount() > 0) {
+            stack[depth++] = 0;
+            visited[0] = true;
+        }
+        while (depth > 0) {
+            int block = stack[depth - 1];
+            int[] out = successors[block];
+            if (next[block] < out.length) {
+                int successor = out[next[block]++];
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack[depth++] = successor;
+                }
+            } else {
+                order[count++] = block;
+                depth--;
+            }
+        }
+        int[] reverse = new int[count];
+        for (int i = 0; i < count; i++) {
+            reverse[i] = order[count - 1 - i];
+        }
+        return reverse;
+    }
+
+    //Linear code for the function: reachable blocks in code order without their labels, jumps to the next
+    //instruction dropped and every jump going to an instruction index (Operand.target) instead of a label
+    IrFunction layout() {
+        int blocks = blockCount();
+        //a block holding only labels has no code of its own, jumping to it is jumping to the block after it
+        int[] landing = new int[blocks];
+        for (int block = blocks - 1; block >= 0; block--) {
+            boolean labelsOnly = true;
+            for (int i = starts[block]; i < ends[block] && labelsOnly; i++) {
+                labelsOnly = function.opcode(i) == Opcode.LABEL;
+            }
+            landing[block] = labelsOnly && block + 1 < blocks ? landing[block + 1] : block;
+        }
+        int[] blockIndex = new int[blocks];
+        boolean[] fallsThrough = new boolean[blocks]; //last instruction is a jump to the block laid out next
+        int index = 0;
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            blockIndex[block] = index;
+            int next = nextReachable(block);
+            for (int i = starts[block]; i < ends[block]; i++) {
+                Opcode opcode = function.opcode(i);
+                if (opcode == Opcode.LABEL) {
+                    continue;
+                }
+                if (i == ends[block] - 1 && isJump(opcode) && next >= 0 && landing[blockOf(jumpLabel(i))] == landing[next]) {
+                    fallsThrough[block] = true;
+                    continue;
+                }
+                index++;
+            }
+        }
+
+        IrFunction laidOut = function.emptyCopy();
+        for (int block = 0; block < blocks; block++) {
+            if (!reachable[block]) {
+                continue;
+            }
+            for (int i = starts[block]; i < ends[block]; i++) {
+                Opcode opcode = function.opcode(i);
+                if (opcode == Opcode.LABEL || (i == ends[block] - 1 && fallsThrough[block])) {
+                    continue;
+                }
+                long left = function.left(i);
+                long right = function.right(i);
+                if (opcode == Opcode.JUMP) {
+                    left = Operand.target(blockIndex[blockOf(left)]);
+                } else if (opcode == Opcode.JUMP_IF_TRUE || opcode == Opcode.JUMP_IF_FALSE) {
+                    right = Operand.target(blockIndex[blockOf(right)]);
+                }
+                laidOut.emit(opcode, function.dest(i), left, right);
+            }
+        }
+        return laidOut;
+    }
+
+    private int nextReachable(int block) {
+        for (int next = block + 1; next < blockCount(); next++) {
+            if (reachable[next]) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isJump(Opcode opcode) {
+        return opcode == Opcode.JUMP || opcode == Opcode.JUMP_IF_TRUE || opcode == Opcode.JUMP_IF_FALSE;
+    }
+
+    private long jumpLabel(int index) {
+        return function.opcode(index) == Opcode.JUMP ? function.left(index) : function.right(index);
+    }
+
+    private int[] findSuccessors(int block) {
+        int last = ends[block] - 1;
+        int fallThrough = block + 1 < blockCount() ? block + 1 : -1;
+        switch (function.opcode(last)) {
+            case RETURN:
+                return NONE;
+            case JUMP:
+                return new int[]{blockOf(function.left(last))};
+            case JUMP_IF_TRUE:
+            case JUMP_IF_FALSE:
+                int target = blockOf(function.right(last));
+                if (fallThrough < 0 || fallThrough == target) {
+                    return new int[]{target};
+                }
+                return new int[]{fallThrough, target};
+            default:
+                return fallThrough < 0 ? NONE : new int[]{fallThrough};
+        }
+    }
+
+    private void markReachable() {
+        for (int block : reversePostorder()) {
+            reachable[block] = true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//Drops code that can't change what a programme does, over functions in SSA form. Calls, jumps, returns and stores to
+//globals are kept, and so is every instruction computing a value one of them uses, following PHIs back through
+//loops. Everything else is a dead store: its value is never read. Main's locals are what a run of the programme
+//leaves behind, so main's final copies to them are kept. Blocks control can't get to are dropped, and then every
+//function main can't get to through calls.
+final class DeadCodeElimination implements Pass {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> instructions = new ArrayList<>();
+    private final List<Integer> blocks = new ArrayList<>();
+    private final List<String> uncalled = new ArrayList<>();
+    //instructions the uncalled functions still had after their own dead code went
+    private int uncalledInstructions = 0;
+
+    @Override
+    public String getName() {
+        return "dead-code";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Collections.singletonList(PassManager.SSA);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program);
+    }
+
+    IrProgram run(IrProgram program) {
+        IrProgram live = program.transform(this::run);
+        boolean[] called = new boolean[live.getFunctions().size()];
+        int[] work = new int[called.length];
+        int size = 0;
+        called[called.length - 1] = true;
+        work[size++] = called.length - 1;
+        while (size > 0) {
+            IrFunction function = live.function(work[--size]);
+            for (int i = 0; i < function.size(); i++) {
+                if (function.opcode(i) == Opcode.CALL && !called[Operand.value(function.left(i))]) {
+                    called[Operand.value(function.left(i))] = true;
+                    work[size++] = Operand.value(function.left(i));
+                }
+            }
+        }
+        for (int i = 0; i < called.length; i++) {
+            if (!called[i]) {
+                uncalled.add(live.function(i).getName());
+                uncalledInstructions += live.function(i).size();
+            }
+        }
+        return uncalled.isEmpty() ? live : live.retain(called);
+    }
+
+    IrFunction run(IrFunction function) {
+        ControlFlowGraph graph = ControlFlowGraph.of(function);
+        int[] definitions = new int[function.tempCount()];
+        Arrays.fill(definitions, -1);
+        for (int i = 0; i < function.size(); i++) {
+            if (Operand.kind(function.dest(i)) == Operand.TEMP) {
+                definitions[Operand.value(function.dest(i))] = i;
+            }
+        }
+
+        boolean[] live = new boolean[function.size()];
+        int[] work = new int[function.size()];
+        int size = 0;
+        for (int block = 0; block < graph.blockCount(); block++) {
+            if (!graph.isReachable(block)) {
+                continue;
+            }
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                if (hasEffect(function, i)) {
+                    live[i] = true;
+                    work[size++] = i;
+                }
+            }
+        }
+        while (size > 0) {
+            int i = work[--size];
+            Opcode opcode = function.opcode(i);
+            if (opcode == Opcode.PHI) {
+                for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                    size = markDefinition(function.phiArgument(i, k), definitions, live, work, size);
+                }
+                continue;
+            }
+            if (opcode.sources() > 0) {
+                size = markDefinition(function.left(i), definitions, live, work, size);
+            }
+            if (opcode.sources() > 1) {
+                size = markDefinition(function.right(i), definitions, live, work, size);
+            }
+        }
+
+        SsaRewriter rewriter = new SsaRewriter(function, graph);
+        int droppedBlocks = 0;
+        for (int block = 0; block < graph.blockCount(); block++) {
+            if (!graph.isReachable(block)) {
+                droppedBlocks++;
+                continue;
+            }
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                if (!live[i]) {
+                    continue;
+                }
+                if (function.opcode(i) == Opcode.PHI) {
+                    rewriter.emitPhi(block, i);
+                } else {
+                    rewriter.emit(block, function.opcode(i), function.dest(i), function.left(i), function.right(i));
+                }
+            }
+        }
+        IrFunction rewritten = rewriter.finish();
+        names.add(function.getName());
+        instructions.add(function.size() - rewritten.size());
+        blocks.add(droppedBlocks);
+        return rewritten;
+    }
+
+    //Whether the instruction matters even if nothing reads its value
+    private static boolean hasEffect(IrFunction function, int i) {
+        Opcode opcode = function.opcode(i);
+        switch (opcode) {
+            case LABEL:
+            case JUMP:
+            case JUMP_IF_TRUE:
+            case JUMP_IF_FALSE:
+            case ARG:
+            case CALL:
+            case RETURN:
+                return true;
+            default:
+                return Operand.kind(function.dest(i)) == Operand.SYMBOL;
+        }
+    }
+
+    private static int markDefinition(long operand, int[] definitions, boolean[] live, int[] work, int size) {
+        if (Operand.kind(operand) != Operand.TEMP) {
+            return size;
+        }
+        int definition = definitions[Operand.value(operand)];
+        if (definition >= 0 && !live[definition]) {
+            live[definition] = true;
+            work[size++] = definition;
+        }
+        return size;
+    }
+
+    //Instructions removed, those of the functions dropped as uncalled included
+    int getInstructions() {
+        int total = uncalledInstructions;
+        for (int removed : instructions) {
+            total += removed;
+        }
+        return total;
+    }
+
+    int getBlocks() {
+        int total = 0;
+        for (int removed : blocks) {
+            total += removed;
+        }
+        return total;
+    }
+
+    //Names of the functions dropped because main never gets to call them
+    List<String> getUncalled() {
+        return uncalled;
+    }
+
+    //A line with the totals, one per function that lost code and one naming the functions that were dropped
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + getInstructions() + " instructions, " + getBlocks() + " blocks, " + uncalled.size() + " uncalled functions");
+        for (int i = 0; i < names.size(); i++) {
+            if (instructions.get(i) > 0 || blocks.get(i) > 0) {
+                out.println("    " + names.get(i) + ": " + instructions.get(i) + " instructions, " + blocks.get(i) + " blocks");
+            }
+        }
+        if (!uncalled.isEmpty()) {
+            out.println("    never called: " + String.join(", ", uncalled) + ", " + uncalledInstructions + " instructions");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+//Immediate dominators and dominance frontiers of the reachable blocks of a ControlFlowGraph, found with the
+//iterative algorithm of Cooper, Harvey and Kennedy over the reverse postorder. Unreachable blocks have no
+//dominator and are in no frontier.
+final class DominatorTree {
+
+    private static final int[] NONE = new int[0];
+
+    private final ControlFlowGraph graph;
+    private final int[] idom;
+    private final int[] order; //reverse postorder
+    private final int[] position; //of each block in order, -1 when unreachable
+    private final int[][] children;
+    private final int[][] frontiers;
+
+    DominatorTree(ControlFlowGraph graph) {
+        this.graph = graph;
+        int blocks = graph.blockCount();
+        order = graph.reversePostorder();
+        position = new int[blocks];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+
+        idom = new int[blocks];
+        Arrays.fill(idom, -1);
+        if (order.length > 0) {
+            idom[order[0]] = order[0];
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.length; i++) {
+                int block = order[i];
+                int dominator = -1;
+                for (int predecessor : graph.predecessors(block)) {
+                    if (idom[predecessor] < 0) {
+                        continue; //unreachable, or not processed yet on this pass
+                    }
+                    dominator = dominator < 0 ? predecessor : intersect(predecessor, dominator);
+                }
+                if (idom[block] != dominator) {
+                    idom[block] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        int[] childCounts = new int[blocks];
+        for (int block : order) {
+            if (block != order[0]) {
+                childCounts[idom[block]]++;
+            }
+        }
+        children = new int[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            children[block] = childCounts[block] == 0 ? NONE : new int[childCounts[block]];
+            childCounts[block] = 0;
+        }
+        for (int block : order) {
+            if (block != order[0]) {
+                children[idom[block]][childCounts[idom[block]]++] = block;
+            }
+        }
+
+        frontiers = findFrontiers();
+    }
+
+    ControlFlowGraph getGraph() {
+        return graph;
+    }
+
+    //Immediate dominator, the entry is its own and unreachable blocks have -1
+    int idom(int block) {
+        return idom[block];
+    }
+
+    //Blocks this one immediately dominates, in reverse postorder
+    int[] children(int block) {
+        return children[block];
+    }
+
+    //Blocks where this block's dominance stops: it dominates one of their predecessors but not them
+    int[] frontier(int block) {
+        return frontiers[block];
+    }
+
+    //Reachable blocks in reverse postorder, each after its dominator
+    int[] order() {
+        return order;
+    }
+
+    boolean dominates(int dominator, int block) {
+        if (position[block] < 0 || position[dominator] < 0) {
+            return false;
+        }
+        while (position[block] > position[dominator]) {
+            block = idom[block];
+        }
+        return block == dominator;
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (position[a] > position[b]) {
+                a = idom[a];
+            }
+            while (position[b] > position[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    private int[][] findFrontiers() {
+        int blocks = graph.blockCount();
+        int[][] found = new int[blocks][];
+        int[] sizes = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            found[block] = NONE;
+        }
+        for (int block : order) {
+            int[] predecessors = graph.predecessors(block);
+            if (predecessors.length < 2) {
+                continue;
+            }
+            for (int predecessor : predecessors) {
+                for (int runner = predecessor; position[runner] >= 0 && runner != idom[block]; runner = idom[runner]) {
+                    if (sizes[runner] > 0 && found[runner][sizes[runner] - 1] == block) {
+                        continue; //already added through another predecessor
+                    }
+                    if (sizes[runner] == found[runner].length) {
+                        found[runner] = Arrays.copyOf(found[runner], Math.max(2, sizes[runner] * 2));
+                    }
+                    found[runner][sizes[runner]++] = block;
+                    if (runner == order[0]) {
+                        break;
+                    }
+                }
+            }
+        }
+        for (int block = 0; block < blocks; block++) {
+            found[block] = Arrays.copyOf(found[block], sizes[block]);
+        }
+        return found;
+    }
+}
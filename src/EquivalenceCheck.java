@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+//Checks that rewriting the IR keeps what a programme does: IrInterpreter runs each programme as lowered and after
+//each rewrite, and every run has to end with the same values. Runs of the lowered programme that use up the step
+//budget prove nothing and are skipped.
+//Usage: java EquivalenceCheck [file...], with no files the test*.ccal programmes and generated ones are used
+public class EquivalenceCheck {
+
+    private static final long BUDGET = 50_000_000L;
+    private static final int INLINING_BUDGET = 500;
+
+    //Rewrites checked against the lowered programme, in order
+    private static final Map<String, UnaryOperator<IrProgram>> REWRITES = new LinkedHashMap<>();
+
+    //Other ways of running the lowered programme, checked against IrInterpreter
+    private static final Map<String, Function<IrProgram, IrInterpreter.Outcome>> EXECUTORS = new LinkedHashMap<>();
+
+    static {
+        EXECUTORS.put("register vm", program -> new RegisterVm(Bytecode.compile(program), BUDGET).run());
+        EXECUTORS.put("jvm", program -> JvmBackend.compile(program).run(BUDGET));
+        //compiling on the interpreter's thread at once, and running twice so loops make code for the second run
+        EXECUTORS.put("tiered", program -> {
+            TieredExecution tiered = new TieredExecution(program, BUDGET, 2, 10, Runnable::run);
+            tiered.run();
+            return tiered.run();
+        });
+    }
+
+    static {
+        REWRITES.put("ssa", program -> program.transform(SsaConstruction::run));
+        REWRITES.put("ssa round trip", program -> program.transform(function -> SsaDestruction.run(SsaConstruction.run(function))));
+        REWRITES.put("laid out ssa round trip", program -> program.transform(
+                function -> ControlFlowGraph.of(SsaDestruction.run(SsaConstruction.run(function))).layout()));
+        REWRITES.put("constant propagation", program -> new ConstantPropagation().run(program.transform(SsaConstruction::run))
+                .transform(SsaDestruction::run));
+        REWRITES.put("dead code elimination", program -> new DeadCodeElimination().run(program.transform(SsaConstruction::run))
+                .transform(SsaDestruction::run));
+        REWRITES.put("constants then dead code", program -> new DeadCodeElimination().run(new ConstantPropagation()
+                .run(program.transform(SsaConstruction::run))).transform(SsaDestruction::run));
+        REWRITES.put("local value numbering", program -> new ValueNumbering(false, true).run(program.transform(SsaConstruction::run))
+                .transform(SsaDestruction::run));
+        REWRITES.put("value numbering", program -> new ValueNumbering(true, true).run(program.transform(SsaConstruction::run))
+                .transform(SsaDestruction::run));
+        REWRITES.put("loop optimisation", program -> new LoopOptimization().run(program.transform(SsaConstruction::run))
+                .transform(SsaDestruction::run));
+        //generated functions are over the default budget
+        REWRITES.put("inlining", program -> new Inlining(INLINING_BUDGET).run(program));
+        REWRITES.put("constants then call evaluation", program -> new CallEvaluation(CallEvaluation.DEFAULT_BUDGET)
+                .run(new ConstantPropagation().run(program.transform(SsaConstruction::run))).transform(SsaDestruction::run));
+        REWRITES.put("-O1", program -> {
+            PassManager manager = new PassManager(NullSink.INSTANCE);
+            manager.register("inline", () -> new Inlining(INLINING_BUDGET));
+            return manager.run(program, PassManager.O1);
+        });
+        REWRITES.put("-O1 twice", program -> {
+            PassManager manager = new PassManager(NullSink.INSTANCE);
+            manager.register("inline", () -> new Inlining(INLINING_BUDGET));
+            List<String> twice = new ArrayList<>(PassManager.O1);
+            twice.addAll(PassManager.O1);
+            return manager.run(program, twice);
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("100 functions", () -> ProgramGenerator.generate(100)));
+        generated.add(Workload.generated("nested 40", () -> ProgramGenerator.generateNested(40)));
+        generated.add(Workload.generated("10 loops", () -> ProgramGenerator.generateLoops(10, 1000)));
+        generated.add(Workload.generated("10 loops by -3", () -> ProgramGenerator.generateLoops(10, -3)));
+        generated.add(Workload.generated("500 conditions", () -> ProgramGenerator.generateConditions(500)));
+        generated.addAll(Workload.random("random", 300, 40));
+        generated.addAll(Workload.random("large random", 3, 3000));
+        List<Workload> workloads = Workload.select(Arrays.asList(args), true, generated);
+
+        int checked = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (Workload workload : workloads) {
+            String name = workload.getName();
+            IrProgram program = lower(workload);
+            if (program == null) {
+                skipped++;
+                continue;
+            }
+            IrInterpreter.Outcome expected = new IrInterpreter(program, BUDGET).run();
+            if (expected.getStatus() == IrInterpreter.Status.OUT_OF_STEPS) {
+                System.out.println(name + ": " + expected.describe(program) + ", skipped");
+                skipped++;
+                continue;
+            }
+            boolean same = true;
+            for (Map.Entry<String, UnaryOperator<IrProgram>> rewrite : REWRITES.entrySet()) {
+                IrProgram rewritten = rewrite.getValue().apply(program);
+                IrInterpreter.Outcome outcome = new IrInterpreter(rewritten, BUDGET).run();
+                if (!outcome.sameAs(expected)) {
+                    System.out.println(name + ": " + rewrite.getKey() + " changed the outcome");
+                    System.out.println("  expected " + expected.describe(program));
+                    System.out.println("  got      " + outcome.describe(rewritten));
+                    same = false;
+                }
+            }
+            for (Map.Entry<String, Function<IrProgram, IrInterpreter.Outcome>> executor : EXECUTORS.entrySet()) {
+                IrInterpreter.Outcome outcome;
+                try {
+                    outcome = executor.getValue().apply(program);
+                } catch (IllegalArgumentException e) {
+                    //eg. a function too large for a JVM method, not a wrong answer
+                    System.out.println(name + ": " + executor.getKey() + " can't run it, " + e.getMessage());
+                    continue;
+                }
+                if (!outcome.sameAs(expected)) {
+                    System.out.println(name + ": " + executor.getKey() + " ran it differently");
+                    System.out.println("  expected " + expected.describe(program));
+                    System.out.println("  got      " + outcome.describe(program));
+                    same = false;
+                }
+            }
+            if (same) {
+                checked++;
+            } else {
+                failed++;
+            }
+        }
+        System.out.println(checked + " programmes kept their outcome through " + REWRITES.size() + " rewrites and "
+                + EXECUTORS.size() + " executors, "
+                + failed + " didn't, " + skipped + " skipped");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    //The programme's IR, null (after saying why) if it doesn't parse or has semantic errors
+    private static IrProgram lower(Workload workload) throws IOException {
+        String name = workload.getName();
+        if (workload.isFile()) {
+            IrProgram program = IrDump.lower(name, NullSink.INSTANCE);
+            if (program == null) {
+                System.out.println(name + ": has errors, skipped");
+            }
+            return program;
+        }
+        try {
+            IrProgram program = IrDump.lower(workload.parse());
+            if (program == null) {
+                System.out.println(name + ": generated with semantic errors");
+            }
+            return program;
+        } catch (ParseException e) {
+            System.out.println(name + ": generated but could not be parsed: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+//Compact, array backed syntax tree. Node i is described by kind[i] (a CCALParserTreeConstants id), token[i] (index
+//of the node's token in the token tables, or NO_TOKEN), firstChild[i] and nextSibling[i]. The parser builds it while
+//parsing (CCALParser.flatProgramme), so nodes are stored in the order JJTree closes them: children before their
+//parent and the root last. Token images are deduplicated and tokens are not kept, which also drops the Token.next
+//chain a SimpleNode tree keeps reachable. The checker and IrBuilder walk it with a Cursor, and the symbol the checker
+//resolves a name to is bound to the name's token slot.
+public class FlatTree implements CCALParserTreeConstants {
+
+    static final int NONE = -1;
+    static final int NO_TOKEN = -1;
+
+    private byte[] kind;
+    private int[] token;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int size = 0;
+    private int root = NONE;
+
+    private String[] images;
+    private int[] lines;
+    private int[] columns;
+    private int[] identifiers; //InternedToken.identifierId of each token
+    private int tokenCount = 0;
+    //Symbol bound to each token by the checker
+    private Symbol[] symbols;
+
+    private FlatTree(int capacity) {
+        kind = new byte[capacity];
+        token = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        images = new String[16];
+        lines = new int[16];
+        columns = new int[16];
+        identifiers = new int[16];
+    }
+
+    //Takes nodes as they are closed. The children of a node are always the last nodes closed that haven't been given a
+    //parent yet, so a stack of their indices mirrors the JJTree node stack and no node has to be kept.
+    static final class Builder {
+
+        private final FlatTree tree = new FlatTree(64);
+        private final HashMap<String, String> pool = new HashMap<>();
+        private int[] open = new int[64];
+        private int depth = 0;
+
+        void close(Node node) {
+            int index = tree.append(node, pool);
+            int next = NONE;
+            for (int i = node.jjtGetNumChildren(); i > 0; i--) {
+                int child = open[--depth];
+                tree.nextSibling[child] = next;
+                next = child;
+            }
+            tree.firstChild[index] = next;
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+            }
+            open[depth++] = index;
+        }
+
+        //The tree under the last node closed
+        FlatTree build() {
+            if (depth != 1) {
+                throw new IllegalStateException(depth + " nodes have no parent");
+            }
+            tree.root = open[0];
+            tree.trim();
+            return tree;
+        }
+    }
+
+    private int append(Node node, HashMap<String, String> pool) {
+        if (size == kind.length) {
+            int capacity = size * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            token = Arrays.copyOf(token, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+        }
+        int index = size++;
+        kind[index] = (byte) node.getId();
+        firstChild[index] = NONE;
+        nextSibling[index] = NONE;
+        token[index] = NO_TOKEN;
+
+        Object value = node instanceof SimpleNode ? ((SimpleNode) node).jjtGetValue() : null;
+        if (value instanceof Token) {
+            Token t = (Token) value;
+            if (tokenCount == images.length) {
+                images = Arrays.copyOf(images, tokenCount * 2);
+                lines = Arrays.copyOf(lines, tokenCount * 2);
+                columns = Arrays.copyOf(columns, tokenCount * 2);
+                identifiers = Arrays.copyOf(identifiers, tokenCount * 2);
+            }
+            String image = pool.get(t.image);
+            if (image == null) {
+                image = t.image;
+                pool.put(image, image);
+            }
+            images[tokenCount] = image;
+            lines[tokenCount] = t.beginLine;
+            columns[tokenCount] = t.beginColumn;
+            identifiers[tokenCount] = t.identifierId;
+            token[index] = tokenCount++;
+        }
+        return index;
+    }
+
+    private void trim() {
+        kind = Arrays.copyOf(kind, size);
+        token = Arrays.copyOf(token, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        images = Arrays.copyOf(images, tokenCount);
+        lines = Arrays.copyOf(lines, tokenCount);
+        columns = Arrays.copyOf(columns, tokenCount);
+        identifiers = Arrays.copyOf(identifiers, tokenCount);
+        symbols = new Symbol[tokenCount];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int root() {
+        return root;
+    }
+
+    int kind(int node) {
+        return kind[node];
+    }
+
+    int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    int token(int node) {
+        return token[node];
+    }
+
+    String image(int node) {
+        return token[node] == NO_TOKEN ? null : images[token[node]];
+    }
+
+    int line(int node) {
+        return token[node] == NO_TOKEN ? 0 : lines[token[node]];
+    }
+
+    int column(int node) {
+        return token[node] == NO_TOKEN ? 0 : columns[token[node]];
+    }
+
+    //Id the token manager interned an identifier under, -1 for any other node
+    int identifier(int node) {
+        return token[node] == NO_TOKEN ? -1 : identifiers[token[node]];
+    }
+
+    //Symbol bound to a name, null if none is
+    Symbol symbol(int node) {
+        return token[node] == NO_TOKEN ? null : symbols[token[node]];
+    }
+
+    //Bind a symbol to a name so later stages find it without looking the name up again. Names under different
+    //nodes have different token slots, so function bodies can be bound from different threads.
+    void bind(int node, Symbol symbol) {
+        symbols[token[node]] = symbol;
+    }
+
+    int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    //The i-th child, NONE if there are fewer
+    int child(int node, int i) {
+        int child = firstChild[node];
+        while (i-- > 0 && child != NONE) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    Cursor cursor() {
+        return new Cursor(root);
+    }
+
+    //Walk the whole tree in pre-order, the visitor decides whether to go into each node's children
+    void accept(FlatTreeVisitor visitor) {
+        accept(visitor, root);
+    }
+
+    //Walk the subtree under node the same way, the cursor treats node as the root
+    void accept(FlatTreeVisitor visitor, int node) {
+        Cursor cursor = new Cursor(node);
+        while (true) {
+            if (visitor.enter(cursor) && cursor.down()) {
+                continue;
+            }
+            visitor.leave(cursor);
+            while (!cursor.next()) {
+                if (!cursor.up()) {
+                    return;
+                }
+                visitor.leave(cursor);
+            }
+        }
+    }
+
+    //Same layout as SimpleNode.dump
+    void dump(final ReportSink out) {
+        if (!out.isEnabled()) {
+            return;
+        }
+        accept(new FlatTreeVisitor() {
+            @Override
+            public boolean enter(Cursor cursor) {
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < cursor.depth(); i++) {
+                    line.append(' ');
+                }
+                out.println(line.append(jjtNodeName[cursor.kind()]).toString());
+                return true;
+            }
+
+            @Override
+            public void leave(Cursor cursor) {}
+        });
+    }
+
+    //Position in the tree. Moving down pushes the current node so up() can get back without parent pointers.
+    class Cursor {
+        private int node;
+        private int[] parents = new int[32];
+        private int depth = 0;
+
+        private Cursor(int root) {
+            node = root;
+        }
+
+        int node() {
+            return node;
+        }
+
+        int depth() {
+            return depth;
+        }
+
+        //Node the cursor came down from, NONE at the node the walk started from
+        int parent() {
+            return depth == 0 ? NONE : parents[depth - 1];
+        }
+
+        int kind() {
+            return kind[node];
+        }
+
+        String image() {
+            return FlatTree.this.image(node);
+        }
+
+        int line() {
+            return FlatTree.this.line(node);
+        }
+
+        int column() {
+            return FlatTree.this.column(node);
+        }
+
+        int childCount() {
+            return FlatTree.this.childCount(node);
+        }
+
+        //Move to the first child, stays put and returns false for a leaf
+        boolean down() {
+            int child = firstChild[node];
+            if (child == NONE) {
+                return false;
+            }
+            if (depth == parents.length) {
+                parents = Arrays.copyOf(parents, depth * 2);
+            }
+            parents[depth++] = node;
+            node = child;
+            return true;
+        }
+
+        //Move to the next sibling, stays put and returns false for the last child
+        boolean next() {
+            if (depth == 0 || nextSibling[node] == NONE) {
+                return false;
+            }
+            node = nextSibling[node];
+            return true;
+        }
+
+        boolean up() {
+            if (depth == 0) {
+                return false;
+            }
+            node = parents[--depth];
+            return true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Checks that the FlatTree the parser builds stands in for the SimpleNode tree of the same programme: FlatTree.dump has
+//to print the same text as CCALParser.dump, every node has to keep its token's image, position and identifier id, and
+//a programme that checks without errors has to lower.
+//Usage: java FlatTreeCheck [file...], with no files the test*.ccal programmes and generated ones are used
+public class FlatTreeCheck {
+
+    public static void main(String[] args) throws IOException {
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("1000 functions", () -> ProgramGenerator.generate(1000)));
+        generated.add(Workload.generated("nested 40", () -> ProgramGenerator.generateNested(40)));
+        generated.add(Workload.generated("10 loops", () -> ProgramGenerator.generateLoops(10, 1000)));
+        generated.add(Workload.generated("500 conditions", () -> ProgramGenerator.generateConditions(500)));
+        generated.add(Workload.generated("10 functions and 1000 hot calls", () -> ProgramGenerator.generateHotCalls(10, 1000)));
+        generated.addAll(Workload.random("random", 100, 40));
+
+        int same = 0;
+        int lowered = 0;
+        int failed = 0;
+        for (Workload workload : Workload.select(Arrays.asList(args), true, generated)) {
+            String name = workload.getName();
+            SimpleNode root;
+            FlatTree tree;
+            try {
+                root = workload.parseNodes();
+                tree = workload.parse();
+            } catch (ParseException e) {
+                System.out.println(name + ": could not be parsed, skipped");
+                continue;
+            }
+            boolean matches = true;
+
+            MemorySink nodes = new MemorySink();
+            CCALParser.dump(root, "", nodes);
+            MemorySink flat = new MemorySink();
+            tree.dump(flat);
+            if (!nodes.toString().equals(flat.toString())) {
+                System.out.println(name + ": the dumps differ at line " + firstDifference(nodes.toString(), flat.toString()));
+                matches = false;
+            }
+
+            MemorySink nodeTokens = new MemorySink();
+            tokens(root, nodeTokens);
+            String flatTokens = tokens(tree);
+            if (!nodeTokens.toString().equals(flatTokens)) {
+                System.out.println(name + ": the tokens differ at node " + firstDifference(nodeTokens.toString(), flatTokens));
+                matches = false;
+            }
+
+            try {
+                if (IrDump.lower(tree) != null) {
+                    lowered++;
+                }
+            } catch (IllegalStateException e) {
+                System.out.println(name + ": could not be lowered. " + e.getMessage());
+                matches = false;
+            }
+            if (matches) {
+                same++;
+            } else {
+                failed++;
+            }
+        }
+        System.out.println(same + " programmes came out the same from both trees, " + failed + " didn't, " + lowered
+                + " of them checked and were lowered");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    //Token of every node in pre-order, one line each
+    private static void tokens(Node node, ReportSink out) {
+        Object value = ((SimpleNode) node).jjtGetValue();
+        if (value instanceof Token) {
+            Token token = (Token) value;
+            out.println(token.image + " " + token.beginLine + ":" + token.beginColumn + " " + token.identifierId);
+        } else {
+            out.println("-");
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            tokens(node.jjtGetChild(i), out);
+        }
+    }
+
+    private static String tokens(final FlatTree tree) {
+        final MemorySink out = new MemorySink();
+        tree.accept(new FlatTreeVisitor() {
+            @Override
+            public boolean enter(FlatTree.Cursor cursor) {
+                int node = cursor.node();
+                if (tree.token(node) == FlatTree.NO_TOKEN) {
+                    out.println("-");
+                } else {
+                    out.println(tree.image(node) + " " + tree.line(node) + ":" + tree.column(node) + " " + tree.identifier(node));
+                }
+                return true;
+            }
+
+            @Override
+            public void leave(FlatTree.Cursor cursor) {}
+        });
+        return out.toString();
+    }
+
+    private static int firstDifference(String expected, String actual) {
+        String[] expectedLines = expected.split("\n", -1);
+        String[] actualLines = actual.split("\n", -1);
+        int line = 0;
+        while (line < expectedLines.length && line < actualLines.length && expectedLines[line].equals(actualLines[line])) {
+            line++;
+        }
+        return line + 1;
+    }
+}
@@ -0,0 +1,8 @@
+//Callback for FlatTree.accept. enter() returns whether the walk should go into the node's children,
+//leave() is called once all of them have been visited (or straight away when they are skipped).
+interface FlatTreeVisitor {
+
+    boolean enter(FlatTree.Cursor cursor);
+
+    void leave(FlatTree.Cursor cursor);
+}
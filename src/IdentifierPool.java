@@ -0,0 +1,38 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+//Interns identifier images for one parse. Every distinct name gets a dense id (0, 1, 2, ...) so later phases
+//can index arrays by id instead of hashing and comparing strings.
+class IdentifierPool {
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[64];
+    private int size = 0;
+
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    //Id of a name that has already been seen, or -1
+    int lookup(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+}
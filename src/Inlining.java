@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.List;
+
+//Replaces calls of small functions with a copy of their code, over lowered programmes that aren't in SSA form.
+//Functions are handled callees first along the CallGraph, so what gets copied already has its own small calls
+//inlined. A function is small when its code, after that, is at most the budget's number of instructions, and
+//functions that can end up calling themselves are never inlined.
+//The copy gets fresh temps and labels, and the callee's parameters and locals become fresh temps of the caller:
+//parameters start as copies of the arguments and locals as 0 or false, as they would in a new frame. A return
+//copies its value to the call's destination and goes to the code after the call.
+final class Inlining implements Pass {
+
+    static final int DEFAULT_BUDGET = 40;
+
+    private final int budget;
+    private int sites = 0;
+    private int recursive = 0;
+    private int tooLarge = 0;
+    private int growth = 0;
+
+    Inlining(int budget) {
+        this.budget = budget;
+    }
+
+    //Calls replaced by the callee's code
+    int getSites() {
+        return sites;
+    }
+
+    //Calls left as they are because the callee is recursive
+    int getRecursive() {
+        return recursive;
+    }
+
+    //Calls left as they are because the callee is over the budget
+    int getTooLarge() {
+        return tooLarge;
+    }
+
+    //Instructions added over the programme, less the calls and arguments they replace
+    int getGrowth() {
+        return growth;
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Arrays.asList(PassManager.OUT_OF_SSA, PassManager.CALL_GRAPH);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program, manager.getAnalysis(PassManager.CALL_GRAPH, CallGraph.class));
+    }
+
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + sites + " calls inlined, " + recursive + " recursive, " + tooLarge + " over budget, "
+                + growth + " instructions of growth");
+    }
+
+    //The programme with the calls inlined, the same programme if there are none to inline
+    IrProgram run(IrProgram program) {
+        return run(program, new CallGraph(program));
+    }
+
+    IrProgram run(IrProgram program, CallGraph calls) {
+        IrFunction[] functions = program.getFunctions().toArray(new IrFunction[0]);
+        for (int f : calls.order()) {
+            functions[f] = inline(program, functions, calls, functions[f]);
+        }
+        if (sites == 0) {
+            return program;
+        }
+        int before = program.size();
+        IrProgram inlined = program.replace(Arrays.asList(functions));
+        growth += inlined.size() - before;
+        return inlined;
+    }
+
+    private IrFunction inline(IrProgram program, IrFunction[] functions, CallGraph calls, IrFunction caller) {
+        IrFunction out = null;
+        int copied = 0; //instructions of the caller already in out
+        for (int i = 0; i < caller.size(); i++) {
+            if (caller.opcode(i) == Opcode.PHI) {
+                throw new IllegalArgumentException(caller.getName() + " is in SSA form");
+            }
+            if (caller.opcode(i) != Opcode.CALL) {
+                continue;
+            }
+            int callee = Operand.value(caller.left(i));
+            int arguments = Operand.value(caller.right(i));
+            if (calls.isRecursive(callee)) {
+                recursive++;
+                continue;
+            }
+            if (functions[callee].size() > budget) {
+                tooLarge++;
+                continue;
+            }
+            if (!hasArguments(caller, i, arguments)) {
+                continue;
+            }
+            if (out == null) {
+                out = caller.emptyCopy();
+            }
+            for (int j = copied; j < i - arguments; j++) {
+                out.emit(caller.opcode(j), caller.dest(j), caller.left(j), caller.right(j));
+            }
+            copy(program, functions[callee], caller, i, out);
+            copied = i + 1;
+            sites++;
+        }
+        if (out == null) {
+            return caller;
+        }
+        for (int j = copied; j < caller.size(); j++) {
+            out.emit(caller.opcode(j), caller.dest(j), caller.left(j), caller.right(j));
+        }
+        return out;
+    }
+
+    //Whether the call's arguments are the ARGs just before it
+    private static boolean hasArguments(IrFunction caller, int call, int arguments) {
+        for (int k = 1; k <= arguments; k++) {
+            if (call - k < 0 || caller.opcode(call - k) != Opcode.ARG) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Emit the callee's code in place of the call at the index and the ARGs before it
+    private static void copy(IrProgram program, IrFunction callee, IrFunction caller, int call, IrFunction out) {
+        long[] temps = new long[callee.tempCount()];
+        for (int t = 0; t < temps.length; t++) {
+            temps[t] = Operand.temp(out.newTemp());
+        }
+        int[] labels = new int[callee.labelCount()];
+        for (int l = 0; l < labels.length; l++) {
+            labels[l] = out.newLabel();
+        }
+        long[] symbols = new long[program.symbolCount()]; //fresh temp of each parameter and local, ABSENT for others
+        int[] params = callee.getParams();
+        int arguments = Operand.value(caller.right(call));
+        for (int p = 0; p < params.length; p++) {
+            symbols[params[p]] = Operand.temp(out.newTemp());
+            out.emit(Opcode.COPY, symbols[params[p]], caller.left(call - arguments + p), Operand.ABSENT);
+        }
+        for (int id : callee.getLocals()) {
+            symbols[id] = Operand.temp(out.newTemp());
+            long initial = program.symbolType(id).equals("boolean") ? Operand.bool(false) : Operand.integer(0);
+            out.emit(Opcode.COPY, symbols[id], initial, Operand.ABSENT);
+        }
+
+        long after = Operand.label(out.newLabel());
+        long dest = caller.dest(call);
+        for (int i = 0; i < callee.size(); i++) {
+            Opcode opcode = callee.opcode(i);
+            if (opcode == Opcode.RETURN) {
+                if (!Operand.isAbsent(dest)) {
+                    out.emit(Opcode.COPY, dest, rename(callee.left(i), temps, labels, symbols), Operand.ABSENT);
+                }
+                if (i + 1 < callee.size()) {
+                    out.emit(Opcode.JUMP, Operand.ABSENT, after, Operand.ABSENT);
+                }
+                continue;
+            }
+            long left = opcode == Opcode.CALL ? callee.left(i) : rename(callee.left(i), temps, labels, symbols);
+            out.emit(opcode, rename(callee.dest(i), temps, labels, symbols), left, rename(callee.right(i), temps, labels, symbols));
+        }
+        out.emit(Opcode.LABEL, Operand.ABSENT, after, Operand.ABSENT);
+    }
+
+    private static long rename(long operand, long[] temps, int[] labels, long[] symbols) {
+        switch (Operand.kind(operand)) {
+            case Operand.TEMP:
+                return temps[Operand.value(operand)];
+            case Operand.LABEL:
+                return Operand.label(labels[Operand.value(operand)]);
+            case Operand.SYMBOL:
+                long renamed = symbols[Operand.value(operand)];
+                return Operand.isAbsent(renamed) ? operand : renamed;
+            default:
+                return operand;
+        }
+    }
+}
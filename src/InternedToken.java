@@ -0,0 +1,6 @@
+//Base class of the generated Token (TOKEN_EXTENDS). Identifier tokens get the id the token manager's
+//IdentifierPool gave their image, every other token keeps -1.
+public class InternedToken {
+
+    public int identifierId = -1;
+}
@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Lowers a checked programme to three address code from its FlatTree. Declarations and statements are lowered as the
+//cursor walks the tree, expressions and conditions by following node indices. Names are looked up through the symbol
+//the Visitor bound to each name, so this must only run on a programme that checked without errors.
+public class IrBuilder implements FlatTreeVisitor, CCALParserTreeConstants {
+
+    private final FlatTree tree;
+    private final IrProgram program = new IrProgram();
+    private final Map<Symbol, Integer> symbolIds = new IdentityHashMap<>();
+    private final Map<Symbol, Integer> functionIndexes = new IdentityHashMap<>();
+    //Constants declared at programme level, they are given their values at the start of main
+    private final List<Integer> globalConstants = new ArrayList<>();
+    private IrFunction function;
+    //index of the function being lowered, what its symbols are owned by
+    private int functionIndex = IrProgram.GLOBAL;
+
+    private IrBuilder(FlatTree tree) {
+        this.tree = tree;
+    }
+
+    static IrProgram build(FlatTree tree) {
+        IrBuilder builder = new IrBuilder(tree);
+        tree.accept(builder);
+        return builder.program;
+    }
+
+    @Override
+    public boolean enter(FlatTree.Cursor cursor) {
+        int node = cursor.node();
+        switch (cursor.kind()) {
+            case JJTPROGRAMME:
+            case JJTDECLARATIONLIST:
+            case JJTFUNCTIONBODY:
+            case JJTPARAMLIST:
+            case JJTSTATEMENTBLOCK:
+                return true;
+            case JJTFUNCTIONLIST:
+                //every function gets its index up front so calls can refer to it whatever order they are lowered in
+                for (int child = tree.firstChild(node); child != FlatTree.NONE; child = tree.nextSibling(child)) {
+                    Symbol symbol = bound(tree.child(child, 1));
+                    int id = program.addSymbol(symbol.getName(), symbol.getType(), SymbolType.FUNC, IrProgram.GLOBAL);
+                    symbolIds.put(symbol, id);
+                    functionIndexes.put(symbol, program.addFunction(new IrFunction(symbol.getName(), id, symbol.getType())));
+                }
+                return true;
+            case JJTMAIN:
+                function = new IrFunction("main", -1, null);
+                functionIndex = program.addFunction(function);
+                for (int constant : globalConstants) {
+                    assign(constant);
+                }
+                return true;
+            case JJTFUNCTION:
+                functionIndex = functionIndexes.get(bound(tree.child(node, 1)));
+                function = program.function(functionIndex);
+                tree.accept(this, tree.child(node, 2));
+                tree.accept(this, tree.child(node, 3));
+                return false;
+            case JJTRETURNSTATEMENT: {
+                int returned = tree.firstChild(node);
+                long value = returned != FlatTree.NONE ? expression(returned) : Operand.ABSENT;
+                emit(Opcode.RETURN, Operand.ABSENT, value, Operand.ABSENT);
+                return false;
+            }
+            case JJTPARAM:
+                function.addParam(declare(tree.firstChild(node)));
+                return false;
+            case JJTCONSTDECLARATION: {
+                int id = declare(tree.firstChild(node));
+                if (function == null) {
+                    globalConstants.add(node);
+                } else {
+                    function.addLocal(id);
+                    assign(node);
+                }
+                return false;
+            }
+            case JJTVARDECLARATION: {
+                int id = declare(tree.firstChild(node));
+                if (function != null) {
+                    function.addLocal(id);
+                }
+                return false;
+            }
+            case JJTIF: {
+                //  ifFalse c goto else; then; goto end; else: otherwise; end:
+                long otherwise = Operand.label(function.newLabel());
+                long end = Operand.label(function.newLabel());
+                int condition = tree.firstChild(node);
+                int then = tree.nextSibling(condition);
+                emit(Opcode.JUMP_IF_FALSE, Operand.ABSENT, condition(tree.firstChild(condition)), otherwise);
+                tree.accept(this, then);
+                emit(Opcode.JUMP, Operand.ABSENT, end, Operand.ABSENT);
+                emit(Opcode.LABEL, Operand.ABSENT, otherwise, Operand.ABSENT);
+                tree.accept(this, tree.nextSibling(then));
+                emit(Opcode.LABEL, Operand.ABSENT, end, Operand.ABSENT);
+                return false;
+            }
+            case JJTWHILE: {
+                //  top: ifFalse c goto end; body; goto top; end:
+                long top = Operand.label(function.newLabel());
+                long end = Operand.label(function.newLabel());
+                int condition = tree.firstChild(node);
+                emit(Opcode.LABEL, Operand.ABSENT, top, Operand.ABSENT);
+                emit(Opcode.JUMP_IF_FALSE, Operand.ABSENT, condition(tree.firstChild(condition)), end);
+                tree.accept(this, tree.nextSibling(condition));
+                emit(Opcode.JUMP, Operand.ABSENT, top, Operand.ABSENT);
+                emit(Opcode.LABEL, Operand.ABSENT, end, Operand.ABSENT);
+                return false;
+            }
+            case JJTFUNCTIONCALL:
+                call(node, Operand.ABSENT); //a call statement, the result is dropped
+                return false;
+            case JJTASSIGNMENT:
+                assign(node);
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void leave(FlatTree.Cursor cursor) {
+        int kind = cursor.kind();
+        if (kind == JJTMAIN) {
+            emit(Opcode.RETURN, Operand.ABSENT, Operand.ABSENT, Operand.ABSENT);
+        }
+        if (kind == JJTMAIN || kind == JJTFUNCTION) {
+            function = null;
+            functionIndex = IrProgram.GLOBAL;
+        }
+    }
+
+    //An assignment or constant declaration, the value is computed straight into the symbol
+    private void assign(int node) {
+        long target = use(tree.firstChild(node));
+        expressionInto(target, tree.child(node, tree.childCount(node) - 1));
+    }
+
+    //Lower an expression and return the operand holding its value, variables and literals are used as they are
+    private long expression(int node) {
+        int kind = tree.kind(node);
+        switch (kind) {
+            case JJTVARIABLE:
+                return use(node);
+            case JJTDIGIT:
+                return Operand.integer(Integer.parseInt(tree.image(node)));
+            case JJTBOOLEAN:
+                return Operand.bool(Boolean.parseBoolean(tree.image(node)));
+            default:
+                if (Operators.isComparison(kind) || kind == JJTNOT) {
+                    return condition(node);
+                }
+                long temp = Operand.temp(function.newTemp());
+                expressionInto(temp, node);
+                return temp;
+        }
+    }
+
+    //Lower an expression so its value ends up in dest
+    private void expressionInto(long dest, int node) {
+        int kind = tree.kind(node);
+        if (kind == JJTFUNCTIONCALL) {
+            call(node, dest);
+        } else if (Operators.isArithmetic(kind)) {
+            int left = tree.firstChild(node);
+            long leftValue = expression(left);
+            long rightValue = expression(tree.nextSibling(left));
+            emit(Opcode.forKind(kind), dest, leftValue, rightValue);
+        } else if (kind == JJTMINUS) {
+            emit(Opcode.NEG, dest, expression(tree.firstChild(node)), Operand.ABSENT);
+        } else {
+            emit(Opcode.COPY, dest, expression(node), Operand.ABSENT);
+        }
+    }
+
+    //Lower a condition and return the operand holding its value. The parser builds conditions as right leaning
+    //chains, a < 1 && b < 2 is LessThan(a, And(1, LessThan(b, 2))), so the chain is flattened back into its operands
+    //and operators and combined again with the usual precedence: comparisons first, then &&, then ||. A comparison
+    //on the left of a chain came from brackets and is a condition of its own. Both sides of && and || are evaluated.
+    private long condition(int node) {
+        int kind = tree.kind(node);
+        if (kind == JJTNOT) {
+            long value = condition(tree.firstChild(node));
+            long temp = Operand.temp(function.newTemp());
+            emit(Opcode.NOT, temp, value, Operand.ABSENT);
+            return temp;
+        }
+        if (!Operators.isComparison(kind)) {
+            return expression(node);
+        }
+
+        List<Long> values = new ArrayList<>();
+        List<Opcode> operators = new ArrayList<>();
+        int rest = node;
+        while (Operators.isComparison(tree.kind(rest))) {
+            int left = tree.firstChild(rest);
+            values.add(condition(left));
+            operators.add(Opcode.forKind(tree.kind(rest)));
+            rest = tree.nextSibling(left);
+        }
+        values.add(condition(rest));
+        return combine(function, values, operators);
+    }
+
+    //Combine the operands of a flattened condition chain, comparisons first, then &&, then ||
+    static long combine(IrFunction function, List<Long> values, List<Opcode> operators) {
+        for (int precedence = 2; precedence >= 0; precedence--) {
+            List<Long> combinedValues = new ArrayList<>();
+            List<Opcode> remaining = new ArrayList<>();
+            long value = values.get(0);
+            for (int i = 0; i < operators.size(); i++) {
+                Opcode operator = operators.get(i);
+                if (precedence(operator) == precedence) {
+                    long temp = Operand.temp(function.newTemp());
+                    function.emit(operator, temp, value, values.get(i + 1));
+                    value = temp;
+                } else {
+                    combinedValues.add(value);
+                    remaining.add(operator);
+                    value = values.get(i + 1);
+                }
+            }
+            combinedValues.add(value);
+            values = combinedValues;
+            operators = remaining;
+        }
+        return values.get(0);
+    }
+
+    private static int precedence(Opcode operator) {
+        if (operator == Opcode.OR) {
+            return 0;
+        }
+        return operator == Opcode.AND ? 1 : 2;
+    }
+
+    //  param a; param b; dest = call f, 2
+    private void call(int node, long dest) {
+        int name = tree.firstChild(node);
+        int count = 0;
+        for (int arguments = tree.nextSibling(name); arguments != FlatTree.NONE; arguments = tree.nextSibling(arguments)) {
+            for (int argument = tree.firstChild(arguments); argument != FlatTree.NONE; argument = tree.nextSibling(argument)) {
+                emit(Opcode.ARG, Operand.ABSENT, use(tree.firstChild(argument)), Operand.ABSENT);
+                count++;
+            }
+        }
+        int index = functionIndexes.get(bound(name));
+        emit(Opcode.CALL, dest, Operand.function(index), Operand.integer(count));
+    }
+
+    //Give the symbol declared by the name node an id, owned by the function being lowered
+    private int declare(int name) {
+        Symbol symbol = bound(name);
+        int id = program.addSymbol(symbol.getName(), symbol.getType(), symbol.getSymbolType(), functionIndex);
+        symbolIds.put(symbol, id);
+        return id;
+    }
+
+    private long use(int variable) {
+        Integer id = symbolIds.get(bound(variable));
+        if (id == null) {
+            throw new IllegalStateException("\"" + tree.image(variable) + "\" is used before it is declared");
+        }
+        return Operand.symbol(id);
+    }
+
+    private Symbol bound(int variable) {
+        Symbol symbol = tree.symbol(variable);
+        if (symbol == null) {
+            throw new IllegalStateException("\"" + tree.image(variable) + "\" was not resolved by the semantic check");
+        }
+        return symbol;
+    }
+
+    private void emit(Opcode opcode, long dest, long left, long right) {
+        function.emit(opcode, dest, left, right);
+    }
+}
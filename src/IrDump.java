@@ -0,0 +1,61 @@
+import java.io.File;
+import java.io.IOException;
+
+//Prints the three address code of each programme as basic blocks and as laid out linear code. With -ssa the blocks
+//are in SSA form and the laid out code is what it becomes out of SSA form.
+//Usage: java IrDump [-ssa] file...
+public class IrDump {
+
+    public static void main(String[] args) throws IOException {
+        boolean ssa = args.length > 0 && args[0].equals("-ssa");
+        if (args.length == (ssa ? 1 : 0)) {
+            System.out.println("Usage: java IrDump [-ssa] file...");
+            return;
+        }
+        ReportSink out = new WriterSink(System.out);
+        try {
+            for (int i = ssa ? 1 : 0; i < args.length; i++) {
+                String file = args[i];
+                out.println("---- " + file + " ----");
+                IrProgram program = lower(file, out);
+                if (program == null) {
+                    continue;
+                }
+                if (ssa) {
+                    program = program.transform(SsaConstruction::run);
+                }
+                IrPrinter printer = new IrPrinter(out);
+                for (IrFunction function : program.getFunctions()) {
+                    ControlFlowGraph graph = ControlFlowGraph.of(function);
+                    printer.print(program, graph);
+                    printer.printLaidOut(program, ssa ? ControlFlowGraph.of(SsaDestruction.run(function)).layout() : graph.layout());
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    //Parse and check the file, returns null (after saying why) if it can't be lowered
+    static IrProgram lower(String file, ReportSink out) throws IOException {
+        FlatTree tree;
+        try {
+            tree = CCALParser.parse(new File(file));
+        } catch (ParseException e) {
+            out.println("Could not be parsed: " + e.getMessage());
+            return null;
+        }
+        IrProgram program = lower(tree);
+        if (program == null) {
+            out.println("Has semantic errors");
+        }
+        return program;
+    }
+
+    //Check and lower a parsed programme, null if it has semantic errors
+    static IrProgram lower(FlatTree tree) {
+        Visitor visitor = new Visitor(NullSink.INSTANCE);
+        visitor.check(tree);
+        return visitor.getErrorCount() == 0 ? IrBuilder.build(tree) : null;
+    }
+}
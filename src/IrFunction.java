@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+//Three address code of one function or main, stored as parallel arrays with one entry per instruction: the Opcode
+//ordinal, the destination and the two sources, each an Operand. Temps and labels are numbered per function.
+final class IrFunction {
+
+    private final String name;
+    //Symbol id of the function in its IrProgram, -1 for main
+    private final int symbol;
+    private final String returnType;
+    private int[] params = new int[0];
+    private int[] locals = new int[0];
+
+    private int[] opcodes = new int[16];
+    private long[] dests = new long[16];
+    private long[] lefts = new long[16];
+    private long[] rights = new long[16];
+    private int size = 0;
+    //Arguments of every PHI, each PHI's are consecutive
+    private long[] phiArguments = new long[0];
+    private int phiArgumentsSize = 0;
+    private int temps = 0;
+    private int labels = 0;
+
+    IrFunction(String name, int symbol, String returnType) {
+        this.name = name;
+        this.symbol = symbol;
+        this.returnType = returnType;
+    }
+
+    //A function with the same name, parameters, locals and temp and label numbering but no instructions, for a
+    //pass to emit its rewritten code into
+    IrFunction emptyCopy() {
+        IrFunction copy = new IrFunction(name, symbol, returnType);
+        copy.params = params;
+        copy.locals = locals;
+        copy.temps = temps;
+        copy.labels = labels;
+        return copy;
+    }
+
+    //A function with the same code, for a pass that changes only a few instructions in place
+    IrFunction copy() {
+        IrFunction copy = emptyCopy();
+        copy.opcodes = Arrays.copyOf(opcodes, Math.max(16, size));
+        copy.dests = Arrays.copyOf(dests, copy.opcodes.length);
+        copy.lefts = Arrays.copyOf(lefts, copy.opcodes.length);
+        copy.rights = Arrays.copyOf(rights, copy.opcodes.length);
+        copy.size = size;
+        copy.phiArguments = Arrays.copyOf(phiArguments, phiArgumentsSize);
+        copy.phiArgumentsSize = phiArgumentsSize;
+        return copy;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getSymbol() {
+        return symbol;
+    }
+
+    //Type of the returned value, null for main
+    String getReturnType() {
+        return returnType;
+    }
+
+    boolean isMain() {
+        return symbol < 0;
+    }
+
+    //Symbol ids of the parameters in order
+    int[] getParams() {
+        return params;
+    }
+
+    //Symbol ids of the variables and constants declared in the body
+    int[] getLocals() {
+        return locals;
+    }
+
+    void addParam(int id) {
+        params = append(params, id);
+    }
+
+    void addLocal(int id) {
+        locals = append(locals, id);
+    }
+
+    int newTemp() {
+        return temps++;
+    }
+
+    int newLabel() {
+        return labels++;
+    }
+
+    int tempCount() {
+        return temps;
+    }
+
+    int labelCount() {
+        return labels;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //Append an instruction and return its index
+    int emit(Opcode opcode, long dest, long left, long right) {
+        if (size == opcodes.length) {
+            int capacity = size * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            dests = Arrays.copyOf(dests, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+        }
+        set(size, opcode, dest, left, right);
+        return size++;
+    }
+
+    //Append a PHI with one argument per predecessor of its block, in the order ControlFlowGraph lists them. The
+    //arguments start out absent. Its left operand is where they start in the argument pool and right how many there are.
+    int emitPhi(long dest, int arguments) {
+        if (phiArgumentsSize + arguments > phiArguments.length) {
+            phiArguments = Arrays.copyOf(phiArguments, Math.max(16, (phiArgumentsSize + arguments) * 2));
+        }
+        int start = phiArgumentsSize;
+        phiArgumentsSize += arguments;
+        return emit(Opcode.PHI, dest, Operand.integer(start), Operand.integer(arguments));
+    }
+
+    int phiArgumentCount(int index) {
+        return Operand.value(rights[index]);
+    }
+
+    long phiArgument(int index, int predecessor) {
+        return phiArguments[Operand.value(lefts[index]) + predecessor];
+    }
+
+    void setPhiArgument(int index, int predecessor, long value) {
+        phiArguments[Operand.value(lefts[index]) + predecessor] = value;
+    }
+
+    //Overwrite the instruction at the index
+    void set(int index, Opcode opcode, long dest, long left, long right) {
+        opcodes[index] = opcode.ordinal();
+        dests[index] = dest;
+        lefts[index] = left;
+        rights[index] = right;
+    }
+
+    Opcode opcode(int index) {
+        return Opcode.of(opcodes[index]);
+    }
+
+    long dest(int index) {
+        return dests[index];
+    }
+
+    long left(int index) {
+        return lefts[index];
+    }
+
+    long right(int index) {
+        return rights[index];
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = id;
+        return grown;
+    }
+}
@@ -0,0 +1,432 @@
+import java.util.Arrays;
+
+//Runs an IrProgram directly, the reference the optimisation passes are checked against. Integers wrap like Java
+//ints and booleans are 0 or 1. Variables nobody has assigned read as 0. A run stops after a budget of instructions
+//or a depth of calls so programmes that don't terminate can still be compared. Code may be in SSA form and may be
+//laid out, jumping to instruction indexes instead of labels.
+final class IrInterpreter {
+
+    static final int MAX_DEPTH = 10000;
+
+    enum Status {
+        FINISHED, OUT_OF_STEPS, TOO_DEEP
+    }
+
+    //How a run ended and, if it finished, the values main's locals and the globals were left with
+    static final class Outcome {
+
+        private final Status status;
+        private final long steps;
+        private final int[] values; //by symbol id, 0 for symbols that aren't main's or global
+
+        Outcome(Status status, long steps, int[] values) {
+            this.status = status;
+            this.steps = steps;
+            this.values = values;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        long getSteps() {
+            return steps;
+        }
+
+        int value(int symbol) {
+            return values[symbol];
+        }
+
+        //Same status and, for finished runs, the same values. The number of steps is expected to differ.
+        boolean sameAs(Outcome other) {
+            return status == other.status && (status != Status.FINISHED || Arrays.equals(values, other.values));
+        }
+
+        String describe(IrProgram program) {
+            StringBuilder description = new StringBuilder(status.toString().toLowerCase()).append(" after ")
+                    .append(steps).append(" steps");
+            if (status == Status.FINISHED) {
+                for (int id = 0; id < values.length; id++) {
+                    if (isResult(program, id)) {
+                        description.append(' ').append(program.symbolName(id)).append('=').append(values[id]);
+                    }
+                }
+            }
+            return description.toString();
+        }
+    }
+
+    //Lets compiled code run calls instead, for TieredExecution
+    interface Tiering {
+
+        //Before every call the interpreter makes: compiled code to run instead, null to interpret the call
+        Callee onCall(int function);
+
+        //When a jump goes back to the same or an earlier instruction of the function
+        void onBackedge(int function);
+    }
+
+    interface Callee {
+
+        //Run the call with its arguments from arguments[from] on and globals by symbol id. depth calls are on the
+        //stack already and steps are left of the budget. StackOverflowError means going deeper than MAX_DEPTH,
+        //OutOfSteps running out of steps.
+        int call(int[] arguments, int from, int[] globals, int depth, long steps);
+
+        //Steps left of the budget when the last call returned or threw
+        long stepsLeft();
+    }
+
+    //Thrown by compiled code that has used up the steps it was given
+    static final class OutOfSteps extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        OutOfSteps() {
+            super(null, null, false, false);
+        }
+    }
+
+    //Per function tables built once
+    private static final class Code {
+
+        final IrFunction function;
+        final int index;
+        final int[] labels; //instruction index of each label
+        final ControlFlowGraph graph; //only for functions with PHIs
+        final int[] blocks; //block of each instruction, when there is a graph
+
+        Code(IrFunction function, int index) {
+            this.function = function;
+            this.index = index;
+            labels = new int[function.labelCount()];
+            boolean phis = false;
+            for (int i = 0; i < function.size(); i++) {
+                if (function.opcode(i) == Opcode.LABEL) {
+                    labels[Operand.value(function.left(i))] = i;
+                }
+                phis |= function.opcode(i) == Opcode.PHI;
+            }
+            graph = phis ? ControlFlowGraph.of(function) : null;
+            blocks = phis ? new int[function.size()] : null;
+            if (phis) {
+                for (int block = 0; block < graph.blockCount(); block++) {
+                    Arrays.fill(blocks, graph.start(block), graph.end(block), block);
+                }
+            }
+        }
+    }
+
+    private static final class Frame {
+
+        final Code code;
+        final int[] temps;
+        final int[] locals;
+        int pc;
+        int previous = -1; //block control came from, for PHIs
+        long returnTo; //where the caller wants the result
+
+        Frame(Code code) {
+            this.code = code;
+            temps = new int[code.function.tempCount()];
+            locals = new int[code.function.getParams().length + code.function.getLocals().length];
+        }
+    }
+
+    private final IrProgram program;
+    private final long budget;
+    private final Code[] codes;
+    private final int[] slots; //index of each local symbol in its function's frame
+    private final boolean[] isGlobal;
+    private final int[] globals;
+    private final Tiering tiering;
+    private int returned;
+
+    IrInterpreter(IrProgram program, long budget) {
+        this(program, budget, null);
+    }
+
+    //Calls tiering before each call and on each backedge, it can be null
+    IrInterpreter(IrProgram program, long budget, Tiering tiering) {
+        this.program = program;
+        this.budget = budget;
+        this.tiering = tiering;
+        codes = new Code[program.getFunctions().size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = new Code(program.function(i), i);
+        }
+        slots = new int[program.symbolCount()];
+        for (IrFunction function : program.getFunctions()) {
+            int slot = 0;
+            for (int id : function.getParams()) {
+                slots[id] = slot++;
+            }
+            for (int id : function.getLocals()) {
+                slots[id] = slot++;
+            }
+        }
+        isGlobal = new boolean[program.symbolCount()];
+        for (int id = 0; id < isGlobal.length; id++) {
+            isGlobal[id] = program.isGlobal(id);
+        }
+        globals = new int[program.symbolCount()];
+    }
+
+    //Globals and main's locals are what a run leaves behind
+    static boolean isResult(IrProgram program, int id) {
+        if (program.isGlobal(id)) {
+            return program.symbolKind(id) != SymbolType.FUNC;
+        }
+        for (int local : program.main().getLocals()) {
+            if (local == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Outcome run() {
+        return run(codes.length - 1, new int[0]);
+    }
+
+    //Run one function with the arguments instead of the whole programme, eg. to evaluate a call at compile time.
+    //What it returned is then getReturned(); the outcome's values are only the globals.
+    Outcome call(int function, int[] arguments) {
+        return run(function, arguments);
+    }
+
+    //The value the function last run returned, if it finished
+    int getReturned() {
+        return returned;
+    }
+
+    private Outcome run(int entry, int[] parameters) {
+        Frame[] stack = new Frame[16];
+        int depth = 0;
+        stack[depth++] = new Frame(codes[entry]);
+        System.arraycopy(parameters, 0, stack[0].locals, 0, parameters.length);
+        int[] arguments = new int[16];
+        int argumentCount = 0;
+        long steps = 0;
+        Status status = Status.FINISHED;
+        Frame frame = stack[0];
+
+        run:
+        while (true) {
+            if (++steps > budget) {
+                status = Status.OUT_OF_STEPS;
+                break;
+            }
+            IrFunction function = frame.code.function;
+            int pc = frame.pc;
+            Opcode opcode = function.opcode(pc);
+            int next = pc + 1;
+            switch (opcode) {
+                case COPY:
+                    write(frame, function.dest(pc), read(frame, function.left(pc)));
+                    break;
+                case NEG:
+                    write(frame, function.dest(pc), -read(frame, function.left(pc)));
+                    break;
+                case NOT:
+                    write(frame, function.dest(pc), read(frame, function.left(pc)) == 0 ? 1 : 0);
+                    break;
+                case ADD:
+                case SUB:
+                case MUL:
+                case EQ:
+                case NE:
+                case LT:
+                case LE:
+                case GT:
+                case GE:
+                case AND:
+                case OR:
+                    write(frame, function.dest(pc), evaluate(opcode, read(frame, function.left(pc)), read(frame, function.right(pc))));
+                    break;
+                case LABEL:
+                    break;
+                case JUMP:
+                    next = jump(frame, function.left(pc));
+                    if (next <= pc && tiering != null) {
+                        tiering.onBackedge(frame.code.index);
+                    }
+                    break;
+                case JUMP_IF_TRUE:
+                case JUMP_IF_FALSE:
+                    if ((read(frame, function.left(pc)) != 0) == (opcode == Opcode.JUMP_IF_TRUE)) {
+                        next = jump(frame, function.right(pc));
+                        if (next <= pc && tiering != null) {
+                            tiering.onBackedge(frame.code.index);
+                        }
+                    }
+                    break;
+                case ARG:
+                    if (argumentCount == arguments.length) {
+                        arguments = Arrays.copyOf(arguments, argumentCount * 2);
+                    }
+                    arguments[argumentCount++] = read(frame, function.left(pc));
+                    break;
+                case CALL:
+                    if (depth == MAX_DEPTH) {
+                        status = Status.TOO_DEEP;
+                        break run;
+                    }
+                    int count = Operand.value(function.right(pc));
+                    argumentCount -= count;
+                    Callee compiled = tiering == null ? null : tiering.onCall(Operand.value(function.left(pc)));
+                    if (compiled != null) {
+                        int result;
+                        try {
+                            result = compiled.call(arguments, argumentCount, globals, depth, budget - steps);
+                            steps = budget - compiled.stepsLeft();
+                        } catch (StackOverflowError e) {
+                            steps = budget - compiled.stepsLeft();
+                            status = Status.TOO_DEEP;
+                            break run;
+                        } catch (OutOfSteps e) {
+                            steps = budget + 1;
+                            status = Status.OUT_OF_STEPS;
+                            break run;
+                        }
+                        if (!Operand.isAbsent(function.dest(pc))) {
+                            write(frame, function.dest(pc), result);
+                        }
+                        break;
+                    }
+                    Frame callee = new Frame(codes[Operand.value(function.left(pc))]);
+                    System.arraycopy(arguments, argumentCount, callee.locals, 0, count);
+                    callee.returnTo = function.dest(pc);
+                    enter(frame, pc, next);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = callee;
+                    frame = callee;
+                    continue;
+                case RETURN:
+                    int value = Operand.isAbsent(function.left(pc)) ? 0 : read(frame, function.left(pc));
+                    long returnTo = frame.returnTo;
+                    if (--depth == 0) {
+                        returned = value;
+                        break run;
+                    }
+                    frame = stack[depth - 1];
+                    if (!Operand.isAbsent(returnTo)) {
+                        write(frame, returnTo, value);
+                    }
+                    continue;
+                case PHI:
+                    next = phis(frame, pc);
+                    break;
+                default:
+                    throw new IllegalStateException("Can't run " + opcode);
+            }
+            enter(frame, pc, next);
+        }
+
+        int[] values = new int[program.symbolCount()];
+        for (int id = 0; id < values.length; id++) {
+            if (!isResult(program, id)) {
+                continue;
+            }
+            if (isGlobal[id]) {
+                values[id] = globals[id];
+            } else if (entry == codes.length - 1) {
+                values[id] = stack[0].locals[slots[id]];
+            }
+        }
+        return new Outcome(status, steps, values);
+    }
+
+    //Move on to the next instruction, remembering the block left for the PHIs of the one entered
+    private static void enter(Frame frame, int pc, int next) {
+        Code code = frame.code;
+        if (code.graph != null && next < code.blocks.length && code.blocks[next] != code.blocks[pc]) {
+            frame.previous = code.blocks[pc];
+        }
+        frame.pc = next;
+    }
+
+    //PHIs at the start of a block all read their argument before any of them is written
+    private int phis(Frame frame, int pc) {
+        IrFunction function = frame.code.function;
+        ControlFlowGraph graph = frame.code.graph;
+        int[] predecessors = graph.predecessors(frame.code.blocks[pc]);
+        int position = 0;
+        while (predecessors[position] != frame.previous) {
+            position++;
+        }
+        int end = pc;
+        while (end < function.size() && function.opcode(end) == Opcode.PHI) {
+            end++;
+        }
+        int[] values = new int[end - pc];
+        for (int i = pc; i < end; i++) {
+            values[i - pc] = read(frame, function.phiArgument(i, position));
+        }
+        for (int i = pc; i < end; i++) {
+            write(frame, function.dest(i), values[i - pc]);
+        }
+        return end;
+    }
+
+    private static int jump(Frame frame, long label) {
+        return Operand.kind(label) == Operand.TARGET ? Operand.value(label) : frame.code.labels[Operand.value(label)];
+    }
+
+    static int evaluate(Opcode opcode, int left, int right) {
+        switch (opcode) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case EQ:
+                return left == right ? 1 : 0;
+            case NE:
+                return left != right ? 1 : 0;
+            case LT:
+                return left < right ? 1 : 0;
+            case LE:
+                return left <= right ? 1 : 0;
+            case GT:
+                return left > right ? 1 : 0;
+            case GE:
+                return left >= right ? 1 : 0;
+            case AND:
+                return left & right;
+            case OR:
+                return left | right;
+            default:
+                throw new IllegalArgumentException(opcode + " isn't binary");
+        }
+    }
+
+    private int read(Frame frame, long operand) {
+        int value = Operand.value(operand);
+        switch (Operand.kind(operand)) {
+            case Operand.TEMP:
+                return frame.temps[value];
+            case Operand.SYMBOL:
+                return isGlobal[value] ? globals[value] : frame.locals[slots[value]];
+            case Operand.INT:
+            case Operand.BOOL:
+                return value;
+            default:
+                throw new IllegalStateException("Can't read operand kind " + Operand.kind(operand));
+        }
+    }
+
+    private void write(Frame frame, long operand, int value) {
+        int target = Operand.value(operand);
+        if (Operand.kind(operand) == Operand.TEMP) {
+            frame.temps[target] = value;
+        } else if (isGlobal[target]) {
+            globals[target] = value;
+        } else {
+            frame.locals[slots[target]] = value;
+        }
+    }
+}
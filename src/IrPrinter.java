@@ -0,0 +1,134 @@
+//Prints an IrProgram as readable three address code, one function after the other:
+//  integer multiply(x, y)
+//   t0 = x < 0
+//   ifFalse t0 goto L0
+//  L0:
+public class IrPrinter {
+
+    private final ReportSink out;
+
+    IrPrinter(ReportSink out) {
+        this.out = out;
+    }
+
+    void print(IrProgram program) {
+        out.println("---- 3-address code representation ----");
+        for (IrFunction function : program.getFunctions()) {
+            print(program, function);
+        }
+        out.println("---- End 3-address code representation ----");
+    }
+
+    void print(IrProgram program, IrFunction function) {
+        out.println(header(program, function));
+        for (int i = 0; i < function.size(); i++) {
+            String instruction = instruction(program, function, i);
+            out.println(function.opcode(i) == Opcode.LABEL ? instruction : " " + instruction);
+        }
+    }
+
+    //Each block with its edges, then its instructions. Unreachable blocks are marked.
+    void print(IrProgram program, ControlFlowGraph graph) {
+        IrFunction function = graph.getFunction();
+        out.println(header(program, function));
+        for (int block = 0; block < graph.blockCount(); block++) {
+            out.println("B" + block + blocks(" preds", graph.predecessors(block)) + blocks(" succs", graph.successors(block))
+                    + (graph.isReachable(block) ? "" : " unreachable"));
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                out.println(" " + instruction(program, function, i));
+            }
+        }
+    }
+
+    //Code that has been laid out, each instruction with the index jumps refer to it by
+    void printLaidOut(IrProgram program, IrFunction function) {
+        out.println(header(program, function));
+        for (int i = 0; i < function.size(); i++) {
+            out.println(String.format("%4d %s", i, instruction(program, function, i)));
+        }
+    }
+
+    private static String blocks(String name, int[] blocks) {
+        if (blocks.length == 0) {
+            return "";
+        }
+        StringBuilder list = new StringBuilder(name).append(':');
+        for (int block : blocks) {
+            list.append(" B").append(block);
+        }
+        return list.toString();
+    }
+
+    static String header(IrProgram program, IrFunction function) {
+        if (function.isMain()) {
+            return "main";
+        }
+        StringBuilder header = new StringBuilder(function.getReturnType()).append(' ').append(function.getName()).append('(');
+        int[] params = function.getParams();
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                header.append(", ");
+            }
+            header.append(program.symbolName(params[i]));
+        }
+        return header.append(')').toString();
+    }
+
+    static String instruction(IrProgram program, IrFunction function, int index) {
+        Opcode opcode = function.opcode(index);
+        String dest = operand(program, function.dest(index));
+        String left = operand(program, function.left(index));
+        String right = operand(program, function.right(index));
+        switch (opcode) {
+            case COPY:
+                return dest + " = " + left;
+            case NEG:
+            case NOT:
+                return dest + " = " + opcode.symbol() + left;
+            case LABEL:
+                return left + ":";
+            case JUMP:
+                return "goto " + left;
+            case JUMP_IF_TRUE:
+            case JUMP_IF_FALSE:
+                return opcode.symbol() + " " + left + " goto " + right;
+            case ARG:
+                return "param " + left;
+            case CALL:
+                String call = "call " + left + ", " + right;
+                return Operand.isAbsent(function.dest(index)) ? call : dest + " = " + call;
+            case RETURN:
+                return Operand.isAbsent(function.left(index)) ? "return" : "return " + left;
+            case PHI:
+                StringBuilder phi = new StringBuilder(dest).append(" = phi(");
+                for (int i = 0; i < function.phiArgumentCount(index); i++) {
+                    phi.append(i > 0 ? ", " : "").append(operand(program, function.phiArgument(index, i)));
+                }
+                return phi.append(')').toString();
+            default:
+                return dest + " = " + left + " " + opcode.symbol() + " " + right;
+        }
+    }
+
+    static String operand(IrProgram program, long operand) {
+        int value = Operand.value(operand);
+        switch (Operand.kind(operand)) {
+            case Operand.TEMP:
+                return "t" + value;
+            case Operand.SYMBOL:
+                return program.symbolName(value);
+            case Operand.INT:
+                return String.valueOf(value);
+            case Operand.BOOL:
+                return value != 0 ? "true" : "false";
+            case Operand.LABEL:
+                return "L" + value;
+            case Operand.FUNCTION:
+                return program.function(value).getName();
+            case Operand.TARGET:
+                return "@" + value;
+            default:
+                return "";
+        }
+    }
+}
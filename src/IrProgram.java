@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+//A lowered programme: its functions, main last, and the symbols they refer to. Symbol ids are dense and are what
+//Operand.symbol holds, globals have no owning function.
+final class IrProgram {
+
+    static final int GLOBAL = -1;
+
+    private final List<IrFunction> functions = new ArrayList<>();
+    private final List<String> names;
+    private final List<String> types;
+    private final List<SymbolType> kinds;
+    private final List<Integer> owners;
+
+    IrProgram() {
+        names = new ArrayList<>();
+        types = new ArrayList<>();
+        kinds = new ArrayList<>();
+        owners = new ArrayList<>();
+    }
+
+    //Shares the symbols of the other programme, for transformed copies of it
+    private IrProgram(IrProgram symbols) {
+        names = symbols.names;
+        types = symbols.types;
+        kinds = symbols.kinds;
+        owners = symbols.owners;
+    }
+
+    //A programme with the same symbols holding each function rewritten by the pass, this one is left as it is
+    IrProgram transform(UnaryOperator<IrFunction> pass) {
+        IrProgram transformed = new IrProgram(this);
+        for (IrFunction function : functions) {
+            transformed.addFunction(pass.apply(function));
+        }
+        return transformed;
+    }
+
+    //A programme with the same symbols holding the functions, one for each of these in the same order, for passes
+    //that need the other functions' rewritten code
+    IrProgram replace(List<IrFunction> rewritten) {
+        if (rewritten.size() != functions.size()) {
+            throw new IllegalArgumentException(rewritten.size() + " functions for " + functions.size());
+        }
+        IrProgram replaced = new IrProgram(this);
+        for (IrFunction function : rewritten) {
+            replaced.addFunction(function);
+        }
+        return replaced;
+    }
+
+    //Add a symbol owned by the function at the index (or GLOBAL) and return its id
+    int addSymbol(String name, String type, SymbolType kind, int owner) {
+        names.add(name);
+        types.add(type);
+        kinds.add(kind);
+        owners.add(owner);
+        return names.size() - 1;
+    }
+
+    int symbolCount() {
+        return names.size();
+    }
+
+    String symbolName(int id) {
+        return names.get(id);
+    }
+
+    //"integer" or "boolean", a function's symbol has its return type
+    String symbolType(int id) {
+        return types.get(id);
+    }
+
+    SymbolType symbolKind(int id) {
+        return kinds.get(id);
+    }
+
+    //Index of the function the symbol is declared in when the programme was lowered, or GLOBAL
+    int owner(int id) {
+        return owners.get(id);
+    }
+
+    boolean isGlobal(int id) {
+        return owners.get(id) == GLOBAL;
+    }
+
+    //A programme with the same symbols holding only the functions marked to keep, main has to be one of them. Calls
+    //are renumbered for the functions' new indexes, so none of the dropped ones may still be called.
+    IrProgram retain(boolean[] keep) {
+        int[] indexes = new int[functions.size()];
+        int kept = 0;
+        for (int i = 0; i < functions.size(); i++) {
+            indexes[i] = keep[i] ? kept++ : -1;
+        }
+        IrProgram retained = new IrProgram(this);
+        for (int i = 0; i < functions.size(); i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            IrFunction function = functions.get(i);
+            IrFunction renumbered = null;
+            for (int j = 0; j < function.size(); j++) {
+                if (function.opcode(j) != Opcode.CALL) {
+                    continue;
+                }
+                int callee = Operand.value(function.left(j));
+                if (indexes[callee] < 0) {
+                    throw new IllegalArgumentException(function.getName() + " calls " + functions.get(callee).getName());
+                }
+                if (indexes[callee] != callee) {
+                    if (renumbered == null) {
+                        renumbered = function.copy();
+                    }
+                    renumbered.set(j, Opcode.CALL, function.dest(j), Operand.function(indexes[callee]), function.right(j));
+                }
+            }
+            retained.addFunction(renumbered == null ? function : renumbered);
+        }
+        return retained;
+    }
+
+    //Add a function and return its index
+    int addFunction(IrFunction function) {
+        functions.add(function);
+        return functions.size() - 1;
+    }
+
+    List<IrFunction> getFunctions() {
+        return functions;
+    }
+
+    IrFunction function(int index) {
+        return functions.get(index);
+    }
+
+    IrFunction main() {
+        return functions.get(functions.size() - 1);
+    }
+
+    //Instructions over every function
+    int size() {
+        int size = 0;
+        for (IrFunction function : functions) {
+            size += function.size();
+        }
+        return size;
+    }
+}
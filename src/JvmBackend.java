@@ -0,0 +1,747 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+//Compiles a programme into one hidden JVM class, so HotSpot can JIT it like any other code. Every function becomes a
+//static method taking its parameters as ints and returning an int, and main becomes main(int[]), which leaves the
+//values main's locals end with in the array when it returns. Parameters, locals and temps are JVM int locals,
+//booleans are 0 or 1, globals are a static int[] by symbol id and jumps are branches, a comparison only a
+//conditional jump reads becoming one if_icmp. A static field counts the depth of calls so runs too deep end like
+//IrInterpreter's, and another the steps left, which a method keeps in a local between calls: each straight run of
+//instructions is charged for all of them on entry, so a run goes over its budget exactly when IrInterpreter's would
+//and a programme that doesn't terminate still stops.
+//A single function can be compiled too, with what it calls, for an interpreter to call: then the class also
+//implements IrInterpreter.Callee, so calling it is an interface call rather than going through method handles.
+//The code has to be out of SSA form. The static fields belong to the class compile() defines, so compiled code can
+//only be run by one thread at a time but separate compiles share nothing.
+//JvmBackendBenchmark times it against the interpreters.
+public class JvmBackend {
+
+    private static final String NAME = "CcalProgramme";
+    private static final String DEPTH = "depth";
+    private static final String GLOBALS = "globals";
+    private static final String STEPS = "steps";
+    private static final String OUT_OF_STEPS = "IrInterpreter$OutOfSteps";
+
+    //The JVM's opcodes that are used
+    private static final int ICONST_0 = 0x03;
+    private static final int LCONST_0 = 0x09;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_3 = 0x2d;
+    private static final int ILOAD_2 = 0x1c;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int LSTORE = 0x37;
+    private static final int IASTORE = 0x4f;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP = 0x59;
+    private static final int DUP2 = 0x5c;
+    private static final int DUP2_X1 = 0x5d;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int LSUB = 0x65;
+    private static final int IMUL = 0x68;
+    private static final int INEG = 0x74;
+    private static final int IAND = 0x7e;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int I2L = 0x85;
+    private static final int LCMP = 0x94;
+    private static final int IFEQ = 0x99; //then IFNE, IFLT, IFGE, IFGT and IFLE
+    private static final int IFGE = 0x9c;
+    private static final int IF_ICMPEQ = 0x9f; //then IF_ICMPNE and so on in the same order
+    private static final int IF_ICMPLE = 0xa4;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int PUTSTATIC = 0xb3;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int NEW = 0xbb;
+    private static final int ATHROW = 0xbf;
+    private static final int WIDE = 0xc4;
+
+    private final IrProgram program;
+    private final int function; //compiled with what it calls, main for the whole programme
+    private final int methods;
+    private final byte[] classFile;
+    private final MethodHandle main;
+    private final IrInterpreter.Callee callee; //for a function rather than the programme
+    private final MethodHandle depth;
+    private final MethodHandle globals;
+    private final MethodHandle setSteps;
+    private final MethodHandle getSteps;
+
+    private JvmBackend(IrProgram program, int function, int methods, byte[] classFile) {
+        this.program = program;
+        this.function = function;
+        this.methods = methods;
+        this.classFile = classFile;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            Class<?> loaded = lookup.lookupClass();
+            if (program.function(function).isMain()) {
+                main = lookup.findStatic(loaded, "main", MethodType.methodType(void.class, int[].class));
+                callee = null;
+            } else {
+                main = null;
+                callee = (IrInterpreter.Callee) lookup.findConstructor(loaded, MethodType.methodType(void.class)).invoke();
+            }
+            depth = lookup.findStaticSetter(loaded, DEPTH, int.class);
+            globals = lookup.findStaticSetter(loaded, GLOBALS, int[].class);
+            setSteps = lookup.findStaticSetter(loaded, STEPS, long.class);
+            getSteps = lookup.findStaticGetter(loaded, STEPS, long.class);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can't load the compiled programme", e);
+        }
+    }
+
+    //The whole programme, throws IllegalArgumentException if a function is too large for a JVM method
+    static JvmBackend compile(IrProgram program) {
+        return compile(program, new CallGraph(program), program.getFunctions().size() - 1);
+    }
+
+    //The function and every function it can end up calling, throws IllegalArgumentException like compile(program)
+    static JvmBackend compile(IrProgram program, CallGraph calls, int function) {
+        boolean[] included = new boolean[program.getFunctions().size()];
+        int[] work = new int[included.length];
+        int count = 0;
+        work[count++] = function;
+        included[function] = true;
+        ClassFile file = new ClassFile(NAME, "java/lang/Object");
+        file.addField(ClassFile.STATIC, DEPTH, "I");
+        file.addField(ClassFile.STATIC, GLOBALS, "[I");
+        file.addField(ClassFile.STATIC, STEPS, "J");
+        for (int k = 0; k < count; k++) {
+            new MethodCompiler(program, file, program.function(work[k])).compile();
+            for (int callee : calls.callees(work[k])) {
+                if (!included[callee]) {
+                    included[callee] = true;
+                    work[count++] = callee;
+                }
+            }
+        }
+        if (!program.function(function).isMain()) {
+            callee(file, program.function(function));
+        }
+        return new JvmBackend(program, function, count, file.toBytes());
+    }
+
+    //A constructor and IrInterpreter.Callee's methods: call sets the globals, depth and steps and calls the function,
+    //stepsLeft reads the steps back
+    private static void callee(ClassFile file, IrFunction function) {
+        file.addInterface("IrInterpreter$Callee");
+        byte[] constructor = new byte[5];
+        constructor[0] = (byte) ALOAD_0;
+        u2(constructor, 1, INVOKESPECIAL, file.methodRef("java/lang/Object", "<init>", "()V"));
+        constructor[4] = (byte) RETURN;
+        file.addMethod(ClassFile.PUBLIC, "<init>", "()V", constructor, 1, 1);
+        //call(int[] arguments, int from, int[] globals, int depth, long steps) has them in locals 1 to 6
+        int parameters = function.getParams().length;
+        byte[] code = new byte[1 + 3 + 2 + 3 + 2 + 3 + parameters * 7 + 3 + 1];
+        int size = 0;
+        code[size++] = (byte) ALOAD_3;
+        size = u2(code, size, PUTSTATIC, file.fieldRef(NAME, GLOBALS, "[I"));
+        code[size++] = (byte) ILOAD;
+        code[size++] = 4;
+        size = u2(code, size, PUTSTATIC, file.fieldRef(NAME, DEPTH, "I"));
+        code[size++] = (byte) LLOAD;
+        code[size++] = 5;
+        size = u2(code, size, PUTSTATIC, file.fieldRef(NAME, STEPS, "J"));
+        for (int k = 0; k < parameters; k++) {
+            //arguments[from + k]
+            code[size++] = (byte) ALOAD_1;
+            code[size++] = (byte) ILOAD_2;
+            size = u2(code, size, SIPUSH, k);
+            code[size++] = (byte) IADD;
+            code[size++] = (byte) IALOAD;
+        }
+        size = u2(code, size, INVOKESTATIC, file.methodRef(NAME, method(function), descriptor(function)));
+        code[size++] = (byte) IRETURN;
+        file.addMethod(ClassFile.PUBLIC, "call", "([II[IIJ)I", Arrays.copyOf(code, size), Math.max(2, parameters + 2), 7);
+
+        byte[] stepsLeft = new byte[4];
+        u2(stepsLeft, 0, GETSTATIC, file.fieldRef(NAME, STEPS, "J"));
+        stepsLeft[3] = (byte) LRETURN;
+        file.addMethod(ClassFile.PUBLIC, "stepsLeft", "()J", stepsLeft, 2, 1);
+    }
+
+    private static int u2(byte[] code, int size, int opcode, int value) {
+        code[size++] = (byte) opcode;
+        code[size++] = (byte) (value >> 8);
+        code[size++] = (byte) value;
+        return size;
+    }
+
+    private static String method(IrFunction function) {
+        return function.isMain() ? "main" : "f_" + function.getName();
+    }
+
+    private static String descriptor(IrFunction function) {
+        if (function.isMain()) {
+            return "([I)V";
+        }
+        StringBuilder descriptor = new StringBuilder("(");
+        for (int i = 0; i < function.getParams().length; i++) {
+            descriptor.append('I');
+        }
+        return descriptor.append(")I").toString();
+    }
+
+    //Run a whole programme, stopping after budget steps
+    IrInterpreter.Outcome run(long budget) {
+        if (!program.function(function).isMain()) {
+            throw new IllegalStateException(program.function(function).getName() + " was compiled, not the programme");
+        }
+        int[] values = new int[program.symbolCount()];
+        int[] state = new int[program.symbolCount()];
+        IrInterpreter.Status status = IrInterpreter.Status.FINISHED;
+        long steps;
+        try {
+            depth.invokeExact(1);
+            globals.invokeExact(state);
+            setSteps.invokeExact(budget);
+            try {
+                main.invokeExact(values);
+            } catch (StackOverflowError e) {
+                status = IrInterpreter.Status.TOO_DEEP;
+            } catch (IrInterpreter.OutOfSteps e) {
+                status = IrInterpreter.Status.OUT_OF_STEPS;
+            }
+            //the steps are saved at every call, but a run that ran out threw before saving them
+            steps = status == IrInterpreter.Status.OUT_OF_STEPS ? budget + 1 : budget - (long) getSteps.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        if (status != IrInterpreter.Status.FINISHED) {
+            return new IrInterpreter.Outcome(status, steps, new int[values.length]);
+        }
+        for (int id = 0; id < values.length; id++) {
+            if (program.isGlobal(id) && IrInterpreter.isResult(program, id)) {
+                values[id] = state[id];
+            }
+        }
+        return new IrInterpreter.Outcome(status, steps, values);
+    }
+
+    //The compiled function for an interpreter to call, it sets the depth and globals the class uses each call
+    IrInterpreter.Callee getCallee() {
+        if (callee == null) {
+            throw new IllegalStateException("The programme was compiled, not a function");
+        }
+        return callee;
+    }
+
+    IrProgram getProgram() {
+        return program;
+    }
+
+    //Methods in the class, the function's and those of the functions it can call
+    int getMethods() {
+        return methods;
+    }
+
+    //The class as loaded, eg. to write out and look at with javap
+    byte[] getClassFile() {
+        return classFile.clone();
+    }
+
+    //Emits one function as a method
+    private static final class MethodCompiler {
+
+        private final IrProgram program;
+        private final ClassFile file;
+        private final IrFunction function;
+        private byte[] code = new byte[256];
+        private int size = 0;
+        private final int[] slots; //JVM local of each parameter and local by symbol id
+        private final int temps; //JVM local of temp 0
+        private final int steps; //JVM long local of the steps left, after the temps
+        private int maxStack = 5;
+        private final int[] labels; //offset of each label
+        private final int[] starts; //offset of each instruction, for TARGET jumps
+        private int[] branches = new int[8]; //offset of each branch to patch
+        private long[] targets = new long[8]; //with the LABEL or TARGET it goes to
+        private int branchCount = 0;
+
+        MethodCompiler(IrProgram program, ClassFile file, IrFunction function) {
+            this.program = program;
+            this.file = file;
+            this.function = function;
+            slots = new int[program.symbolCount()];
+            int slot = function.isMain() ? 1 : 0;
+            for (int id : function.getParams()) {
+                slots[id] = slot++;
+            }
+            for (int id : function.getLocals()) {
+                slots[id] = slot++;
+            }
+            temps = slot;
+            steps = temps + function.tempCount();
+            labels = new int[function.labelCount()];
+            starts = new int[function.size() + 1];
+        }
+
+        void compile() {
+            int[] reads = new int[function.tempCount()];
+            boolean[] targeted = new boolean[function.size() + 1];
+            for (int i = 0; i < function.size(); i++) {
+                countRead(function.left(i), reads);
+                countRead(function.right(i), reads);
+                if (Operand.kind(function.left(i)) == Operand.TARGET) {
+                    targeted[Operand.value(function.left(i))] = true;
+                }
+                if (Operand.kind(function.right(i)) == Operand.TARGET) {
+                    targeted[Operand.value(function.right(i))] = true;
+                }
+            }
+            prologue(targeted);
+
+            //a run of instructions is entered at its start only: at the top, a label or jump target, or after a
+            //conditional jump or a call, which is where the interpreter could have stopped first
+            boolean[] entered = new boolean[function.size() + 1];
+            entered[0] = true;
+            for (int i = 0; i < function.size(); i++) {
+                Opcode opcode = function.opcode(i);
+                entered[i] |= opcode == Opcode.LABEL || targeted[i];
+                entered[i + 1] = opcode == Opcode.CALL || opcode == Opcode.JUMP || isJumpIf(opcode);
+            }
+
+            int pending = 0; //arguments on the operand stack
+            for (int i = 0; i < function.size(); i++) {
+                starts[i] = size;
+                Opcode opcode = function.opcode(i);
+                if (opcode == Opcode.LABEL) {
+                    labels[Operand.value(function.left(i))] = size;
+                }
+                if (entered[i]) {
+                    int run = 1;
+                    while (i + run < function.size() && !entered[i + run]) {
+                        run++;
+                    }
+                    charge(run);
+                    maxStack = Math.max(maxStack, pending + 4);
+                }
+                long dest = function.dest(i);
+                long left = function.left(i);
+                long right = function.right(i);
+                switch (opcode) {
+                    case LABEL:
+                        break;
+                    case PHI:
+                        throw new IllegalArgumentException(function.getName() + " is in SSA form");
+                    case JUMP:
+                        branch(GOTO, left);
+                        break;
+                    case JUMP_IF_TRUE:
+                    case JUMP_IF_FALSE:
+                        load(left);
+                        branch(opcode == Opcode.JUMP_IF_TRUE ? IFEQ + 1 : IFEQ, right);
+                        break;
+                    case ARG:
+                        load(left);
+                        pending++;
+                        maxStack = Math.max(maxStack, pending + 2);
+                        break;
+                    case CALL:
+                        IrFunction callee = program.function(Operand.value(left));
+                        saveSteps();
+                        maxStack = Math.max(maxStack, pending + 2);
+                        emit(INVOKESTATIC);
+                        emit2(file.methodRef(NAME, method(callee), descriptor(callee)));
+                        loadSteps();
+                        pending = 0;
+                        if (Operand.isAbsent(dest)) {
+                            emit(POP);
+                        } else {
+                            store(dest);
+                        }
+                        break;
+                    case RETURN:
+                        if (function.isMain()) {
+                            branch(GOTO, Operand.target(function.size()));
+                        } else {
+                            if (Operand.isAbsent(left)) {
+                                emit(ICONST_0);
+                            } else {
+                                load(left);
+                            }
+                            leave();
+                            emit(IRETURN);
+                        }
+                        break;
+                    default:
+                        if (opcode.isBinary() && isCondition(opcode) && i + 1 < function.size() && !targeted[i + 1]
+                                && Operand.kind(dest) == Operand.TEMP && reads[Operand.value(dest)] == 1
+                                && isJumpIf(function.opcode(i + 1)) && function.left(i + 1) == dest) {
+                            //compare and jump on the result in one branch
+                            boolean taken = function.opcode(i + 1) == Opcode.JUMP_IF_TRUE;
+                            compare(opcode, left, right, taken);
+                            branch(comparison, function.right(i + 1));
+                            i++;
+                            starts[i] = size;
+                            break;
+                        }
+                        operation(opcode, left, right);
+                        store(dest);
+                }
+            }
+            starts[function.size()] = size;
+            epilogue();
+            for (int k = 0; k < branchCount; k++) {
+                long target = targets[k];
+                int to = Operand.kind(target) == Operand.TARGET ? starts[Operand.value(target)] : labels[Operand.value(target)];
+                int offset = to - branches[k];
+                if (offset != (short) offset) {
+                    throw new IllegalArgumentException(function.getName() + " branches too far for a JVM method");
+                }
+                code[branches[k] + 1] = (byte) (offset >> 8);
+                code[branches[k] + 2] = (byte) offset;
+            }
+            int access = ClassFile.STATIC | (function.isMain() ? ClassFile.PUBLIC : ClassFile.PRIVATE);
+            file.addMethod(access, method(function), descriptor(function), Arrays.copyOf(code, size), maxStack, steps + 2);
+        }
+
+        //steps = steps - count, and if that leaves fewer than none throw IrInterpreter.OutOfSteps
+        private void charge(int count) {
+            wide(LLOAD, steps);
+            push(count);
+            emit(I2L);
+            emit(LSUB);
+            emit(DUP2);
+            wide(LSTORE, steps);
+            emit(LCONST_0);
+            emit(LCMP);
+            emit(IFGE); //past the throw
+            emit2(3 + 3 + 1 + 3 + 1);
+            emit(NEW);
+            emit2(file.classRef(OUT_OF_STEPS));
+            emit(DUP);
+            emit(INVOKESPECIAL);
+            emit2(file.methodRef(OUT_OF_STEPS, "<init>", "()V"));
+            emit(ATHROW);
+        }
+
+        //The steps left go through the static field across a call and back to the caller
+        private void loadSteps() {
+            emit(GETSTATIC);
+            emit2(file.fieldRef(NAME, STEPS, "J"));
+            wide(LSTORE, steps);
+        }
+
+        private void saveSteps() {
+            wide(LLOAD, steps);
+            emit(PUTSTATIC);
+            emit2(file.fieldRef(NAME, STEPS, "J"));
+        }
+
+        private static void countRead(long operand, int[] reads) {
+            if (Operand.kind(operand) == Operand.TEMP) {
+                reads[Operand.value(operand)]++;
+            }
+        }
+
+        private static boolean isJumpIf(Opcode opcode) {
+            return opcode == Opcode.JUMP_IF_TRUE || opcode == Opcode.JUMP_IF_FALSE;
+        }
+
+        private static boolean isCondition(Opcode opcode) {
+            return opcode.ordinal() >= Opcode.EQ.ordinal() && opcode.ordinal() <= Opcode.GE.ordinal();
+        }
+
+        //Counts the call and zeroes the locals and temps that might be read before they're written: the JVM's
+        //verifier rejects reading a local nothing has stored to, and CCAL's read as 0
+        private void prologue(boolean[] targeted) {
+            if (!function.isMain()) {
+                //depth = depth + 1, and if it's over the limit throw what the JVM does when its stack runs out
+                emit(GETSTATIC);
+                emit2(file.fieldRef(NAME, DEPTH, "I"));
+                emit(ICONST_0 + 1);
+                emit(IADD);
+                emit(DUP);
+                emit(PUTSTATIC);
+                emit2(file.fieldRef(NAME, DEPTH, "I"));
+                push(IrInterpreter.MAX_DEPTH);
+                emit(IF_ICMPLE); //past the throw
+                emit2(3 + 3 + 1 + 3 + 1);
+                emit(NEW);
+                emit2(file.classRef("java/lang/StackOverflowError"));
+                emit(DUP);
+                emit(INVOKESPECIAL);
+                emit2(file.methodRef("java/lang/StackOverflowError", "<init>", "()V"));
+                emit(ATHROW);
+            }
+            loadSteps();
+
+            //a slot is safe if every read comes after a write in the same block
+            int locals = temps + function.tempCount();
+            int[] written = new int[locals];
+            Arrays.fill(written, -1);
+            boolean[] zero = new boolean[locals];
+            int block = 0;
+            for (int i = 0; i < function.size(); i++) {
+                Opcode opcode = function.opcode(i);
+                if (opcode == Opcode.LABEL || targeted[i]) {
+                    block++;
+                }
+                for (long source : new long[] {function.left(i), function.right(i)}) {
+                    int slot = slot(source);
+                    if (slot >= 0 && written[slot] != block) {
+                        zero[slot] = true;
+                    }
+                }
+                int slot = slot(function.dest(i));
+                if (slot >= 0) {
+                    written[slot] = block;
+                }
+                if (opcode == Opcode.JUMP || isJumpIf(opcode) || opcode == Opcode.RETURN) {
+                    block++;
+                }
+            }
+            if (function.isMain()) {
+                for (int id : function.getLocals()) {
+                    zero[slots[id]] = true; //read when main returns
+                }
+            }
+            for (int slot = function.isMain() ? 1 : function.getParams().length; slot < locals; slot++) {
+                if (zero[slot]) {
+                    emit(ICONST_0);
+                    local(ISTORE, slot);
+                }
+            }
+        }
+
+        //A function that runs off its end returns 0, main puts its locals in the array
+        private void epilogue() {
+            if (function.isMain()) {
+                for (int id : function.getLocals()) {
+                    emit(ALOAD_0);
+                    push(id);
+                    load(Operand.symbol(id));
+                    emit(IASTORE);
+                }
+                saveSteps();
+                emit(RETURN);
+            } else {
+                emit(ICONST_0);
+                leave();
+                emit(IRETURN);
+            }
+        }
+
+        private void leave() {
+            saveSteps();
+            emit(GETSTATIC);
+            emit2(file.fieldRef(NAME, DEPTH, "I"));
+            emit(ICONST_0 + 1);
+            emit(ISUB);
+            emit(PUTSTATIC);
+            emit2(file.fieldRef(NAME, DEPTH, "I"));
+        }
+
+        //JVM local of a parameter, local or temp operand, -1 for others
+        private int slot(long operand) {
+            switch (Operand.kind(operand)) {
+                case Operand.TEMP:
+                    return temps + Operand.value(operand);
+                case Operand.SYMBOL:
+                    return program.isGlobal(Operand.value(operand)) ? -1 : slots[Operand.value(operand)];
+                default:
+                    return -1;
+            }
+        }
+
+        //How far past IFEQ or IF_ICMPEQ the branch for each of EQ to GE is
+        private static final int[] CONDITIONS = {0, 1, 2, 5, 4, 3};
+
+        private int comparison;
+
+        //Push the operands of a comparison and set comparison to the branch taken when it is taken
+        private void compare(Opcode opcode, long left, long right, boolean taken) {
+            int condition = opcode.ordinal() - Opcode.EQ.ordinal();
+            if (!taken) {
+                condition = negate(condition);
+            }
+            load(left);
+            if (Operand.kind(right) == Operand.INT && Operand.value(right) == 0) {
+                comparison = IFEQ + CONDITIONS[condition];
+            } else {
+                load(right);
+                comparison = IF_ICMPEQ + CONDITIONS[condition];
+            }
+        }
+
+        //EQ NE LT LE GT GE to NE EQ GE GT LE LT
+        private static int negate(int condition) {
+            return condition < 2 ? 1 - condition : new int[] {-1, -1, 5, 4, 3, 2}[condition];
+        }
+
+        private void operation(Opcode opcode, long left, long right) {
+            load(left);
+            switch (opcode) {
+                case COPY:
+                    return;
+                case NEG:
+                    emit(INEG);
+                    return;
+                case NOT:
+                    emit(ICONST_0 + 1);
+                    emit(IXOR);
+                    return;
+                default:
+            }
+            load(right);
+            switch (opcode) {
+                case ADD:
+                    emit(IADD);
+                    return;
+                case SUB:
+                    emit(ISUB);
+                    return;
+                case MUL:
+                    emit(IMUL);
+                    return;
+                case AND:
+                    emit(IAND);
+                    return;
+                case OR:
+                    emit(IOR);
+                    return;
+                default:
+            }
+            if (!isCondition(opcode)) {
+                throw new IllegalArgumentException("Can't compile " + opcode);
+            }
+            //value = left op right ? 1 : 0
+            emit(IF_ICMPEQ + CONDITIONS[opcode.ordinal() - Opcode.EQ.ordinal()]);
+            emit2(3 + 1 + 3);
+            emit(ICONST_0);
+            emit(GOTO);
+            emit2(3 + 1);
+            emit(ICONST_0 + 1);
+        }
+
+        private void load(long operand) {
+            switch (Operand.kind(operand)) {
+                case Operand.INT:
+                case Operand.BOOL:
+                    push(Operand.value(operand));
+                    return;
+                case Operand.SYMBOL:
+                    if (program.isGlobal(Operand.value(operand))) {
+                        emit(GETSTATIC);
+                        emit2(file.fieldRef(NAME, GLOBALS, "[I"));
+                        push(Operand.value(operand));
+                        emit(IALOAD);
+                        return;
+                    }
+                    local(ILOAD, slot(operand));
+                    return;
+                case Operand.TEMP:
+                    local(ILOAD, slot(operand));
+                    return;
+                default:
+                    throw new IllegalArgumentException("Can't compile operand kind " + Operand.kind(operand));
+            }
+        }
+
+        private void store(long operand) {
+            if (Operand.kind(operand) == Operand.SYMBOL && program.isGlobal(Operand.value(operand))) {
+                //slip the array and index under the value
+                emit(GETSTATIC);
+                emit2(file.fieldRef(NAME, GLOBALS, "[I"));
+                push(Operand.value(operand));
+                emit(DUP2_X1);
+                emit(POP2);
+                emit(IASTORE);
+                return;
+            }
+            local(ISTORE, slot(operand));
+        }
+
+        private void push(int value) {
+            if (value >= -1 && value <= 5) {
+                emit(ICONST_0 + value);
+            } else if (value == (byte) value) {
+                emit(BIPUSH);
+                emit(value);
+            } else if (value == (short) value) {
+                emit(SIPUSH);
+                emit2(value);
+            } else {
+                int constant = file.integer(value);
+                if (constant < 256) {
+                    emit(LDC);
+                    emit(constant);
+                } else {
+                    emit(LDC_W);
+                    emit2(constant);
+                }
+            }
+        }
+
+        //iload or istore, with the short forms for the first four locals
+        private void local(int opcode, int slot) {
+            if (slot < 4) {
+                emit((opcode == ILOAD ? 0x1a : 0x3b) + slot);
+            } else if (slot < 256) {
+                emit(opcode);
+                emit(slot);
+            } else {
+                emit(WIDE);
+                emit(opcode);
+                emit2(slot);
+            }
+        }
+
+        //lload or lstore
+        private void wide(int opcode, int slot) {
+            if (slot < 256) {
+                emit(opcode);
+                emit(slot);
+            } else {
+                emit(WIDE);
+                emit(opcode);
+                emit2(slot);
+            }
+        }
+
+        private void branch(int opcode, long target) {
+            if (branchCount == branches.length) {
+                branches = Arrays.copyOf(branches, branchCount * 2);
+                targets = Arrays.copyOf(targets, branchCount * 2);
+            }
+            branches[branchCount] = size;
+            targets[branchCount++] = target;
+            emit(opcode);
+            emit2(0);
+        }
+
+        private void emit(int value) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size++] = (byte) value;
+        }
+
+        private void emit2(int value) {
+            emit(value >> 8);
+            emit(value);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Times JvmBackend's compiled code against IrInterpreter and RegisterVm and checks it ends like the interpreter's run.
+//Usage: java JvmBackendBenchmark [-O1] [-iterations count] [file...]
+//with no files generated workloads are used, -O1 runs the optimisation passes first
+public class JvmBackendBenchmark {
+
+    private static final long BUDGET = 1_000_000_000L;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        boolean optimise = false;
+        int iterations = 10;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-O1")) {
+                optimise = true;
+            } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                System.out.println("Usage: java JvmBackendBenchmark [-O1] [-iterations count] [file...]");
+                return;
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("100 multiplies by 10000", () -> ProgramGenerator.generateLoops(100, 10000)));
+        generated.add(Workload.generated("1000 functions", () -> ProgramGenerator.generate(1000)));
+
+        boolean same = true;
+        for (Workload workload : Workload.select(files, false, generated)) {
+            IrProgram program = IrDump.lower(workload.parse());
+            if (program == null) {
+                System.out.println(workload.getName() + ": has semantic errors");
+                continue;
+            }
+            if (optimise) {
+                program = new PassManager(NullSink.INSTANCE).run(program, PassManager.O1);
+            }
+            long start = System.nanoTime();
+            JvmBackend backend;
+            try {
+                backend = JvmBackend.compile(program);
+            } catch (IllegalArgumentException e) {
+                System.out.println(workload.getName() + ": can't be compiled, " + e.getMessage());
+                continue;
+            }
+            System.out.println(String.format("---- %s: %d IR instructions, a %d byte class compiled in %.3f ms ----",
+                    workload.getName(), program.size(), backend.getClassFile().length, (System.nanoTime() - start) / 1e6));
+            IrInterpreter interpreter = new IrInterpreter(program, BUDGET);
+            RegisterVm vm = new RegisterVm(Bytecode.compile(program), BUDGET);
+            IrInterpreter.Outcome interpreted = RegisterVmBenchmark.time("ir interpreter", interpreter::run, iterations);
+            RegisterVmBenchmark.time("register vm", vm::run, iterations);
+            IrInterpreter.Outcome ran = RegisterVmBenchmark.time("jvm", () -> backend.run(BUDGET), iterations);
+            if (!ran.sameAs(interpreted)) {
+                System.out.println("Outcomes differ: " + ran.describe(program) + " and " + interpreted.describe(program));
+                same = false;
+            }
+        }
+        if (!same) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+//Compares lexing throughput of FileInputStream + SimpleCharStream against MappedCharStream.
+//Usage: java LexerBenchmark [file] [iterations], a ~7MB generated programme is used when no file is given.
+//Each char stream is measured in its own JVM so the token manager's call sites only ever see one stream class.
+public class LexerBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final String STREAM = "stream";
+    private static final String MAPPED = "mapped";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3) { //forked run of a single mode
+            measure(args[0], Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        Path path;
+        if (args.length > 0) {
+            path = Paths.get(args[0]);
+        } else {
+            path = Files.createTempFile("ccal-lexer", ".ccal");
+            path.toFile().deleteOnExit();
+            Files.write(path, ProgramGenerator.generateBytes(8 * 1024 * 1024).getBytes(Charset.defaultCharset()));
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.println("Lexing " + path + " (" + Files.size(path) + " bytes), " + iterations + " iterations");
+
+        double stream = fork(STREAM, path, iterations);
+        double mapped = fork(MAPPED, path, iterations);
+        System.out.println(String.format("MappedCharStream throughput relative to SimpleCharStream: %.2fx", mapped / stream));
+    }
+
+    //Run one mode in a fresh JVM and read back its MB/s from the last line it prints
+    private static double fork(String mode, Path path, int iterations) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "LexerBenchmark",
+                mode, path.toString(), String.valueOf(iterations)).redirectErrorStream(true).start();
+        String last = "";
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Benchmark run for " + mode + " failed");
+        }
+        return Double.parseDouble(last.substring(last.lastIndexOf(' ') + 1));
+    }
+
+    private static void measure(String mode, Path path, int iterations) throws IOException {
+        boolean mapped = mode.equals(MAPPED);
+        for (int i = 0; i < WARMUP; i++) {
+            lex(mapped, path);
+        }
+        long tokens = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tokens = lex(mapped, path);
+        }
+        long nanos = System.nanoTime() - start;
+
+        double megabytes = (double) Files.size(path) * iterations / (1024 * 1024);
+        String name = mapped ? "MappedCharStream" : "FileInputStream + SimpleCharStream";
+        System.out.println(String.format("%-36s %d tokens, %.1f ms per pass", name, tokens, nanos / 1e6 / iterations));
+        System.out.println(String.format("%-36s MB/s %.1f", name, megabytes / (nanos / 1e9)));
+    }
+
+    private static long lex(boolean mapped, Path path) throws IOException {
+        return mapped ? lexMapped(path) : lexStream(path.toFile());
+    }
+
+    private static long lexStream(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return count(new CCALParserTokenManager(new SimpleCharStream(in)));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long lexMapped(Path path) throws IOException {
+        return count(new CCALParserTokenManager(MappedCharStream.open(path)));
+    }
+
+    private static long count(CCALParserTokenManager tokenManager) {
+        long tokens = 0;
+        while (tokenManager.getNextToken().kind != CCALParserConstants.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,46 @@
+//Measures how much loop optimisation speeds up running a loop heavy programme: main calls copies of multiply, each
+//going round its loop trips times. The programme is run by IrInterpreter after the other passes with and without
+//the loop pass, so the difference is down to it alone.
+//Usage: java LoopBenchmark [functions] [trips] [iterations]
+public class LoopBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final long BUDGET = Long.MAX_VALUE;
+
+    public static void main(String[] args) throws ParseException {
+        int functions = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int trips = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String source = ProgramGenerator.generateLoops(functions, trips);
+        IrProgram lowered = IrDump.lower(CCALParser.parse(source));
+        IrProgram ssa = new ValueNumbering(true, true).run(new ConstantPropagation().run(lowered.transform(SsaConstruction::run)));
+        IrProgram plain = new DeadCodeElimination().run(ssa);
+        LoopOptimization loops = new LoopOptimization();
+        IrProgram optimised = new DeadCodeElimination().run(loops.run(ssa));
+        System.out.println("Running " + functions + " multiplies by " + trips + ", " + iterations + " iterations");
+        System.out.println(loops.getLoops() + " loops, " + loops.getInductionVariables() + " induction variables, "
+                + loops.getHoisted() + " hoisted, " + loops.getClosedForms() + " closed forms");
+
+        IrInterpreter.Outcome before = time("without loop pass", plain, iterations);
+        IrInterpreter.Outcome after = time("with loop pass", optimised, iterations);
+        if (!after.sameAs(before)) {
+            System.out.println("Outcomes differ: " + before.describe(plain) + " and " + after.describe(optimised));
+            System.exit(1);
+        }
+    }
+
+    private static IrInterpreter.Outcome time(String name, IrProgram program, int iterations) {
+        IrInterpreter.Outcome outcome = null;
+        for (int i = 0; i < WARMUP; i++) {
+            outcome = new IrInterpreter(program, BUDGET).run();
+        }
+        long nanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            outcome = new IrInterpreter(program, BUDGET).run();
+            nanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%-20s %10d steps %10.3f ms per run", name, outcome.getSteps(), nanos / 1e6 / iterations));
+        return outcome;
+    }
+}
@@ -0,0 +1,617 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//Optimises the natural loops of functions in SSA form, which is what while loops lower to. A loop is a header and
+//the blocks that get back to it without passing through it, found from the jumps back to a block that dominates
+//them. Only loops entered from a single block that goes nowhere else (its preheader) are changed.
+// - Operations whose operands are all computed outside the loop are hoisted to the end of the preheader, inner loops
+//   first so an operation can move out of several. Nothing can trap, so running them when the loop doesn't is safe.
+// - Induction variables are the header PHIs stepped by a constant each time round.
+// - A loop that only counts an induction variable by 1 up to or down to a bound and adds the same amounts to other
+//   PHIs on every trip, like multiply's "result = result + x; y = y - 1", is replaced by the closed form: the trip
+//   count is (bound - start) * (start < bound) and every PHI leaves with start + step * trips. Ints wrap, so this
+//   is exact even where the subtraction overflows.
+final class LoopOptimization implements Pass {
+
+    private int loops = 0;
+    private int hoisted = 0;
+    private int inductionVariables = 0;
+    private int closedForms = 0;
+
+    int getLoops() {
+        return loops;
+    }
+
+    //Operations moved out of a loop, counted once however many loops they leave
+    int getHoisted() {
+        return hoisted;
+    }
+
+    int getInductionVariables() {
+        return inductionVariables;
+    }
+
+    //Loops replaced by their closed form
+    int getClosedForms() {
+        return closedForms;
+    }
+
+    @Override
+    public String getName() {
+        return "loops";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Collections.singletonList(PassManager.SSA);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program);
+    }
+
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + loops + " loops, " + inductionVariables + " induction variables, " + hoisted + " hoisted, "
+                + closedForms + " closed forms");
+    }
+
+    IrProgram run(IrProgram program) {
+        boolean[] globals = new boolean[program.symbolCount()];
+        for (int id = 0; id < globals.length; id++) {
+            globals[id] = program.isGlobal(id);
+        }
+        return program.transform(function -> new Loops(function, globals).rewrite());
+    }
+
+    private static final class Loop {
+
+        final int header;
+        final boolean[] blocks;
+        final int[] latches;
+        int[] members; //its blocks in reverse postorder
+        int size = 0;
+        int preheader = -1;
+
+        Loop(int header, int[] latches, int blockCount) {
+            this.header = header;
+            this.latches = latches;
+            blocks = new boolean[blockCount];
+        }
+    }
+
+    //An update of a header PHI on every trip: dest = phi +/- amount
+    private static final class Step {
+
+        final int phi;
+        final boolean subtract;
+        final long amount;
+
+        Step(int phi, boolean subtract, long amount) {
+            this.phi = phi;
+            this.subtract = subtract;
+            this.amount = amount;
+        }
+    }
+
+    private final class Loops {
+
+        private final IrFunction function;
+        private final boolean[] globals;
+        private final ControlFlowGraph graph;
+        private final DominatorTree tree;
+        private final int[] definitions; //instruction defining each temp, -1 for none
+        private final int[] positions; //block each instruction ends up in
+        private final int[] useStarts; //instructions reading temp t are uses[useStarts[t]..useStarts[t + 1])
+        private final int[] uses;
+        private final List<List<Integer>> moved = new ArrayList<>(); //instructions hoisted to the end of each block
+        private final List<Loop> found = new ArrayList<>();
+        private final boolean[] isHeader;
+        private final boolean[] removed; //blocks of loops replaced by a closed form
+        private final long[] replacements; //value a header PHI of a removed loop leaves with, ABSENT for other temps
+        private final List<List<long[]>> closedCode = new ArrayList<>(); //code for the end of each preheader
+        private final long[] exits; //label a preheader jumps to instead of its removed loop
+
+        Loops(IrFunction function, boolean[] globals) {
+            this.function = function;
+            this.globals = globals;
+            graph = ControlFlowGraph.of(function);
+            tree = new DominatorTree(graph);
+            definitions = new int[function.tempCount()];
+            Arrays.fill(definitions, -1);
+            positions = new int[function.size()];
+            for (int block = 0; block < graph.blockCount(); block++) {
+                moved.add(new ArrayList<>());
+                closedCode.add(new ArrayList<>());
+                for (int i = graph.start(block); i < graph.end(block); i++) {
+                    positions[i] = block;
+                    if (Operand.kind(function.dest(i)) == Operand.TEMP) {
+                        definitions[Operand.value(function.dest(i))] = i;
+                    }
+                }
+            }
+            useStarts = new int[function.tempCount() + 1];
+            for (int i = 0; i < function.size(); i++) {
+                forEachUse(i, null);
+            }
+            for (int t = 0; t < function.tempCount(); t++) {
+                useStarts[t + 1] += useStarts[t];
+            }
+            uses = new int[useStarts[function.tempCount()]];
+            int[] filled = Arrays.copyOf(useStarts, function.tempCount());
+            for (int i = 0; i < function.size(); i++) {
+                forEachUse(i, filled);
+            }
+            isHeader = new boolean[graph.blockCount()];
+            removed = new boolean[graph.blockCount()];
+            replacements = new long[function.tempCount()];
+            exits = new long[graph.blockCount()];
+        }
+
+        //Count the temps the instruction reads, or with filled record it as a user of each
+        private void forEachUse(int i, int[] filled) {
+            Opcode opcode = function.opcode(i);
+            if (opcode == Opcode.PHI) {
+                for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                    use(function.phiArgument(i, k), i, filled);
+                }
+                return;
+            }
+            if (opcode.sources() > 0) {
+                use(function.left(i), i, filled);
+            }
+            if (opcode.sources() > 1) {
+                use(function.right(i), i, filled);
+            }
+        }
+
+        private void use(long operand, int i, int[] filled) {
+            if (Operand.kind(operand) != Operand.TEMP) {
+                return;
+            }
+            int t = Operand.value(operand);
+            if (filled == null) {
+                useStarts[t + 1]++;
+            } else {
+                uses[filled[t]++] = i;
+            }
+        }
+
+        IrFunction rewrite() {
+            findLoops();
+            found.sort((a, b) -> Integer.compare(a.size, b.size));
+            for (Loop loop : found) {
+                if (loop.preheader >= 0) {
+                    hoist(loop);
+                }
+                countInductionVariables(loop);
+            }
+            for (int l = found.size() - 1; l >= 0; l--) {
+                Loop loop = found.get(l);
+                if (loop.preheader >= 0 && !removed[loop.header]) {
+                    replaceByClosedForm(loop);
+                }
+            }
+            return emit();
+        }
+
+        private void findLoops() {
+            int[] work = new int[graph.blockCount()];
+            int[] members = new int[graph.blockCount()];
+            int[] rpo = new int[graph.blockCount()];
+            for (int k = 0; k < tree.order().length; k++) {
+                rpo[tree.order()[k]] = k;
+            }
+            for (int header : tree.order()) {
+                int[] latches = new int[graph.predecessors(header).length];
+                int count = 0;
+                for (int predecessor : graph.predecessors(header)) {
+                    if (tree.dominates(header, predecessor)) {
+                        latches[count++] = predecessor;
+                    }
+                }
+                if (count == 0) {
+                    continue;
+                }
+                //the blocks that get to a latch without passing through the header, as reverse postorder indexes first
+                Loop loop = new Loop(header, Arrays.copyOf(latches, count), graph.blockCount());
+                loop.blocks[header] = true;
+                members[loop.size++] = rpo[header];
+                int size = 0;
+                for (int latch : loop.latches) {
+                    if (!loop.blocks[latch]) {
+                        loop.blocks[latch] = true;
+                        members[loop.size++] = rpo[latch];
+                        work[size++] = latch;
+                    }
+                }
+                while (size > 0) {
+                    for (int predecessor : graph.predecessors(work[--size])) {
+                        if (!loop.blocks[predecessor] && graph.isReachable(predecessor)) {
+                            loop.blocks[predecessor] = true;
+                            members[loop.size++] = rpo[predecessor];
+                            work[size++] = predecessor;
+                        }
+                    }
+                }
+                loop.members = Arrays.copyOf(members, loop.size);
+                Arrays.sort(loop.members);
+                for (int k = 0; k < loop.size; k++) {
+                    loop.members[k] = tree.order()[loop.members[k]];
+                }
+                int outside = -1;
+                int entries = 0;
+                for (int predecessor : graph.predecessors(header)) {
+                    if (!loop.blocks[predecessor] && graph.isReachable(predecessor)) {
+                        outside = predecessor;
+                        entries++;
+                    }
+                }
+                int last = graph.end(Math.max(outside, 0)) - 1;
+                if (entries == 1 && graph.successors(outside).length == 1
+                        && function.opcode(last) != Opcode.JUMP_IF_TRUE && function.opcode(last) != Opcode.JUMP_IF_FALSE) {
+                    loop.preheader = outside;
+                }
+                isHeader[header] = true;
+                found.add(loop);
+                loops++;
+            }
+        }
+
+        //Whether the operand's value is the same on every trip round the loop
+        private boolean isInvariant(long operand, Loop loop) {
+            switch (Operand.kind(operand)) {
+                case Operand.INT:
+                case Operand.BOOL:
+                    return true;
+                case Operand.SYMBOL:
+                    return !globals[Operand.value(operand)];
+                case Operand.TEMP:
+                    int definition = definitions[Operand.value(operand)];
+                    return definition < 0 || !loop.blocks[positions[definition]];
+                default:
+                    return false;
+            }
+        }
+
+        private void hoist(Loop loop) {
+            for (int block : loop.members) {
+                for (int i = graph.start(block); i < graph.end(block); i++) {
+                    if (positions[i] == block) {
+                        hoist(i, loop);
+                    }
+                }
+                for (int i : new ArrayList<>(moved.get(block))) {
+                    if (positions[i] == block) {
+                        hoist(i, loop);
+                    }
+                }
+            }
+        }
+
+        private void hoist(int i, Loop loop) {
+            Opcode opcode = function.opcode(i);
+            if (!(opcode.isUnary() || opcode.isBinary()) || Operand.kind(function.dest(i)) != Operand.TEMP
+                    || !isInvariant(function.left(i), loop) || (opcode.isBinary() && !isInvariant(function.right(i), loop))) {
+                return;
+            }
+            if (positions[i] == blockOf(i)) {
+                hoisted++;
+            }
+            positions[i] = loop.preheader;
+            moved.get(loop.preheader).add(i);
+        }
+
+        private int blockOf(int i) {
+            int low = 0;
+            int high = graph.blockCount() - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (graph.start(middle) <= i) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private void countInductionVariables(Loop loop) {
+            for (int i = graph.start(loop.header); i < graph.end(loop.header); i++) {
+                if (function.opcode(i) == Opcode.PHI) {
+                    Step step = step(i, loop);
+                    if (step != null && Operand.kind(step.amount) == Operand.INT) {
+                        inductionVariables++;
+                    }
+                }
+            }
+        }
+
+        //How the header PHI changes on each trip, null if it isn't dest = phi +/- amount with the amount the same
+        //on every trip and the update done on every trip
+        private Step step(int phi, Loop loop) {
+            if (loop.latches.length != 1 || function.phiArgumentCount(phi) != 2) {
+                return null;
+            }
+            long back = function.phiArgument(phi, position(loop.header, loop.latches[0]));
+            if (Operand.kind(back) != Operand.TEMP || definitions[Operand.value(back)] < 0) {
+                return null;
+            }
+            int update = definitions[Operand.value(back)];
+            if (!loop.blocks[positions[update]] || !tree.dominates(positions[update], loop.latches[0])) {
+                return null;
+            }
+            Opcode opcode = function.opcode(update);
+            long dest = function.dest(phi);
+            if (opcode == Opcode.ADD && function.left(update) == dest && isInvariant(function.right(update), loop)) {
+                return new Step(phi, false, function.right(update));
+            }
+            if (opcode == Opcode.ADD && function.right(update) == dest && isInvariant(function.left(update), loop)) {
+                return new Step(phi, false, function.left(update));
+            }
+            if (opcode == Opcode.SUB && function.left(update) == dest && isInvariant(function.right(update), loop)) {
+                return new Step(phi, true, function.right(update));
+            }
+            return null;
+        }
+
+        private int position(int block, int predecessor) {
+            int[] predecessors = graph.predecessors(block);
+            for (int k = 0; k < predecessors.length; k++) {
+                if (predecessors[k] == predecessor) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        private void replaceByClosedForm(Loop loop) {
+            //the loop may only compute values, and only its header PHIs may be used after it. Inner loops might not end.
+            for (int block : loop.members) {
+                if (block == loop.header) {
+                    continue;
+                }
+                if (isHeader[block]) {
+                    return;
+                }
+                for (int successor : graph.successors(block)) {
+                    if (!loop.blocks[successor]) {
+                        return;
+                    }
+                }
+            }
+            for (int block : loop.members) {
+                for (int i = graph.start(block); i < graph.end(block); i++) {
+                    if (!loop.blocks[positions[i]]) {
+                        continue;
+                    }
+                    Opcode opcode = function.opcode(i);
+                    if (opcode == Opcode.CALL || opcode == Opcode.ARG || opcode == Opcode.RETURN
+                            || Operand.kind(function.dest(i)) == Operand.SYMBOL) {
+                        return;
+                    }
+                    if (!(block == loop.header && opcode == Opcode.PHI) && isUsedOutside(function.dest(i), loop)) {
+                        return;
+                    }
+                }
+            }
+
+            //the header decides whether to go round again by comparing an induction variable stepped by 1 with a bound
+            int last = graph.end(loop.header) - 1;
+            Opcode jump = function.opcode(last);
+            if (jump != Opcode.JUMP_IF_TRUE && jump != Opcode.JUMP_IF_FALSE) {
+                return;
+            }
+            int target = graph.blockOf(function.right(last));
+            int exit = loop.blocks[target] ? loop.header + 1 : target;
+            if (exit >= graph.blockCount() || loop.blocks[exit] || graph.predecessors(exit).length != 1
+                    || function.opcode(graph.start(exit)) != Opcode.LABEL
+                    || (graph.start(exit) + 1 < graph.end(exit) && function.opcode(graph.start(exit) + 1) == Opcode.PHI)) {
+                return;
+            }
+            boolean staysWhenTrue = (jump == Opcode.JUMP_IF_TRUE) == loop.blocks[target];
+            long condition = function.left(last);
+            if (Operand.kind(condition) != Operand.TEMP || definitions[Operand.value(condition)] < 0
+                    || positions[definitions[Operand.value(condition)]] != loop.header) {
+                return;
+            }
+            int comparison = definitions[Operand.value(condition)];
+            Opcode compare = function.opcode(comparison);
+            long counter = function.left(comparison);
+            long bound = function.right(comparison);
+            if (!isInvariant(bound, loop)) {
+                compare = swapped(compare);
+                counter = function.right(comparison);
+                bound = function.left(comparison);
+            }
+            if (!staysWhenTrue) {
+                compare = negated(compare);
+            }
+            if (compare == null || !isInvariant(bound, loop) || Operand.kind(counter) != Operand.TEMP) {
+                return;
+            }
+            int counterPhi = definitions[Operand.value(counter)];
+            if (counterPhi < 0 || positions[counterPhi] != loop.header || function.opcode(counterPhi) != Opcode.PHI) {
+                return;
+            }
+            Step counting = step(counterPhi, loop);
+            if (counting == null || counting.amount != Operand.integer(1)) {
+                return;
+            }
+            //count up while below the bound or down while above it, <= and >= only with a bound that can be moved by 1
+            boolean up = !counting.subtract;
+            if (compare == (up ? Opcode.LE : Opcode.GE) && Operand.kind(bound) == Operand.INT
+                    && Operand.value(bound) != (up ? Integer.MAX_VALUE : Integer.MIN_VALUE)) {
+                bound = Operand.integer(Operand.value(bound) + (up ? 1 : -1));
+                compare = up ? Opcode.LT : Opcode.GT;
+            }
+            if (compare != (up ? Opcode.LT : Opcode.GT)) {
+                return;
+            }
+
+            List<Step> steps = new ArrayList<>();
+            for (int i = graph.start(loop.header); i < last; i++) {
+                if (function.opcode(i) != Opcode.PHI) {
+                    continue;
+                }
+                Step step = step(i, loop);
+                if (step == null && isUsedOutside(function.dest(i), loop)) {
+                    return;
+                }
+                if (step != null) {
+                    steps.add(step);
+                }
+            }
+
+            //trips = (bound - start) * (start < bound) counting up, (start - bound) * (start > bound) counting down
+            int preheader = loop.preheader;
+            long start = function.phiArgument(counterPhi, 1 - position(loop.header, loop.latches[0]));
+            long runs = temp();
+            long distance = temp();
+            long trips = temp();
+            List<long[]> code = closedCode.get(preheader);
+            code.add(new long[]{Opcode.GT.ordinal(), runs, up ? bound : start, up ? start : bound});
+            code.add(new long[]{Opcode.SUB.ordinal(), distance, up ? bound : start, up ? start : bound});
+            code.add(new long[]{Opcode.MUL.ordinal(), trips, distance, runs});
+            for (Step step : steps) {
+                long entry = function.phiArgument(step.phi, 1 - position(loop.header, loop.latches[0]));
+                long total = trips;
+                if (step.amount != Operand.integer(1)) {
+                    total = temp();
+                    code.add(new long[]{Opcode.MUL.ordinal(), total, step.amount, trips});
+                }
+                long leaves = temp();
+                code.add(new long[]{(step.subtract ? Opcode.SUB : Opcode.ADD).ordinal(), leaves, entry, total});
+                replacements[Operand.value(function.dest(step.phi))] = leaves;
+            }
+            exits[preheader] = function.left(graph.start(exit));
+            for (int block : loop.members) {
+                removed[block] = true;
+            }
+            closedForms++;
+        }
+
+        private int newTemps = 0;
+
+        private long temp() {
+            return Operand.temp(function.tempCount() + newTemps++);
+        }
+
+        private boolean isUsedOutside(long temp, Loop loop) {
+            if (Operand.kind(temp) != Operand.TEMP) {
+                return false;
+            }
+            int t = Operand.value(temp);
+            for (int u = useStarts[t]; u < useStarts[t + 1]; u++) {
+                if (!loop.blocks[positions[uses[u]]] && graph.isReachable(positions[uses[u]])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private IrFunction emit() {
+            SsaRewriter rewriter = new SsaRewriter(function, graph);
+            IrFunction out = rewriter.getCode();
+            for (int t = 0; t < newTemps; t++) {
+                out.newTemp();
+            }
+            for (int block = 0; block < graph.blockCount(); block++) {
+                if (!graph.isReachable(block) || removed[block]) {
+                    continue;
+                }
+                int last = graph.end(block) - 1;
+                boolean jumps = function.opcode(last) == Opcode.JUMP;
+                for (int i = graph.start(block); i <= last; i++) {
+                    if (i == last && jumps) {
+                        break;
+                    }
+                    if (positions[i] == block) {
+                        emit(rewriter, block, i);
+                    }
+                }
+                for (int i : moved.get(block)) {
+                    if (positions[i] == block) {
+                        emit(rewriter, block, i);
+                    }
+                }
+                for (long[] instruction : closedCode.get(block)) {
+                    rewriter.emit(block, Opcode.of((int) instruction[0]), instruction[1], resolve(instruction[2]), resolve(instruction[3]));
+                }
+                if (!Operand.isAbsent(exits[block])) {
+                    rewriter.emit(block, Opcode.JUMP, Operand.ABSENT, exits[block], Operand.ABSENT);
+                } else if (jumps) {
+                    emit(rewriter, block, last);
+                }
+            }
+            return rewriter.finish();
+        }
+
+        private void emit(SsaRewriter rewriter, int block, int i) {
+            Opcode opcode = function.opcode(i);
+            if (opcode == Opcode.PHI) {
+                int phi = rewriter.emitPhi(block, i);
+                for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                    rewriter.getCode().setPhiArgument(phi, k, resolve(function.phiArgument(i, k)));
+                }
+                return;
+            }
+            long left = opcode.sources() > 0 ? resolve(function.left(i)) : function.left(i);
+            long right = opcode.sources() > 1 ? resolve(function.right(i)) : function.right(i);
+            rewriter.emit(block, opcode, function.dest(i), left, right);
+        }
+
+        private long resolve(long operand) {
+            while (Operand.kind(operand) == Operand.TEMP && Operand.value(operand) < replacements.length
+                    && !Operand.isAbsent(replacements[Operand.value(operand)])) {
+                operand = replacements[Operand.value(operand)];
+            }
+            return operand;
+        }
+    }
+
+    //The comparison with its operands the other way round
+    private static Opcode swapped(Opcode compare) {
+        switch (compare) {
+            case LT:
+                return Opcode.GT;
+            case LE:
+                return Opcode.GE;
+            case GT:
+                return Opcode.LT;
+            case GE:
+                return Opcode.LE;
+            case EQ:
+            case NE:
+                return compare;
+            default:
+                return null;
+        }
+    }
+
+    //The comparison that is true when this one is false
+    private static Opcode negated(Opcode compare) {
+        if (compare == null) {
+            return null;
+        }
+        switch (compare) {
+            case LT:
+                return Opcode.GE;
+            case LE:
+                return Opcode.GT;
+            case GT:
+                return Opcode.LE;
+            case GE:
+                return Opcode.LT;
+            case EQ:
+                return Opcode.NE;
+            case NE:
+                return Opcode.EQ;
+            default:
+                return null;
+        }
+    }
+}
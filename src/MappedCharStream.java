@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//Char stream over a fully decoded input. The file is memory mapped and decoded from the mapping in one go so the token manager
+//reads straight out of a single array, no refills, no buffer growth and no per character line/column arrays.
+public class MappedCharStream extends SimpleCharStream {
+
+    private final char[] chars;
+    private final int length;
+    private int pos = -1;
+    private int begin = 0;
+
+    //Offsets of the first character on each line, line numbers are worked out from these on demand
+    private int[] lineStarts = new int[64];
+    private int lineCount = 0;
+    private int lineHint = 0;
+    private int indexed = 0;
+    //Last column worked out on a line with tabSize over 1, the next one on the same line carries on from it
+    private int tabbedOffset = -1;
+    private int tabbedColumn = 0;
+
+    //Set by adjustBeginLineColumn, lines from adjustedFrom on move by lineShift and the rest of its line by columnShift
+    private int adjustedFrom = Integer.MAX_VALUE;
+    private int adjustedLine = -1;
+    private int lineShift = 0;
+    private int columnShift = 0;
+
+    MappedCharStream(char[] chars, int length) {
+        super(new StringReader(""), 1, 1, 1);
+        this.chars = chars;
+        this.length = length;
+        addLineStart(0);
+    }
+
+    MappedCharStream(CharSequence input) {
+        this(input.toString().toCharArray(), input.length());
+    }
+
+    //Map the whole file and decode it with the platform charset, the same one FileInputStream + SimpleCharStream uses
+    static MappedCharStream open(Path path) throws IOException {
+        return open(path, Charset.defaultCharset());
+    }
+
+    static MappedCharStream open(Path path, Charset charset) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer decoded;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //Decode straight out of the mapping into one buffer, which only grows if the guess at its size is short
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            decoded = CharBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8,
+                    (long) (mapped.remaining() * (double) decoder.averageCharsPerByte()) + 16));
+            CoderResult result;
+            do {
+                result = decoder.decode(mapped, decoded, true);
+                if (result.isOverflow()) {
+                    decoded = grow(decoded);
+                }
+            } while (result.isOverflow());
+            while (decoder.flush(decoded).isOverflow()) {
+                decoded = grow(decoded);
+            }
+        }
+        return new MappedCharStream(decoded.array(), decoded.position());
+    }
+
+    private static CharBuffer grow(CharBuffer buffer) {
+        CharBuffer bigger = CharBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        return bigger.put(buffer);
+    }
+
+    //A line starts after "\n", or after a "\r" that isn't followed by "\n", matching SimpleCharStream.
+    //Lines are only indexed as far as the lexer has asked about so the input is never scanned twice up front.
+    private void indexLinesTo(int offset) {
+        int i = indexed;
+        for (; i <= offset && i < length; i++) {
+            char c = chars[i];
+            if (c == '\n' || (c == '\r' && (i + 1 >= length || chars[i + 1] != '\n'))) {
+                addLineStart(i + 1);
+            }
+        }
+        indexed = i;
+    }
+
+    private void addLineStart(int offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = offset;
+    }
+
+    //Tokens are read front to back so the last line looked up is nearly always the right place to start from
+    private int lineIndex(int offset) {
+        if (offset >= indexed) {
+            indexLinesTo(offset);
+        }
+        int line = lineHint;
+        while (line + 1 < lineCount && lineStarts[line + 1] <= offset) {
+            line++;
+        }
+        while (line > 0 && lineStarts[line] > offset) {
+            line--;
+        }
+        lineHint = line;
+        return line;
+    }
+
+    private int lineOf(int offset) {
+        if (offset < 0) {
+            return 0;
+        }
+        return lineIndex(offset) + 1 + (offset >= adjustedFrom ? lineShift : 0);
+    }
+
+    private int columnOf(int offset) {
+        if (offset < 0) {
+            return 0;
+        }
+        int line = lineIndex(offset);
+        int column = column(line, offset);
+        return offset >= adjustedFrom && line == adjustedLine ? column + columnShift : column;
+    }
+
+    //Column before any adjustment. A tab moves on to the next multiple of tabSize like in SimpleCharStream, so with
+    //tabs counting wider than one character the line is walked from its start, or from the last column worked out
+    //when that was earlier on the same line.
+    private int column(int line, int offset) {
+        int start = lineStarts[line];
+        if (tabSize <= 1) {
+            return offset - start + 1;
+        }
+        int column = 0;
+        if (tabbedOffset >= start && tabbedOffset <= offset) {
+            start = tabbedOffset + 1;
+            column = tabbedColumn;
+        }
+        for (int i = start; i <= offset; i++) {
+            column = chars[i] == '\t' ? column + tabSize - column % tabSize : column + 1;
+        }
+        tabbedOffset = offset;
+        tabbedColumn = column;
+        return column;
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        if (pos + 1 >= length) {
+            begin = pos;
+            throw new IOException();
+        }
+        begin = ++pos;
+        return chars[pos];
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (pos + 1 >= length) {
+            throw new IOException();
+        }
+        return chars[++pos];
+    }
+
+    @Override
+    public void backup(int amount) {
+        pos -= amount;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return getEndLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        return columnOf(pos);
+    }
+
+    @Override
+    public int getEndLine() {
+        return lineOf(pos);
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return columnOf(begin);
+    }
+
+    @Override
+    public int getBeginLine() {
+        return lineOf(begin);
+    }
+
+    @Override
+    public String GetImage() {
+        return new String(chars, begin, pos - begin + 1);
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] suffix = new char[len];
+        System.arraycopy(chars, pos - len + 1, suffix, 0, len);
+        return suffix;
+    }
+
+    //The line table is kept, tokens already handed out can still ask for their lines and columns
+    @Override
+    public void Done() {
+    }
+
+    //Like SimpleCharStream, the current token starts at newLine and newCol, the lines after it are numbered on from
+    //there and the rest of its line moves along with it
+    @Override
+    public void adjustBeginLineColumn(int newLine, int newCol) {
+        adjustedFrom = begin;
+        adjustedLine = lineIndex(begin);
+        lineShift = newLine - (adjustedLine + 1);
+        columnShift = newCol - column(adjustedLine, begin);
+    }
+}
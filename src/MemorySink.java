@@ -0,0 +1,33 @@
+//Keeps the report in memory, used when the compiler is embedded or when output has to be replayed later
+class MemorySink implements ReportSink {
+
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void print(String s) {
+        text.append(s);
+    }
+
+    @Override
+    public void println(String line) {
+        text.append(line).append('\n');
+    }
+
+    @Override
+    public void println() {
+        text.append('\n');
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
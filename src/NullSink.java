@@ -0,0 +1,24 @@
+//Sink for check-only runs, reports are neither formatted nor written
+final class NullSink implements ReportSink {
+
+    static final NullSink INSTANCE = new NullSink();
+
+    private NullSink() {}
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void print(String text) {}
+
+    @Override
+    public void println(String line) {}
+
+    @Override
+    public void println() {}
+
+    @Override
+    public void flush() {}
+}
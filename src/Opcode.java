@@ -0,0 +1,87 @@
+//Instructions of the three address IR. Each instruction has a destination and up to two sources, see Operand for
+//how they are encoded:
+// COPY, NEG, NOT          dest = op left
+// ADD .. OR               dest = left op right. MUL has no CCAL operator, passes use it for closed forms
+// LABEL, JUMP             left is the label
+// JUMP_IF_TRUE/FALSE      left is the condition, right the label
+// ARG                     left is passed to the next CALL
+// CALL                    dest = call of function left, right is the count of ARGs just before it. dest is absent for a call statement
+// RETURN                  left is the returned value, absent in main
+// PHI                     dest = the argument for the predecessor control came from, see IrFunction.emitPhi
+enum Opcode implements CCALParserTreeConstants {
+    COPY(-1, "=", 1),
+    NEG(JJTMINUS, "-", 1),
+    NOT(JJTNOT, "~", 1),
+    ADD(JJTADD, "+", 2),
+    SUB(JJTSUBTRACT, "-", 2),
+    MUL(-1, "*", 2),
+    EQ(JJTEQUAL, "==", 2),
+    NE(JJTNOTEQUAL, "!=", 2),
+    LT(JJTLESSTHAN, "<", 2),
+    LE(JJTLESSTHANEQUAL, "<=", 2),
+    GT(JJTGREATERTHAN, ">", 2),
+    GE(JJTGREATERTHANEQUAL, ">=", 2),
+    AND(JJTAND, "&&", 2),
+    OR(JJTOR, "||", 2),
+    LABEL(-1, "", 0),
+    JUMP(-1, "goto", 0),
+    JUMP_IF_TRUE(-1, "if", 1),
+    JUMP_IF_FALSE(-1, "ifFalse", 1),
+    ARG(-1, "param", 1),
+    CALL(-1, "call", 0),
+    RETURN(-1, "return", 1),
+    PHI(-1, "phi", 0);
+
+    private static final Opcode[] VALUES = values();
+    private static final Opcode[] BY_KIND = new Opcode[jjtNodeName.length];
+
+    static {
+        for (Opcode opcode : VALUES) {
+            if (opcode.kind >= 0) {
+                BY_KIND[opcode.kind] = opcode;
+            }
+        }
+    }
+
+    private final int kind;
+    private final String symbol;
+    private final int sources;
+
+    Opcode(int kind, String symbol, int sources) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.sources = sources;
+    }
+
+    //Opcode for the ordinal stored in an instruction buffer
+    static Opcode of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    //Opcode computing the operator of a node kind, null for kinds that aren't operators
+    static Opcode forKind(int kind) {
+        return BY_KIND[kind];
+    }
+
+    String symbol() {
+        return symbol;
+    }
+
+    //Number of value operands read, starting with left. Labels and call targets aren't counted.
+    int sources() {
+        return sources;
+    }
+
+    boolean isUnary() {
+        return this == COPY || this == NEG || this == NOT;
+    }
+
+    boolean isBinary() {
+        return ordinal() >= ADD.ordinal() && ordinal() <= OR.ordinal();
+    }
+
+    //Ends a run of straight line code, control may continue somewhere else
+    boolean isBranch() {
+        return this == JUMP || this == JUMP_IF_TRUE || this == JUMP_IF_FALSE || this == RETURN;
+    }
+}
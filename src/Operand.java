@@ -0,0 +1,76 @@
+//IR operands packed in a long, the kind in the high 32 bits and its value in the low 32. A value is a temp number,
+//an IrProgram symbol id, an immediate int or boolean (0 or 1), a label number, an IrProgram function index or, once
+//the code is laid out, the index of the instruction a jump goes to.
+final class Operand {
+
+    static final int NONE = 0;
+    static final int TEMP = 1;
+    static final int SYMBOL = 2;
+    static final int INT = 3;
+    static final int BOOL = 4;
+    static final int LABEL = 5;
+    static final int FUNCTION = 6;
+    static final int TARGET = 7;
+
+    //No operand, eg. the destination of a call statement
+    static final long ABSENT = 0L;
+
+    private Operand() {
+    }
+
+    static long temp(int number) {
+        return of(TEMP, number);
+    }
+
+    static long symbol(int id) {
+        return of(SYMBOL, id);
+    }
+
+    static long integer(int value) {
+        return of(INT, value);
+    }
+
+    static long bool(boolean value) {
+        return of(BOOL, value ? 1 : 0);
+    }
+
+    static long label(int number) {
+        return of(LABEL, number);
+    }
+
+    static long function(int index) {
+        return of(FUNCTION, index);
+    }
+
+    static long target(int index) {
+        return of(TARGET, index);
+    }
+
+    static long of(int kind, int value) {
+        return ((long) kind << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    static int kind(long operand) {
+        return (int) (operand >>> 32);
+    }
+
+    static int value(long operand) {
+        return (int) operand;
+    }
+
+    static boolean isAbsent(long operand) {
+        return kind(operand) == NONE;
+    }
+
+    //An immediate int or boolean
+    static boolean isConstant(long operand) {
+        int kind = kind(operand);
+        return kind == INT || kind == BOOL;
+    }
+
+    //A temp or symbol, something an instruction can write
+    static boolean isVariable(long operand) {
+        int kind = kind(operand);
+        return kind == TEMP || kind == SYMBOL;
+    }
+}
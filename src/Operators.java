@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+//Operator metadata for each node kind, indexed by CCALParserTreeConstants id (Node.getId()).
+//Kinds that aren't operators or operands have arity -1 and no symbol.
+final class Operators implements CCALParserTreeConstants {
+
+    static final String INTEGER = "integer";
+    static final String BOOLEAN = "boolean";
+    //Operands may have either type as long as both sides agree
+    static final String ANY = "any";
+
+    private static final String[] SYMBOL = new String[jjtNodeName.length];
+    private static final int[] ARITY = new int[jjtNodeName.length];
+    private static final String[] RESULT = new String[jjtNodeName.length];
+    private static final String[] OPERAND = new String[jjtNodeName.length];
+
+    static {
+        Arrays.fill(ARITY, -1);
+        //operands, a variable's type comes from its symbol
+        define(JJTVARIABLE, null, 0, null, null);
+        define(JJTDIGIT, null, 0, INTEGER, null);
+        define(JJTBOOLEAN, null, 0, BOOLEAN, null);
+        //arithmetic
+        define(JJTADD, "+", 2, INTEGER, INTEGER);
+        define(JJTSUBTRACT, "-", 2, INTEGER, INTEGER);
+        define(JJTMINUS, "-", 1, INTEGER, INTEGER);
+        //comparisons, && and || are parsed as comparisons of their neighbours so they take ANY as well
+        define(JJTEQUAL, "==", 2, BOOLEAN, ANY);
+        define(JJTNOTEQUAL, "!=", 2, BOOLEAN, ANY);
+        define(JJTLESSTHAN, "<", 2, BOOLEAN, ANY);
+        define(JJTLESSTHANEQUAL, "<=", 2, BOOLEAN, ANY);
+        define(JJTGREATERTHAN, ">", 2, BOOLEAN, ANY);
+        define(JJTGREATERTHANEQUAL, ">=", 2, BOOLEAN, ANY);
+        define(JJTOR, "||", 2, BOOLEAN, ANY);
+        define(JJTAND, "&&", 2, BOOLEAN, ANY);
+        define(JJTNOT, "~", 1, BOOLEAN, BOOLEAN);
+    }
+
+    private Operators() {
+    }
+
+    private static void define(int kind, String symbol, int arity, String result, String operand) {
+        SYMBOL[kind] = symbol;
+        ARITY[kind] = arity;
+        RESULT[kind] = result;
+        OPERAND[kind] = operand;
+    }
+
+    //How the operator is written, eg. "<=", or null for anything that isn't an operator
+    static String symbol(int kind) {
+        return SYMBOL[kind];
+    }
+
+    //Number of operands, 0 for a variable or literal and -1 for anything else that isn't an operator
+    static int arity(int kind) {
+        return ARITY[kind];
+    }
+
+    //Type the node evaluates to, null for a variable (its type is its symbol's) and for non-operators
+    static String resultType(int kind) {
+        return RESULT[kind];
+    }
+
+    //Type each operand has to be, or ANY
+    static String operandType(int kind) {
+        return OPERAND[kind];
+    }
+
+    //A variable, digit or boolean that is used as it is
+    static boolean isOperand(int kind) {
+        return ARITY[kind] == 0;
+    }
+
+    //A literal digit or boolean, the only operands whose type is known without a lookup
+    static boolean isLiteral(int kind) {
+        return ARITY[kind] == 0 && RESULT[kind] != null;
+    }
+
+    //Addition or subtraction
+    static boolean isArithmetic(int kind) {
+        return ARITY[kind] == 2 && OPERAND[kind] == INTEGER;
+    }
+
+    //A two sided condition, including && and ||
+    static boolean isComparison(int kind) {
+        return ARITY[kind] == 2 && OPERAND[kind] == ANY;
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Runs a pipeline of IR optimisation passes over programmes with a PassManager. For every pass, including the ones
+//run for dependencies, it reports the instruction count before and after it, its wall time and allocation and what
+//it did, then how many instructions IrInterpreter takes to run the programme as lowered and once optimised.
+//Usage: java Optimizer [-O0 | -O1 | -passes name,...] [-no-name]... [-local] [-no-copies] [-budget instructions] [file...]
+//-O1 is the default, with no files generated workloads are used
+public class Optimizer {
+
+    private static final long BUDGET = 100_000_000L;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        List<String> pipeline = new ArrayList<>(PassManager.O1);
+        boolean global = true;
+        boolean copies = true;
+        int budget = Inlining.DEFAULT_BUDGET;
+        List<String> files = new ArrayList<>();
+        PassManager registry = new PassManager(NullSink.INSTANCE);
+        List<String> known = registry.getNames();
+        for (int i = 0; i < args.length; i++) {
+            List<String> picked = PassManager.pipeline(args[i], i + 1 < args.length ? args[i + 1] : null);
+            if (picked != null) {
+                pipeline = picked;
+                if (args[i].equals("-passes")) {
+                    i++;
+                }
+            } else if (args[i].startsWith("-no-") && known.contains(args[i].substring(4))) {
+                pipeline.remove(args[i].substring(4));
+            } else if (args[i].equals("-local")) {
+                global = false;
+            } else if (args[i].equals("-no-copies")) {
+                copies = false;
+            } else if (args[i].equals("-budget") && i + 1 < args.length) {
+                budget = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                System.out.println("Optimizer: You must use the following:");
+                System.out.println("         java Optimizer [-O0 | -O1 | -passes name,...] [-no-name]... [-local] [-no-copies] [-budget instructions] [file...]");
+                System.out.println("-O0 runs no passes, -O1 (the default) runs " + String.join(", ", PassManager.O1));
+                System.out.println("passes are " + String.join(", ", known) + ", their dependencies run when needed");
+                System.out.println("-local only reuses values computed in the same block");
+                System.out.println("-no-copies keeps copies instead of propagating them");
+                System.out.println("-budget inlines functions of at most that many instructions, " + Inlining.DEFAULT_BUDGET + " by default");
+                return;
+            } else {
+                files.add(args[i]);
+            }
+        }
+        String unknown = registry.unknownPass(pipeline);
+        if (unknown != null) {
+            System.out.println("Optimizer: Unknown pass \"" + unknown + "\", passes are " + String.join(", ", known));
+            return;
+        }
+
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("1000 functions", () -> ProgramGenerator.generate(1000)));
+        generated.add(Workload.generated("100 loops", () -> ProgramGenerator.generateLoops(100, 10000)));
+        generated.add(Workload.generated("2000 conditions", () -> ProgramGenerator.generateConditions(2000)));
+        generated.addAll(Workload.random("random", 3, 2000));
+
+        boolean globally = global;
+        boolean copying = copies;
+        int size = budget;
+        ReportSink out = new WriterSink(System.out);
+        try {
+            for (Workload workload : Workload.select(files, false, generated)) {
+                out.println("---- " + workload.getName() + " ----");
+                FlatTree tree;
+                try {
+                    tree = workload.parse();
+                } catch (ParseException e) {
+                    out.println("Could not be parsed: " + e.getMessage());
+                    continue;
+                }
+                PassManager manager = new PassManager(out);
+                manager.register("values", () -> new ValueNumbering(globally, copying));
+                manager.register("inline", () -> new Inlining(size));
+                optimise(manager, tree, pipeline, out);
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void optimise(PassManager manager, FlatTree tree, List<String> pipeline, ReportSink out) {
+        if (!manager.check(tree)) {
+            out.println("Has semantic errors");
+            return;
+        }
+        IrProgram lowered = manager.lower(tree);
+        IrProgram optimised = manager.run(lowered, pipeline);
+        long nanos = 0;
+        long bytes = 0;
+        for (PassManager.Record record : manager.getRecords()) {
+            nanos += record.getNanos();
+            bytes = bytes < 0 || record.getBytes() < 0 ? -1 : bytes + record.getBytes();
+        }
+        out.println(new PassManager.Record("total", nanos, bytes, lowered.size(), optimised.size()).toString());
+        out.println(String.format("%-24s %8s -> %8s", "steps", steps(lowered), steps(optimised)));
+    }
+
+    private static String steps(IrProgram program) {
+        IrInterpreter.Outcome outcome = new IrInterpreter(program, BUDGET).run();
+        return outcome.getStatus() == IrInterpreter.Status.FINISHED ? String.valueOf(outcome.getSteps()) : outcome.getStatus().toString().toLowerCase();
+    }
+}
@@ -0,0 +1,18 @@
+import java.util.List;
+
+//A step of the optimisation pipeline run by PassManager. A transform returns the rewritten programme, an analysis
+//hands its result to the manager with PassManager.provide and returns the programme it was given.
+interface Pass {
+
+    //The name pipelines refer to it by
+    String getName();
+
+    //Passes that have to be in effect before this one runs, in the order to bring them about: "ssa" or
+    //"out-of-ssa" for the form of the code and the names of the analyses it reads
+    List<String> getDependencies();
+
+    IrProgram run(IrProgram program, PassManager manager);
+
+    //Say what the last run did, nothing if there is nothing to say
+    void report(ReportSink out);
+}
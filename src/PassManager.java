@@ -0,0 +1,301 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//Runs a pipeline of passes over a lowered programme. Passes are registered by name with a factory, so each run gets
+//a fresh one, and before a pass runs the manager runs whatever it depends on that isn't in effect: the code taken
+//into or out of SSA form and analyses computed. A transform that changes the programme drops every analysis.
+//Each pass run, including the ones run for dependencies and checking and lowering the syntax tree, is recorded with
+//its wall time, the bytes allocated by the thread running it and the instruction count before and after it.
+//Lowering is the first step a driver runs through the manager, on a tree it has checked itself or with check().
+final class PassManager {
+
+    //Pipelines by optimisation level, -O0 leaves the programme as it is lowered
+    static final List<String> O0 = Collections.emptyList();
+    static final List<String> O1 = Arrays.asList("inline", "constants", "evaluate-calls", "constants", "values", "loops",
+            "dead-code");
+
+    static final String SSA = "ssa";
+    static final String OUT_OF_SSA = "out-of-ssa";
+    static final String CALL_GRAPH = "call-graph";
+
+    //One run of a pass
+    static final class Record {
+
+        private final String name;
+        private final long nanos;
+        private final long bytes;
+        private final int before;
+        private final int after;
+
+        Record(String name, long nanos, long bytes, int before, int after) {
+            this.name = name;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.before = before;
+            this.after = after;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+
+        //Bytes allocated while it ran, -1 if the JVM can't tell
+        long getBytes() {
+            return bytes;
+        }
+
+        int getBefore() {
+            return before;
+        }
+
+        int getAfter() {
+            return after;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %8d -> %8d %9.3f ms %10s", name, before, after, nanos / 1e6,
+                    bytes < 0 ? "?" : (bytes + 1023) / 1024 + " KB");
+        }
+    }
+
+    private final Map<String, Supplier<Pass>> passes = new LinkedHashMap<>();
+    private final Map<String, Object> analyses = new HashMap<>();
+    private final List<Record> records = new ArrayList<>();
+    private final ReportSink out;
+    private boolean ssa = false;
+
+    //Reports each pass as it finishes to out, give NullSink.INSTANCE for none
+    PassManager(ReportSink out) {
+        this.out = out;
+        register(SSA, () -> new FormPass(SSA, true));
+        register(OUT_OF_SSA, () -> new FormPass(OUT_OF_SSA, false));
+        register(CALL_GRAPH, CallGraphPass::new);
+        register("inline", () -> new Inlining(Inlining.DEFAULT_BUDGET));
+        register("constants", ConstantPropagation::new);
+        register("evaluate-calls", () -> new CallEvaluation(CallEvaluation.DEFAULT_BUDGET));
+        register("values", () -> new ValueNumbering(true, true));
+        register("loops", LoopOptimization::new);
+        register("dead-code", DeadCodeElimination::new);
+    }
+
+    //Add a pass or replace the one with that name, eg. to run it with other settings
+    void register(String name, Supplier<Pass> factory) {
+        passes.put(name, factory);
+    }
+
+    boolean isRegistered(String name) {
+        return passes.containsKey(name);
+    }
+
+    //Names of the passes a pipeline can list
+    List<String> getNames() {
+        return new ArrayList<>(passes.keySet());
+    }
+
+    //The first pass of the pipeline named by a driver's option: -O0, -O1 or -passes with the list that follows it.
+    //Null if the option isn't one of those.
+    static List<String> pipeline(String option, String list) {
+        switch (option) {
+            case "-O0":
+                return new ArrayList<>(O0);
+            case "-O1":
+                return new ArrayList<>(O1);
+            case "-passes":
+                return list == null ? null : new ArrayList<>(Arrays.asList(list.split(",")));
+            default:
+                return null;
+        }
+    }
+
+    //First pass in the pipeline that isn't registered, null if they all are
+    String unknownPass(List<String> pipeline) {
+        for (String name : pipeline) {
+            if (!isRegistered(name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    //Check a parsed programme without reporting anything, recorded as a pass. False if it has semantic errors.
+    boolean check(FlatTree tree) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        Visitor visitor = new Visitor(NullSink.INSTANCE);
+        visitor.check(tree);
+        long nanos = System.nanoTime() - start;
+        record(new Record("check", nanos, allocated(bytes), 0, 0));
+        return visitor.getErrorCount() == 0;
+    }
+
+    //Lower a programme that checked without errors, recorded as a pass
+    IrProgram lower(FlatTree tree) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        IrProgram program = IrBuilder.build(tree);
+        long nanos = System.nanoTime() - start;
+        record(new Record("lower", nanos, allocated(bytes), 0, program.size()));
+        return program;
+    }
+
+    //Run the pipeline over a lowered programme, the result is out of SSA form
+    IrProgram run(IrProgram program, List<String> pipeline) {
+        analyses.clear();
+        ssa = false;
+        for (String name : pipeline) {
+            program = run(program, name);
+        }
+        return run(program, OUT_OF_SSA);
+    }
+
+    //Run the pass after its dependencies, a pass already in effect isn't run again
+    IrProgram run(IrProgram program, String name) {
+        if (isInEffect(name)) {
+            return program;
+        }
+        Supplier<Pass> factory = passes.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown pass \"" + name + "\", passes are " + String.join(", ", passes.keySet()));
+        }
+        Pass pass = factory.get();
+        for (String dependency : pass.getDependencies()) {
+            program = run(program, dependency);
+        }
+        for (String dependency : pass.getDependencies()) {
+            if (!isInEffect(dependency)) {
+                throw new IllegalStateException(name + " needs " + dependency + ", which a later dependency undid");
+            }
+        }
+        int before = program.size();
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        IrProgram result = pass.run(program, this);
+        long nanos = System.nanoTime() - start;
+        record(new Record(name, nanos, allocated(bytes), before, result.size()));
+        pass.report(out);
+        if (result != program) {
+            analyses.clear();
+        }
+        if (name.equals(SSA) || name.equals(OUT_OF_SSA)) {
+            ssa = name.equals(SSA);
+        }
+        return result;
+    }
+
+    private boolean isInEffect(String name) {
+        switch (name) {
+            case SSA:
+                return ssa;
+            case OUT_OF_SSA:
+                return !ssa;
+            default:
+                return analyses.containsKey(name);
+        }
+    }
+
+    //For an analysis pass to hand over its result
+    void provide(String name, Object result) {
+        analyses.put(name, result);
+    }
+
+    //The result of an analysis the running pass depends on
+    <T> T getAnalysis(String name, Class<T> type) {
+        Object result = analyses.get(name);
+        if (result == null) {
+            throw new IllegalStateException(name + " isn't in effect, it has to be a dependency");
+        }
+        return type.cast(result);
+    }
+
+    //Every pass run so far, in order
+    List<Record> getRecords() {
+        return records;
+    }
+
+    private void record(Record record) {
+        records.add(record);
+        out.println(record.toString());
+    }
+
+    //Bytes the current thread has allocated so far, -1 if the JVM can't tell
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long allocated(long before) {
+        return before < 0 ? -1 : allocatedBytes() - before;
+    }
+
+    //Takes the code into or out of SSA form
+    private static final class FormPass implements Pass {
+
+        private final String name;
+        private final boolean into;
+
+        FormPass(String name, boolean into) {
+            this.name = name;
+            this.into = into;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<String> getDependencies() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public IrProgram run(IrProgram program, PassManager manager) {
+            return program.transform(into ? SsaConstruction::run : SsaDestruction::run);
+        }
+
+        @Override
+        public void report(ReportSink out) {
+        }
+    }
+
+    private static final class CallGraphPass implements Pass {
+
+        @Override
+        public String getName() {
+            return CALL_GRAPH;
+        }
+
+        @Override
+        public List<String> getDependencies() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public IrProgram run(IrProgram program, PassManager manager) {
+            manager.provide(CALL_GRAPH, new CallGraph(program));
+            return program;
+        }
+
+        @Override
+        public void report(ReportSink out) {
+        }
+    }
+}
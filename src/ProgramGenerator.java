@@ -0,0 +1,342 @@
+import java.util.Random;
+
+//Builds large but valid CCAL programmes for the benchmarks. Every function is a renamed copy of the multiply
+//function from test4.ccal and main calls each of them once.
+public class ProgramGenerator {
+
+    private static final String[] COMPARISONS = {" < ", " <= ", " != ", " == ", " > ", " >= "};
+
+    public static void main(String[] args) {
+        int functions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        System.out.print(generate(functions));
+    }
+
+    static String generate(int functions) {
+        StringBuilder programme = new StringBuilder();
+        programme.append("const five : integer = 5;\n");
+        for (int i = 0; i < functions; i++) {
+            appendFunction(programme, "multiply_" + i);
+        }
+        programme.append("main\n");
+        programme.append("begin\n");
+        programme.append("  var arg_1 : integer;\n");
+        programme.append("  var arg_2 : integer;\n");
+        programme.append("  var result : integer;\n");
+        programme.append("  arg_1 = -6;\n");
+        programme.append("  arg_2 = five;\n");
+        for (int i = 0; i < functions; i++) {
+            programme.append("  result = multiply_").append(i).append(" ( arg_1, arg_2 );\n");
+            programme.append("  arg_1 = result;\n");
+        }
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //Like generate, but every call multiplies by trips, so nearly all the time is spent in multiply's loop
+    static String generateLoops(int functions, int trips) {
+        StringBuilder programme = new StringBuilder();
+        programme.append("const trips : integer = ").append(trips).append(";\n");
+        for (int i = 0; i < functions; i++) {
+            appendFunction(programme, "multiply_" + i);
+        }
+        programme.append("main\n");
+        programme.append("begin\n");
+        programme.append("  var arg_1 : integer;\n");
+        programme.append("  var result : integer;\n");
+        programme.append("  arg_1 = 3;\n");
+        for (int i = 0; i < functions; i++) {
+            programme.append("  result = multiply_").append(i).append(" ( arg_1, trips );\n");
+            programme.append("  arg_1 = result;\n");
+        }
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //A few functions main calls once and one it calls from a loop, calls times, the way a script spends its time
+    static String generateHotCalls(int functions, int calls) {
+        StringBuilder programme = new StringBuilder();
+        programme.append("const calls : integer = ").append(calls).append(";\n");
+        programme.append("const three : integer = 3;\n");
+        appendFunction(programme, "multiply_hot");
+        for (int i = 0; i < functions; i++) {
+            appendFunction(programme, "multiply_" + i);
+        }
+        programme.append("main\n");
+        programme.append("begin\n");
+        programme.append("  var count : integer;\n");
+        programme.append("  var sum : integer;\n");
+        programme.append("  var result : integer;\n");
+        programme.append("  count = calls;\n");
+        programme.append("  sum = 0;\n");
+        programme.append("  while (count > 0)\n");
+        programme.append("  begin\n");
+        programme.append("    result = multiply_hot ( count, three );\n");
+        programme.append("    sum = sum + result;\n");
+        programme.append("    count = count - 1;\n");
+        programme.append("  end\n");
+        for (int i = 0; i < functions; i++) {
+            programme.append("  result = multiply_").append(i).append(" ( sum, three );\n");
+            programme.append("  sum = result;\n");
+        }
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //Generate a programme of roughly the given size in characters
+    static String generateBytes(int size) {
+        int perFunction = generate(1).length();
+        return generate(Math.max(1, size / perFunction));
+    }
+
+    //A main whose sum and condition nest depth levels deep, eg. v + (v + (v)) and v < 1 && v < 2 && v < 3
+    static String generateNested(int depth) {
+        StringBuilder sum = new StringBuilder("v");
+        for (int i = 1; i < depth; i++) {
+            sum.insert(0, "v + (").append(")");
+        }
+        StringBuilder condition = new StringBuilder("v < 1");
+        for (int i = 2; i <= depth; i++) {
+            condition.append(" && v < ").append(i);
+        }
+        StringBuilder programme = new StringBuilder();
+        programme.append("main\n");
+        programme.append("begin\n");
+        programme.append("  var v : integer;\n");
+        programme.append("  var w : integer;\n");
+        programme.append("  v = 1;\n");
+        programme.append("  w = ").append(sum).append(";\n");
+        programme.append("  if ").append(condition).append("\n");
+        programme.append("  begin\n");
+        programme.append("    skip;\n");
+        programme.append("  end\n");
+        programme.append("  else\n");
+        programme.append("  begin\n");
+        programme.append("    skip;\n");
+        programme.append("  end\n");
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //A main made of the given number of if statements, each testing a chain of comparisons joined by && and ||
+    static String generateConditions(int statements) {
+        String[] names = {"a", "b", "c", "d", "e"};
+        String[] comparisons = {" < ", " <= ", " != ", " == ", " > ", " >= "};
+        StringBuilder programme = new StringBuilder();
+        programme.append("main\n");
+        programme.append("begin\n");
+        for (String name : names) {
+            programme.append("  var ").append(name).append(" : integer;\n");
+        }
+        for (int i = 0; i < names.length; i++) {
+            programme.append("  ").append(names[i]).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < statements; i++) {
+            programme.append("  if ");
+            for (int j = 0; j < comparisons.length; j++) {
+                if (j > 0) {
+                    programme.append(j % 2 == 0 ? " || " : " && ");
+                }
+                programme.append(names[(i + j) % names.length]).append(comparisons[(i + j) % comparisons.length])
+                        .append(j % 3 == 2 ? String.valueOf(j) : names[(i + j + 1) % names.length]);
+            }
+            programme.append("\n");
+            programme.append("  begin\n");
+            programme.append("    a = b + c;\n");
+            programme.append("  end\n");
+            programme.append("  else\n");
+            programme.append("  begin\n");
+            programme.append("    a = d - e;\n");
+            programme.append("  end\n");
+        }
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //A random but valid programme for checking that passes keep its meaning: a global, a constant, functions that
+    //call the ones before them and a main of about the given number of statements. Loops count up to a bound with
+    //a counter nothing else assigns, so every programme terminates, and some never run. The same seed gives the same programme.
+    static String generateRandom(long seed, int statements) {
+        Random random = new Random(seed);
+        StringBuilder programme = new StringBuilder();
+        programme.append("var g : integer;\n");
+        programme.append("const k : integer = ").append(random.nextInt(10)).append(";\n");
+        int functions = 1 + random.nextInt(4);
+        String[] values = {"x", "y", "r", "g", "k"};
+        for (int f = 0; f < functions; f++) {
+            programme.append("integer f").append(f).append(" (x:integer, y:integer) is\n");
+            programme.append("  var r:integer;\n");
+            programme.append("  var b:boolean;\n");
+            programme.append("  var i0:integer;\n");
+            programme.append("  var i1:integer;\n");
+            programme.append("begin\n");
+            programme.append("  r = x;\n");
+            programme.append("  b = true;\n");
+            if (f == 0) {
+                programme.append("  g = x;\n");
+            } else {
+                //one call outside any loop keeps the running time linear in the number of functions
+                programme.append("  r = f").append(random.nextInt(f)).append(" (y, x);\n");
+            }
+            appendStatements(programme, random, Math.max(1, statements / (2 * functions)), 1, new String[]{"x", "y", "r"},
+                    values, "b", 0, -1);
+            programme.append("  return (r);\n");
+            programme.append("end\n");
+        }
+        programme.append("main\n");
+        programme.append("begin\n");
+        String[] names = {"a", "b", "c", "d", "e"};
+        for (String name : names) {
+            programme.append("  var ").append(name).append(" : integer;\n");
+        }
+        programme.append("  var f : boolean;\n");
+        programme.append("  var i0 : integer;\n");
+        programme.append("  var i1 : integer;\n");
+        for (String name : names) {
+            programme.append("  ").append(name).append(" = ").append(random.nextInt(21) - 10).append(";\n");
+        }
+        programme.append("  f = false;\n");
+        String[] mainValues = {"a", "b", "c", "d", "e", "g", "k"};
+        appendStatements(programme, random, statements, 1, names, mainValues, "f", 0, functions);
+        programme.append("end\n");
+        return programme.toString();
+    }
+
+    //Statements assigning to the targets and reading the values, loops use the counter i<depth>. Calls go to
+    //functions below the given count.
+    private static void appendStatements(StringBuilder programme, Random random, int statements, int indent,
+                                         String[] targets, String[] values, String flag, int depth, int functions) {
+        StringBuilder indentation = new StringBuilder();
+        for (int i = 0; i < indent; i++) {
+            indentation.append("  ");
+        }
+        String pad = indentation.toString();
+        for (int s = 0; s < statements; s++) {
+            int choice = random.nextInt(indent < 5 ? 10 : 6); //no more nesting past 5 levels
+            String target = targets[random.nextInt(targets.length)];
+            if (choice < 4) {
+                programme.append(pad).append(target).append(" = ").append(randomExpression(random, values)).append(";\n");
+            } else if (choice == 4) {
+                programme.append(pad).append(flag).append(" = ").append(random.nextBoolean()).append(";\n");
+            } else if (choice == 5 && functions > 0) {
+                programme.append(pad).append(target).append(" = f").append(random.nextInt(functions)).append(" (")
+                        .append(targets[random.nextInt(targets.length)]).append(", ")
+                        .append(targets[random.nextInt(targets.length)]).append(");\n");
+            } else if (choice <= 7 || depth == 2) {
+                programme.append(pad).append("if ").append(randomCondition(random, values, flag)).append("\n");
+                programme.append(pad).append("begin\n");
+                appendStatements(programme, random, random.nextInt(3), indent + 1, targets, values, flag, depth, functions);
+                programme.append(pad).append("end\n");
+                programme.append(pad).append("else\n");
+                programme.append(pad).append("begin\n");
+                appendStatements(programme, random, random.nextInt(3), indent + 1, targets, values, flag, depth, functions);
+                programme.append(pad).append("end\n");
+                statements -= 2;
+            } else {
+                String counter = "i" + depth;
+                programme.append(pad).append(counter).append(" = 0;\n");
+                programme.append(pad).append("while (").append(counter).append(" < ").append(random.nextInt(7))
+                        .append(")\n");
+                programme.append(pad).append("begin\n");
+                appendStatements(programme, random, 1 + random.nextInt(3), indent + 1, targets, values, flag,
+                        depth + 1, functions);
+                programme.append(pad).append("  ").append(counter).append(" = ").append(counter).append(" + 1;\n");
+                programme.append(pad).append("end\n");
+                statements -= 3;
+            }
+        }
+    }
+
+    private static String randomExpression(Random random, String[] values) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return randomValue(random, values);
+            case 1:
+                return "-" + values[random.nextInt(values.length)]; //the checker only takes -name
+            case 2:
+                return randomValue(random, values) + " + " + randomValue(random, values);
+            case 3:
+                return randomValue(random, values) + " - " + randomValue(random, values);
+            default:
+                return randomValue(random, values) + (random.nextBoolean() ? " + (" : " - (") + randomValue(random, values)
+                        + (random.nextBoolean() ? " + " : " - ") + randomValue(random, values) + ")";
+        }
+    }
+
+    private static String randomValue(Random random, String[] values) {
+        return random.nextInt(3) == 0 ? String.valueOf(random.nextInt(10)) : values[random.nextInt(values.length)];
+    }
+
+    private static String randomComparison(Random random, String[] values, String flag) {
+        if (random.nextInt(6) == 0) {
+            return flag + " == " + random.nextBoolean();
+        }
+        return randomValue(random, values) + COMPARISONS[random.nextInt(COMPARISONS.length)] + randomValue(random, values);
+    }
+
+    //A chain of comparisons joined by && and ||, sometimes starting with a bracketed or negated one, or just the
+    //flag or its negation
+    private static String randomCondition(Random random, String[] values, String flag) {
+        StringBuilder condition = new StringBuilder();
+        switch (random.nextInt(6)) {
+            case 4:
+                return flag; //a boolean variable on its own
+            case 5:
+                return "~" + flag;
+            case 0:
+                condition.append("(").append(randomComparison(random, values, flag)).append(")");
+                break;
+            case 1:
+                condition.append("~(").append(randomComparison(random, values, flag)).append(")");
+                return condition.toString();
+            default:
+                condition.append(randomComparison(random, values, flag));
+        }
+        int more = random.nextInt(3);
+        for (int i = 0; i < more; i++) {
+            condition.append(random.nextBoolean() ? " && " : " || ").append(randomComparison(random, values, flag));
+        }
+        return condition.toString();
+    }
+
+    private static void appendFunction(StringBuilder programme, String name) {
+        programme.append("integer ").append(name).append(" (x:integer, y:integer) is\n");
+        programme.append("  var result:integer;\n");
+        programme.append("  var minus_sign : boolean;\n");
+        programme.append("begin\n");
+        programme.append("  // figure out sign of result and convert args to absolute values\n");
+        programme.append("  if x < 0 && y >= 0\n");
+        programme.append("  begin\n");
+        programme.append("    minus_sign = true;\n");
+        programme.append("    x = -x;\n");
+        programme.append("  end\n");
+        programme.append("  else\n");
+        programme.append("  begin\n");
+        programme.append("    if y < 0 && x >= 0\n");
+        programme.append("    begin\n");
+        programme.append("      minus_sign = true;\n");
+        programme.append("      y = -y;\n");
+        programme.append("    end\n");
+        programme.append("    else\n");
+        programme.append("    begin\n");
+        programme.append("      minus_sign = false;\n");
+        programme.append("    end\n");
+        programme.append("  end\n");
+        programme.append("  /* accumulate /* nested */ comment */\n");
+        programme.append("  result = 0;\n");
+        programme.append("  while ( y > 0)\n");
+        programme.append("  begin\n");
+        programme.append("    result = result + x;\n");
+        programme.append("    y = y - 1;\n");
+        programme.append("  end\n");
+        programme.append("  if minus_sign == true\n");
+        programme.append("  begin\n");
+        programme.append("    result = -result;\n");
+        programme.append("  end\n");
+        programme.append("  else\n");
+        programme.append("  begin\n");
+        programme.append("    skip;\n");
+        programme.append("  end\n");
+        programme.append("  return (result);\n");
+        programme.append("end\n");
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+//Runs Bytecode. Dispatch is a switch over the opcode in one loop, and every frame's registers are a window of one
+//int[]: a call's arguments are written just past the caller's window, which becomes the callee's. Return addresses
+//and the caller's windows go on a stack of ints allocated with the VM, as deep as IrInterpreter allows, so running
+//allocates nothing per instruction or call; the register file only grows when calls go deeper than ever before.
+//Runs end like IrInterpreter's, with the same Outcome, so the two can be compared.
+//RegisterVmBenchmark times it against the interpreter.
+public class RegisterVm {
+
+    private final Bytecode bytecode;
+    private final long budget;
+    private final int[] returns; //instruction to go back to, by depth
+    private final int[] bases; //start of the caller's window
+    private final int[] tops; //end of the caller's window
+    private final int[] results; //register of the caller's window the result goes to, -1 for none
+    private int[] registers = new int[256];
+
+    RegisterVm(Bytecode bytecode, long budget) {
+        this.bytecode = bytecode;
+        this.budget = budget;
+        returns = new int[IrInterpreter.MAX_DEPTH];
+        bases = new int[IrInterpreter.MAX_DEPTH];
+        tops = new int[IrInterpreter.MAX_DEPTH];
+        results = new int[IrInterpreter.MAX_DEPTH];
+    }
+
+    IrInterpreter.Outcome run() {
+        IrProgram program = bytecode.getProgram();
+        int[] code = bytecode.getCode();
+        int[] globals = new int[program.symbolCount()];
+        int main = program.getFunctions().size() - 1;
+        int[] r = registers;
+        if (bytecode.reach(main) > r.length) {
+            r = registers = new int[bytecode.reach(main) * 2];
+        }
+        Arrays.fill(r, 0);
+        int base = 0;
+        int top = bytecode.registers(main);
+        int pc = bytecode.entry(main);
+        int depth = 0;
+        long steps = 0;
+        IrInterpreter.Status status = IrInterpreter.Status.FINISHED;
+
+        run:
+        while (true) {
+            if (++steps > budget) {
+                status = IrInterpreter.Status.OUT_OF_STEPS;
+                break;
+            }
+            int opcode = code[pc];
+            int a = code[pc + 1];
+            int b = code[pc + 2];
+            int c = code[pc + 3];
+            pc += Bytecode.WIDTH;
+            switch (opcode & Bytecode.OPCODE) {
+                case Bytecode.MOVE:
+                    r[base + a] = (opcode & Bytecode.IMMEDIATE_B) != 0 ? b : r[base + b];
+                    break;
+                case Bytecode.NEG:
+                    r[base + a] = -((opcode & Bytecode.IMMEDIATE_B) != 0 ? b : r[base + b]);
+                    break;
+                case Bytecode.NOT:
+                    r[base + a] = ((opcode & Bytecode.IMMEDIATE_B) != 0 ? b : r[base + b]) == 0 ? 1 : 0;
+                    break;
+                case Bytecode.ADD:
+                    r[base + a] = left(opcode, b, r, base) + right(opcode, c, r, base);
+                    break;
+                case Bytecode.SUB:
+                    r[base + a] = left(opcode, b, r, base) - right(opcode, c, r, base);
+                    break;
+                case Bytecode.MUL:
+                    r[base + a] = left(opcode, b, r, base) * right(opcode, c, r, base);
+                    break;
+                case Bytecode.EQ:
+                    r[base + a] = left(opcode, b, r, base) == right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.NE:
+                    r[base + a] = left(opcode, b, r, base) != right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.LT:
+                    r[base + a] = left(opcode, b, r, base) < right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.LE:
+                    r[base + a] = left(opcode, b, r, base) <= right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.GT:
+                    r[base + a] = left(opcode, b, r, base) > right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.GE:
+                    r[base + a] = left(opcode, b, r, base) >= right(opcode, c, r, base) ? 1 : 0;
+                    break;
+                case Bytecode.AND:
+                    r[base + a] = left(opcode, b, r, base) & right(opcode, c, r, base);
+                    break;
+                case Bytecode.OR:
+                    r[base + a] = left(opcode, b, r, base) | right(opcode, c, r, base);
+                    break;
+                case Bytecode.JUMP:
+                    pc = a;
+                    break;
+                case Bytecode.JUMP_IF_TRUE:
+                    if (left(opcode, b, r, base) != 0) {
+                        pc = a;
+                    }
+                    break;
+                case Bytecode.JUMP_IF_FALSE:
+                    if (left(opcode, b, r, base) == 0) {
+                        pc = a;
+                    }
+                    break;
+                case Bytecode.LOAD_GLOBAL:
+                    r[base + a] = globals[b];
+                    break;
+                case Bytecode.STORE_GLOBAL:
+                    globals[a] = left(opcode, b, r, base);
+                    break;
+                case Bytecode.ARG:
+                    r[top + a] = left(opcode, b, r, base);
+                    break;
+                case Bytecode.CALL:
+                    if (depth + 1 == IrInterpreter.MAX_DEPTH) {
+                        status = IrInterpreter.Status.TOO_DEEP;
+                        break run;
+                    }
+                    returns[depth] = pc;
+                    bases[depth] = base;
+                    tops[depth] = top;
+                    results[depth] = a;
+                    depth++;
+                    base = top;
+                    top = base + bytecode.registers(c);
+                    if (base + bytecode.reach(c) > r.length) {
+                        r = registers = Arrays.copyOf(r, (base + bytecode.reach(c)) * 2);
+                    }
+                    //locals start at 0, the arguments are already in place
+                    Arrays.fill(r, base + bytecode.parameters(c), top, 0);
+                    pc = b;
+                    break;
+                case Bytecode.RETURN:
+                case Bytecode.RETURN_NOTHING:
+                    int value = (opcode & Bytecode.OPCODE) == Bytecode.RETURN ? left(opcode, b, r, base) : 0;
+                    if (depth == 0) {
+                        break run;
+                    }
+                    depth--;
+                    pc = returns[depth];
+                    base = bases[depth];
+                    top = tops[depth];
+                    if (results[depth] >= 0) {
+                        r[base + results[depth]] = value;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Can't run opcode " + (opcode & Bytecode.OPCODE) + " at " + (pc - Bytecode.WIDTH));
+            }
+        }
+
+        int[] values = new int[program.symbolCount()];
+        for (int id = 0; id < values.length; id++) {
+            if (IrInterpreter.isResult(program, id)) {
+                values[id] = program.isGlobal(id) ? globals[id] : r[bytecode.mainSlot(id)];
+            }
+        }
+        return new IrInterpreter.Outcome(status, steps, values);
+    }
+
+    private static int left(int opcode, int b, int[] r, int base) {
+        return (opcode & Bytecode.IMMEDIATE_B) != 0 ? b : r[base + b];
+    }
+
+    private static int right(int opcode, int c, int[] r, int base) {
+        return (opcode & Bytecode.IMMEDIATE_C) != 0 ? c : r[base + c];
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Times RegisterVm against IrInterpreter on the same programmes and checks both runs end the same way.
+//Usage: java RegisterVmBenchmark [-O1] [-iterations count] [file...]
+//with no files generated workloads are used, -O1 runs the optimisation passes first
+public class RegisterVmBenchmark {
+
+    private static final long BUDGET = 1_000_000_000L;
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        boolean optimise = false;
+        int iterations = 10;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-O1")) {
+                optimise = true;
+            } else if (args[i].equals("-iterations") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                System.out.println("Usage: java RegisterVmBenchmark [-O1] [-iterations count] [file...]");
+                return;
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("100 multiplies by 10000", () -> ProgramGenerator.generateLoops(100, 10000)));
+        generated.add(Workload.generated("1000 functions", () -> ProgramGenerator.generate(1000)));
+        generated.addAll(Workload.random("random", 3, 2000));
+
+        boolean same = true;
+        for (Workload workload : Workload.select(files, false, generated)) {
+            IrProgram program = IrDump.lower(workload.parse());
+            if (program == null) {
+                System.out.println(workload.getName() + ": has semantic errors");
+                continue;
+            }
+            if (optimise) {
+                program = new PassManager(NullSink.INSTANCE).run(program, PassManager.O1);
+            }
+            Bytecode bytecode = Bytecode.compile(program);
+            System.out.println("---- " + workload.getName() + ": " + program.size() + " IR instructions, "
+                    + bytecode.size() + " bytecode instructions ----");
+            RegisterVm vm = new RegisterVm(bytecode, BUDGET);
+            IrInterpreter interpreter = new IrInterpreter(program, BUDGET);
+            IrInterpreter.Outcome ran = time("register vm", vm::run, iterations);
+            IrInterpreter.Outcome interpreted = time("ir interpreter", interpreter::run, iterations);
+            if (!ran.sameAs(interpreted)) {
+                System.out.println("Outcomes differ: " + ran.describe(program) + " and " + interpreted.describe(program));
+                same = false;
+            }
+        }
+        if (!same) {
+            System.exit(1);
+        }
+    }
+
+    interface Run {
+        IrInterpreter.Outcome run();
+    }
+
+    //Time iterations of a run after warming it up, a run that counts no steps shows no rate
+    static IrInterpreter.Outcome time(String name, Run run, int iterations) {
+        IrInterpreter.Outcome outcome = null;
+        for (int i = 0; i < WARMUP; i++) {
+            outcome = run.run();
+        }
+        long bytes = PassManager.allocatedBytes();
+        long nanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            outcome = run.run();
+            nanos += System.nanoTime() - start;
+        }
+        bytes = bytes < 0 ? -1 : (PassManager.allocatedBytes() - bytes) / iterations;
+        long steps = outcome.getSteps();
+        System.out.println(String.format("%-16s %12s instructions %10.3f ms per run %8s M instructions/s %10s per run",
+                name, steps == 0 ? "-" : String.valueOf(steps), nanos / 1e6 / iterations,
+                steps == 0 ? "-" : String.format("%.1f", steps * (double) iterations / (nanos / 1e3)),
+                bytes < 0 ? "?" : (bytes + 1023) / 1024 + " KB"));
+        return outcome;
+    }
+}
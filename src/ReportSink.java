@@ -0,0 +1,14 @@
+//Where the compiler phases write their reports (syntax tree, symbol table, semantic results, 3-address code).
+//Callers check isEnabled() before building any text so a sink that discards everything costs nothing.
+interface ReportSink {
+
+    boolean isEnabled();
+
+    void print(String text);
+
+    void println(String line);
+
+    void println();
+
+    void flush();
+}
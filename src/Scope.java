@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+//One lexical scope. Symbols live in slots in declaration order, a small open addressed table maps identifier ids
+//to slots so a scope only costs memory for what it declares. Names that aren't declared here are resolved
+//through the parent chain.
+class Scope {
+
+    private static final int EMPTY = -1;
+
+    private final String name;
+    private final Scope parent;
+    private Symbol[] slots = new Symbol[4];
+    private int size = 0;
+    private int[] ids = emptyTable(8);
+    private int[] slotOf = new int[8];
+    private IdentifierPool values;
+
+    Scope(String name, Scope parent) {
+        this.name = name;
+        this.parent = parent;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Scope getParent() {
+        return parent;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //Pool the assigned values of this scope's symbols are interned in. Each scope has its own so function bodies
+    //that are checked at the same time never share one.
+    IdentifierPool values() {
+        if (values == null) {
+            values = new IdentifierPool();
+        }
+        return values;
+    }
+
+    //The symbol in the given slot, slots are numbered in declaration order
+    Symbol at(int slot) {
+        return slots[slot];
+    }
+
+    //Add a symbol to this scope and give it the next slot, returns false if the name is already declared here
+    boolean declare(int id, Symbol symbol) {
+        if (lookupLocal(id) != null) {
+            return false;
+        }
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        if ((size + 1) * 2 > ids.length) {
+            rehash(ids.length * 2);
+        }
+        symbol.setScope(this);
+        symbol.setSlot(size);
+        slots[size] = symbol;
+        insert(id, size);
+        size++;
+        return true;
+    }
+
+    Symbol lookupLocal(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int mask = ids.length - 1;
+        for (int i = id & mask; ids[i] != EMPTY; i = (i + 1) & mask) {
+            if (ids[i] == id) {
+                return slots[slotOf[i]];
+            }
+        }
+        return null;
+    }
+
+    //Find the nearest declaration of the name, starting here and walking out to the programme scope
+    Symbol resolve(int id) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Symbol symbol = scope.lookupLocal(id);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    private void insert(int id, int slot) {
+        int mask = ids.length - 1;
+        int i = id & mask;
+        while (ids[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        slotOf[i] = slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldIds = ids;
+        int[] oldSlots = slotOf;
+        ids = emptyTable(capacity);
+        slotOf = new int[capacity];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                insert(oldIds[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private static int[] emptyTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
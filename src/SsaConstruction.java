@@ -0,0 +1,330 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//Rewrites a function into SSA form: every temp and local symbol gets a fresh temp for each assignment and PHIs
+//merge them where control flow joins. PHIs are only placed for names that are live across blocks (semi-pruned SSA)
+//at the iterated dominance frontiers of their assignments, then names are replaced walking the dominator tree.
+//A name read before any assignment keeps its original operand, so parameters are read from their symbols. Globals
+//aren't renamed, a call can change them. Main's locals are what a run of the programme leaves behind, so they are
+//copied back to their symbols before main returns. Unreachable blocks are dropped.
+final class SsaConstruction {
+
+    private final IrFunction function;
+    private final ControlFlowGraph graph;
+    private final DominatorTree tree;
+    private final IrFunction out;
+    private final int temps;
+    //Index of each local symbol id among the variables, after the temps
+    private final Map<Integer, Integer> localIndexes = new HashMap<>();
+    private final long[] originals; //operand each variable index stands for
+    private final int variables;
+
+    //PHIs per block as variable indexes, and their arguments per reachable predecessor
+    private final int[][] phis;
+    private final int[] phiCounts;
+    private long[][][] phiArguments;
+    private long[][] phiDests;
+    //Reachable predecessors of each block, the order PHI arguments are kept in
+    private final int[][] predecessors;
+    //Renamed operands of every instruction
+    private final long[] dests;
+    private final long[] lefts;
+    private final long[] rights;
+    //Names of main's locals at each RETURN, indexed by instruction
+    private final long[][] exitNames;
+
+    private SsaConstruction(IrFunction function) {
+        this.function = function;
+        graph = ControlFlowGraph.of(function);
+        tree = new DominatorTree(graph);
+        out = function.emptyCopy();
+        temps = function.tempCount();
+        int[] params = function.getParams();
+        int[] locals = function.getLocals();
+        variables = temps + params.length + locals.length;
+        originals = new long[variables];
+        for (int t = 0; t < temps; t++) {
+            originals[t] = Operand.temp(t);
+        }
+        int index = temps;
+        for (int id : params) {
+            originals[index] = Operand.symbol(id);
+            localIndexes.put(id, index++);
+        }
+        for (int id : locals) {
+            originals[index] = Operand.symbol(id);
+            localIndexes.put(id, index++);
+        }
+
+        int blocks = graph.blockCount();
+        phis = new int[blocks][];
+        phiCounts = new int[blocks];
+        predecessors = new int[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            phis[block] = new int[0];
+            int count = 0;
+            int[] reachable = new int[graph.predecessors(block).length];
+            for (int predecessor : graph.predecessors(block)) {
+                if (graph.isReachable(predecessor)) {
+                    reachable[count++] = predecessor;
+                }
+            }
+            predecessors[block] = Arrays.copyOf(reachable, count);
+        }
+        dests = new long[function.size()];
+        lefts = new long[function.size()];
+        rights = new long[function.size()];
+        exitNames = new long[function.size()][];
+    }
+
+    static IrFunction run(IrFunction function) {
+        for (int i = 0; i < function.size(); i++) {
+            if (function.opcode(i) == Opcode.PHI) {
+                throw new IllegalArgumentException(function.getName() + " is already in SSA form");
+            }
+        }
+        SsaConstruction construction = new SsaConstruction(withEntryBlock(function));
+        construction.placePhis();
+        construction.rename();
+        return construction.emit();
+    }
+
+    //PHIs can't go in the entry block, so if a loop jumps back to the very start give the function an entry of its own
+    private static IrFunction withEntryBlock(IrFunction function) {
+        if (function.size() == 0 || function.opcode(0) != Opcode.LABEL) {
+            return function;
+        }
+        IrFunction entered = function.emptyCopy();
+        entered.emit(Opcode.JUMP, Operand.ABSENT, function.left(0), Operand.ABSENT);
+        for (int i = 0; i < function.size(); i++) {
+            entered.emit(function.opcode(i), function.dest(i), function.left(i), function.right(i));
+        }
+        return entered;
+    }
+
+    private int variable(long operand) {
+        int kind = Operand.kind(operand);
+        if (kind == Operand.TEMP) {
+            return Operand.value(operand);
+        }
+        if (kind == Operand.SYMBOL) {
+            Integer index = localIndexes.get(Operand.value(operand));
+            return index == null ? -1 : index;
+        }
+        return -1;
+    }
+
+    private void placePhis() {
+        int blocks = graph.blockCount();
+        //names read in a block before it assigns them are the only ones that can need a PHI
+        boolean[] live = new boolean[variables];
+        int[] assignedIn = new int[variables];
+        Arrays.fill(assignedIn, -1);
+        int[][] assigningBlocks = new int[variables][];
+        int[] assigningCounts = new int[variables];
+        for (int block : tree.order()) {
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                Opcode opcode = function.opcode(i);
+                if (opcode.sources() > 0) {
+                    markRead(function.left(i), block, live, assignedIn);
+                }
+                if (opcode.sources() > 1) {
+                    markRead(function.right(i), block, live, assignedIn);
+                }
+                if (opcode == Opcode.RETURN && function.isMain()) {
+                    for (int v = temps; v < variables; v++) {
+                        markRead(originals[v], block, live, assignedIn);
+                    }
+                }
+                int assigned = variable(function.dest(i));
+                if (assigned >= 0 && assignedIn[assigned] != block) {
+                    assignedIn[assigned] = block;
+                    if (assigningBlocks[assigned] == null) {
+                        assigningBlocks[assigned] = new int[2];
+                    } else if (assigningCounts[assigned] == assigningBlocks[assigned].length) {
+                        assigningBlocks[assigned] = Arrays.copyOf(assigningBlocks[assigned], assigningCounts[assigned] * 2);
+                    }
+                    assigningBlocks[assigned][assigningCounts[assigned]++] = block;
+                }
+            }
+        }
+
+        int[] hasPhi = new int[blocks];
+        int[] queued = new int[blocks];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(queued, -1);
+        int[] worklist = new int[blocks];
+        for (int v = 0; v < variables; v++) {
+            if (!live[v] || assigningBlocks[v] == null) {
+                continue;
+            }
+            int size = 0;
+            for (int i = 0; i < assigningCounts[v]; i++) {
+                worklist[size++] = assigningBlocks[v][i];
+                queued[assigningBlocks[v][i]] = v;
+            }
+            while (size > 0) {
+                int block = worklist[--size];
+                for (int frontier : tree.frontier(block)) {
+                    if (hasPhi[frontier] == v) {
+                        continue;
+                    }
+                    hasPhi[frontier] = v;
+                    if (phiCounts[frontier] == phis[frontier].length) {
+                        phis[frontier] = Arrays.copyOf(phis[frontier], Math.max(2, phiCounts[frontier] * 2));
+                    }
+                    phis[frontier][phiCounts[frontier]++] = v;
+                    if (queued[frontier] != v) {
+                        queued[frontier] = v;
+                        worklist[size++] = frontier;
+                    }
+                }
+            }
+        }
+    }
+
+    private void markRead(long operand, int block, boolean[] live, int[] assignedIn) {
+        int v = variable(operand);
+        if (v >= 0 && assignedIn[v] != block) {
+            live[v] = true;
+        }
+    }
+
+    private void rename() {
+        int blocks = graph.blockCount();
+        phiArguments = new long[blocks][][];
+        phiDests = new long[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            phiArguments[block] = new long[phiCounts[block]][predecessors[block].length];
+            phiDests[block] = new long[phiCounts[block]];
+        }
+
+        long[][] names = new long[variables][4];
+        int[] depths = new int[variables];
+        int[] log = new int[64]; //variables given a name, undone when leaving the block that named them
+        int logSize = 0;
+        int[] logStarts = new int[blocks];
+
+        //walk the dominator tree depth first, a negative entry is the exit of block -entry - 1
+        int[] stack = new int[blocks * 2 + 1];
+        int depth = 0;
+        if (tree.order().length > 0) {
+            stack[depth++] = tree.order()[0];
+        }
+        while (depth > 0) {
+            int entry = stack[--depth];
+            if (entry < 0) {
+                int block = -entry - 1;
+                while (logSize > logStarts[block]) {
+                    depths[log[--logSize]]--;
+                }
+                continue;
+            }
+            int block = entry;
+            logStarts[block] = logSize;
+
+            for (int p = 0; p < phiCounts[block]; p++) {
+                int v = phis[block][p];
+                long name = Operand.temp(out.newTemp());
+                phiDests[block][p] = name;
+                if (depths[v] == names[v].length) {
+                    names[v] = Arrays.copyOf(names[v], depths[v] * 2);
+                }
+                names[v][depths[v]++] = name;
+                if (logSize == log.length) {
+                    log = Arrays.copyOf(log, logSize * 2);
+                }
+                log[logSize++] = v;
+            }
+
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                Opcode opcode = function.opcode(i);
+                lefts[i] = opcode.sources() > 0 ? current(function.left(i), names, depths) : function.left(i);
+                rights[i] = opcode.sources() > 1 ? current(function.right(i), names, depths) : function.right(i);
+                if (opcode == Opcode.RETURN && function.isMain()) {
+                    exitNames[i] = new long[variables - temps];
+                    for (int v = temps; v < variables; v++) {
+                        exitNames[i][v - temps] = current(originals[v], names, depths);
+                    }
+                }
+                int v = variable(function.dest(i));
+                if (v < 0) {
+                    dests[i] = function.dest(i);
+                    continue;
+                }
+                long name = Operand.temp(out.newTemp());
+                dests[i] = name;
+                if (depths[v] == names[v].length) {
+                    names[v] = Arrays.copyOf(names[v], depths[v] * 2);
+                }
+                names[v][depths[v]++] = name;
+                if (logSize == log.length) {
+                    log = Arrays.copyOf(log, logSize * 2);
+                }
+                log[logSize++] = v;
+            }
+
+            for (int successor : graph.successors(block)) {
+                int position = indexOf(predecessors[successor], block);
+                for (int p = 0; p < phiCounts[successor]; p++) {
+                    phiArguments[successor][p][position] = current(originals[phis[successor][p]], names, depths);
+                }
+            }
+
+            stack[depth++] = -block - 1;
+            int[] children = tree.children(block);
+            for (int c = children.length - 1; c >= 0; c--) {
+                stack[depth++] = children[c];
+            }
+        }
+    }
+
+    private long current(long operand, long[][] names, int[] depths) {
+        int v = variable(operand);
+        if (v < 0 || depths[v] == 0) {
+            return operand;
+        }
+        return names[v][depths[v] - 1];
+    }
+
+    private static int indexOf(int[] blocks, int block) {
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] == block) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("B" + block + " is not a predecessor");
+    }
+
+    private IrFunction emit() {
+        for (int block = 0; block < graph.blockCount(); block++) {
+            if (!graph.isReachable(block)) {
+                continue;
+            }
+            int i = graph.start(block);
+            if (function.opcode(i) == Opcode.LABEL) {
+                out.emit(Opcode.LABEL, Operand.ABSENT, function.left(i), Operand.ABSENT);
+                i++;
+            }
+            for (int p = 0; p < phiCounts[block]; p++) {
+                int phi = out.emitPhi(phiDests[block][p], predecessors[block].length);
+                for (int k = 0; k < predecessors[block].length; k++) {
+                    out.setPhiArgument(phi, k, phiArguments[block][p][k]);
+                }
+            }
+            for (; i < graph.end(block); i++) {
+                if (exitNames[i] != null) {
+                    for (int v = temps; v < variables; v++) {
+                        long name = exitNames[i][v - temps];
+                        if (name != originals[v]) {
+                            out.emit(Opcode.COPY, originals[v], name, Operand.ABSENT);
+                        }
+                    }
+                }
+                out.emit(function.opcode(i), dests[i], lefts[i], rights[i]);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+//Takes a function out of SSA form by replacing its PHIs with copies on the edges into their block. The copies for
+//an edge all happen at once, so they are ordered so no copy overwrites a value another still needs to read, going
+//through a fresh temp when they form a cycle. An edge leaving a conditional jump gets a block of its own for its
+//copies: at the end of the function for the jump's target, straight after the jump for the fall through.
+final class SsaDestruction {
+
+    private final IrFunction function;
+    private final ControlFlowGraph graph;
+    private final IrFunction out;
+    //Blocks made for jump targets, emitted after the rest of the code
+    private final IrFunction edges;
+
+    private SsaDestruction(IrFunction function) {
+        this.function = function;
+        graph = ControlFlowGraph.of(function);
+        out = function.emptyCopy();
+        edges = new IrFunction(function.getName(), function.getSymbol(), function.getReturnType());
+    }
+
+    static IrFunction run(IrFunction function) {
+        return new SsaDestruction(function).destruct();
+    }
+
+    private IrFunction destruct() {
+        for (int block = 0; block < graph.blockCount(); block++) {
+            int last = graph.end(block) - 1;
+            for (int i = graph.start(block); i < last; i++) {
+                if (function.opcode(i) != Opcode.PHI) {
+                    out.emit(function.opcode(i), function.dest(i), function.left(i), function.right(i));
+                }
+            }
+            Opcode opcode = function.opcode(last);
+            int fallThrough = block + 1 < graph.blockCount() ? block + 1 : -1;
+            switch (opcode) {
+                case RETURN:
+                    out.emit(opcode, function.dest(last), function.left(last), function.right(last));
+                    break;
+                case JUMP:
+                    copies(block, graph.blockOf(function.left(last)), out);
+                    out.emit(opcode, function.dest(last), function.left(last), function.right(last));
+                    break;
+                case JUMP_IF_TRUE:
+                case JUMP_IF_FALSE:
+                    long label = function.right(last);
+                    int target = graph.blockOf(label);
+                    if (hasCopies(block, target)) {
+                        long split = Operand.label(out.newLabel());
+                        edges.emit(Opcode.LABEL, Operand.ABSENT, split, Operand.ABSENT);
+                        copies(block, target, edges);
+                        edges.emit(Opcode.JUMP, Operand.ABSENT, label, Operand.ABSENT);
+                        label = split;
+                    }
+                    out.emit(opcode, function.dest(last), function.left(last), label);
+                    if (fallThrough >= 0) {
+                        copies(block, fallThrough, out);
+                    }
+                    break;
+                default:
+                    if (opcode != Opcode.PHI) {
+                        out.emit(opcode, function.dest(last), function.left(last), function.right(last));
+                    }
+                    if (fallThrough >= 0) {
+                        copies(block, fallThrough, out);
+                    }
+            }
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            out.emit(edges.opcode(i), edges.dest(i), edges.left(i), edges.right(i));
+        }
+        return out;
+    }
+
+    private int firstPhi(int block) {
+        int i = graph.start(block);
+        return function.opcode(i) == Opcode.LABEL ? i + 1 : i;
+    }
+
+    private boolean hasCopies(int from, int to) {
+        int position = position(from, to);
+        for (int i = firstPhi(to); i < graph.end(to) && function.opcode(i) == Opcode.PHI; i++) {
+            if (function.phiArgument(i, position) != function.dest(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int position(int from, int to) {
+        int[] predecessors = graph.predecessors(to);
+        for (int k = 0; k < predecessors.length; k++) {
+            if (predecessors[k] == from) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    //Emit the copies the PHIs of the block need when it's entered from the other block
+    private void copies(int from, int to, IrFunction into) {
+        int position = position(from, to);
+        int first = firstPhi(to);
+        int count = 0;
+        while (first + count < graph.end(to) && function.opcode(first + count) == Opcode.PHI) {
+            count++;
+        }
+        if (count == 0 || position < 0) {
+            return;
+        }
+        long[] dests = new long[count];
+        long[] sources = new long[count];
+        int pending = 0;
+        for (int i = first; i < first + count; i++) {
+            long source = function.phiArgument(i, position);
+            if (source != function.dest(i)) {
+                dests[pending] = function.dest(i);
+                sources[pending++] = source;
+            }
+        }
+        sequence(Arrays.copyOf(dests, pending), Arrays.copyOf(sources, pending), into);
+    }
+
+    //Emit parallel copies one at a time: a copy can go once no other pending copy reads its destination, and when
+    //only cycles are left one value is saved in a temp to break one
+    private void sequence(long[] dests, long[] sources, IrFunction into) {
+        int pending = dests.length;
+        boolean[] done = new boolean[pending];
+        while (pending > 0) {
+            boolean progress = false;
+            for (int i = 0; i < dests.length; i++) {
+                if (done[i] || isRead(dests[i], dests, sources, done)) {
+                    continue;
+                }
+                into.emit(Opcode.COPY, dests[i], sources[i], Operand.ABSENT);
+                done[i] = true;
+                pending--;
+                progress = true;
+            }
+            if (progress) {
+                continue;
+            }
+            for (int i = 0; i < dests.length; i++) {
+                if (!done[i]) {
+                    long saved = Operand.temp(out.newTemp());
+                    into.emit(Opcode.COPY, saved, dests[i], Operand.ABSENT);
+                    for (int j = 0; j < dests.length; j++) {
+                        if (!done[j] && sources[j] == dests[i]) {
+                            sources[j] = saved;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isRead(long dest, long[] dests, long[] sources, boolean[] done) {
+        for (int j = 0; j < dests.length; j++) {
+            if (!done[j] && sources[j] == dest && dests[j] != dest) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+//Collects the rewritten code of a function in SSA form for a pass that drops instructions, blocks or edges. Every
+//instruction is emitted with the block of the original function it comes from, and once the code is done finish()
+//gives each PHI one argument per predecessor its block has now, in the new ControlFlowGraph's order.
+final class SsaRewriter {
+
+    private final IrFunction original;
+    private final ControlFlowGraph graph;
+    private final IrFunction out;
+    private int[] origins = new int[16];
+
+    SsaRewriter(IrFunction original, ControlFlowGraph graph) {
+        this.original = original;
+        this.graph = graph;
+        out = original.emptyCopy();
+    }
+
+    //The code being built, for new temps and labels
+    IrFunction getCode() {
+        return out;
+    }
+
+    int emit(int block, Opcode opcode, long dest, long left, long right) {
+        if (out.size() == 0 && opcode == Opcode.LABEL && block != 0) {
+            //the entry block lost all its code, it still has to get to the label without being a predecessor of it
+            origin(out.emit(Opcode.JUMP, Operand.ABSENT, left, Operand.ABSENT), 0);
+        }
+        return origin(out.emit(opcode, dest, left, right), block);
+    }
+
+    //Copy a PHI of the original, its arguments stay in the original predecessor order until finish()
+    int emitPhi(int block, int index) {
+        int count = original.phiArgumentCount(index);
+        int phi = origin(out.emitPhi(original.dest(index), count), block);
+        for (int k = 0; k < count; k++) {
+            out.setPhiArgument(phi, k, original.phiArgument(index, k));
+        }
+        return phi;
+    }
+
+    private int origin(int index, int block) {
+        if (index == origins.length) {
+            origins = Arrays.copyOf(origins, index * 2);
+        }
+        origins[index] = block;
+        return index;
+    }
+
+    //Keep the arguments of each PHI for the edges that are left. An edge into a block comes from the original block
+    //of the jump taking it or, falling through, from the original block just before it.
+    IrFunction finish() {
+        ControlFlowGraph rewritten = ControlFlowGraph.of(out);
+        for (int block = 0; block < rewritten.blockCount(); block++) {
+            int first = rewritten.start(block);
+            int i = out.opcode(first) == Opcode.LABEL ? first + 1 : first;
+            if (i >= rewritten.end(block) || out.opcode(i) != Opcode.PHI) {
+                continue;
+            }
+            int originalBlock = origins[first];
+            int[] predecessors = rewritten.predecessors(block);
+            int[] positions = new int[predecessors.length];
+            for (int k = 0; k < predecessors.length; k++) {
+                int last = rewritten.end(predecessors[k]) - 1;
+                int source = jumpsTo(rewritten, last, block) ? origins[last] : originalBlock - 1;
+                positions[k] = position(graph.predecessors(originalBlock), source);
+                if (positions[k] < 0) {
+                    throw new IllegalStateException(out.getName() + ": no edge from B" + source + " to B" + originalBlock);
+                }
+            }
+            long[] arguments = new long[predecessors.length];
+            for (; i < rewritten.end(block) && out.opcode(i) == Opcode.PHI; i++) {
+                for (int k = 0; k < positions.length; k++) {
+                    arguments[k] = out.phiArgument(i, positions[k]);
+                }
+                out.set(i, Opcode.PHI, out.dest(i), out.left(i), Operand.integer(arguments.length));
+                for (int k = 0; k < arguments.length; k++) {
+                    out.setPhiArgument(i, k, arguments[k]);
+                }
+            }
+        }
+        return out;
+    }
+
+    private boolean jumpsTo(ControlFlowGraph rewritten, int last, int block) {
+        switch (out.opcode(last)) {
+            case JUMP:
+                return rewritten.blockOf(out.left(last)) == block;
+            case JUMP_IF_TRUE:
+            case JUMP_IF_FALSE:
+                return rewritten.blockOf(out.right(last)) == block;
+            default:
+                return false;
+        }
+    }
+
+    private static int position(int[] blocks, int block) {
+        for (int k = 0; k < blocks.length; k++) {
+            if (blocks[k] == block) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
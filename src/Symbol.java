@@ -1,35 +1,42 @@
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayList;
 
 class Symbol {
-    private Token name;
-    private Token type;
+    private String name;
+    private String type;
     private SymbolType symbolType;
-    private String scope;
-    private LinkedHashMap<String, LinkedList<Variable>> values;
+    private Scope scope;
+    private int slot = -1;
+    private boolean written = false;
+    private String firstValue;
+    private String firstType;
+    private ValueLog history; //only kept in ValueTracking.HISTORY mode
+    private ArrayList<String> params; //parameter names of a function
     private int numArgs = -1;
     private boolean isRead = false;
     private boolean isCalled = false;
 
     Symbol() {
-        values = new LinkedHashMap<>();
+    }
+
+    // keep every assignment, values are interned in the given pool
+    Symbol(IdentifierPool valuePool) {
+        history = new ValueLog(valuePool);
     }
 
     // Getter and Setters
-    void setName(Token n0) {
+    void setName(String n0) {
         name = n0;
     }
 
-    Token getName() {
+    String getName() {
         return name;
     }
 
-    void setType(Token t0) {
+    void setType(String t0) {
         type = t0;
     }
 
-    Token getType() {
+    String getType() {
         return type;
     }
 
@@ -41,20 +48,21 @@ class Symbol {
         return symbolType;
     }
 
-    void setScope(String s0) {
+    void setScope(Scope s0) {
         scope = s0;
     }
 
-    String getScope() {
+    Scope getScope() {
         return scope;
     }
 
-    void setValues(LinkedHashMap<String, LinkedList<Variable>> v0) {
-        values = v0;
+    void setSlot(int s0) {
+        slot = s0;
     }
 
-    LinkedHashMap<String, LinkedList<Variable>> getValues() {
-        return values;
+    // index of the symbol in its scope, in declaration order
+    int getSlot() {
+        return slot;
     }
 
     void setNumArgs(int na0) {
@@ -81,37 +89,53 @@ class Symbol {
         return isCalled;
     }
 
-    // get the value of the token by its name
-    LinkedList<Variable> getValue(String name) {
-        return values.get(name);
+    // record an assignment, name is what the value is grouped under when the history is printed
+    void addValue(String name, String type, String value) {
+        if (!written) {
+            written = true;
+            firstValue = value;
+            firstType = type;
+        }
+        if (history != null) {
+            history.add(name, type, value);
+        }
+    }
+
+    boolean isWritten() {
+        return written;
+    }
+
+    String getFirstValue() {
+        return firstValue;
     }
 
-    // add a value of a token by its name
-    void addValue(String name, Variable value) {
-        LinkedList<Variable> variables =  values.get(name);
-        if(variables == null){
-            variables = new LinkedList<>();
+    void addParam(String name) {
+        if (params == null) {
+            params = new ArrayList<>();
         }
-        variables.add(value);
-        values.put(name, variables);
+        params.add(name);
     }
 
-    String getFirstValue(String name){
-        return values.get(name).getFirst().getValue();
+    boolean hasParam(String name) {
+        return params != null && params.contains(name);
     }
 
-    String printValues(){
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("{");
-        for (Map.Entry<String, LinkedList<Variable>> entry : values.entrySet()) {
-            String key = entry.getKey();
-            for (Variable variable : entry.getValue()) {
-                stringBuilder.append(variable.getValue()).append(":").append(variable.getType()).append(",");
+    String printParams() {
+        StringBuilder stringBuilder = new StringBuilder("{");
+        if (params != null) {
+            for (String param : params) {
+                stringBuilder.append(param).append(":").append(type).append(",");
             }
+            stringBuilder.setLength(stringBuilder.length() - 1);
         }
-        stringBuilder.deleteCharAt(stringBuilder.length()-1);
-        stringBuilder.append("}");
-        return stringBuilder.toString();
+        return stringBuilder.append("}").toString();
+    }
+
+    String printValues(){
+        if (history != null) {
+            return history.print();
+        }
+        return "{" + firstValue + ":" + firstType + "} (first value only)";
     }
 
     String getSymbolString(){
@@ -119,16 +143,16 @@ class Symbol {
         stringBuilder.append("Name: ").append(getName()).append("\n");
         stringBuilder.append("\t ").append("SymbolType: ").append(getSymbolType()).append("\n");
         if(getSymbolType().equals(SymbolType.FUNC)){
-            stringBuilder.append("\t ").append("Parameters: ").append(printValues()).append("\n");
+            stringBuilder.append("\t ").append("Parameters: ").append(printParams()).append("\n");
             stringBuilder.append("\t ").append("Is called?: ").append(getIsCalled()).append("\n");
         }
         else {
-            if (getValues().size() > 0) {
+            if (isWritten()) {
                 stringBuilder.append("\t ").append(" Values: ").append(printValues()).append("\n");
             } else {
                 stringBuilder.append("\t ").append(" Values: No assignments made").append("\n");
             }
-            stringBuilder.append("\t ").append("Is written to: ").append(getValues().size() > 0).append("\n");
+            stringBuilder.append("\t ").append("Is written to: ").append(isWritten()).append("\n");
             stringBuilder.append("\t ").append("Is read from: ").append(getIsRead()).append("\n");
         }
 
@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Runs a programme in IrInterpreter and compiles the functions that get hot with JvmBackend, after which calls to them
+//run the compiled code. A function is hot once it has been called a number of times or its loops have jumped back a
+//number of times. The interpreter only queues a hot function for the compiler thread and carries on interpreting it,
+//so it never waits; the compiled code is picked up by the first call after it is published. There is no on-stack
+//replacement, so a call already running stays interpreted, and main is never compiled. A function is compiled with
+//everything it can call, so time in a compiled call is all compiled code. Compiled calls are charged for their steps
+//like interpreted ones, so the budget stops a loop whichever tier it runs in. Counters and compiled code last across
+//runs. Each function is compiled into a class of its own, whose depth, globals and steps are static but belong to
+//this TieredExecution alone, so instances can run on different threads; one instance runs on one thread at a time.
+//The code has to be out of SSA form.
+//TieredExecutionBenchmark times it against the interpreter.
+public class TieredExecution implements IrInterpreter.Tiering, AutoCloseable {
+
+    static final int DEFAULT_INVOCATIONS = 1000;
+    static final int DEFAULT_BACKEDGES = 10000;
+
+    private static final String INTERPRETED = "interpreted";
+    private static final String QUEUED = "queued";
+    private static final String COMPILED = "compiled";
+    private static final String FAILED = "failed";
+    private static final String RUNNING = "running";
+
+    //A function moving from one tier to another
+    static final class Transition {
+
+        private final long nanos;
+        private final String function;
+        private final String from;
+        private final String to;
+        private final String detail;
+
+        Transition(long nanos, String function, String from, String to, String detail) {
+            this.nanos = nanos;
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.detail = detail;
+        }
+
+        //Since the TieredExecution was made
+        long getNanos() {
+            return nanos;
+        }
+
+        String getTo() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%10.3f ms %-20s %-11s -> %-11s %s", nanos / 1e6, function, from, to, detail);
+        }
+    }
+
+    //Runs compiled code and times it
+    private final class Compiled implements IrInterpreter.Callee {
+
+        private final int function;
+        private final IrInterpreter.Callee code;
+        private boolean called = false;
+
+        Compiled(int function, IrInterpreter.Callee code) {
+            this.function = function;
+            this.code = code;
+        }
+
+        @Override
+        public int call(int[] arguments, int from, int[] globals, int depth, long steps) {
+            if (!called) {
+                called = true;
+                transition(function, COMPILED, RUNNING, "after " + invocations[function] + " calls");
+            }
+            compiledCalls++;
+            long start = System.nanoTime();
+            try {
+                return code.call(arguments, from, globals, depth, steps);
+            } finally {
+                compiledNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long stepsLeft() {
+            return code.stepsLeft();
+        }
+    }
+
+    private final IrProgram program;
+    private final long budget;
+    private final int invocationThreshold;
+    private final int backedgeThreshold;
+    private final Executor compiler;
+    private final boolean ownsCompiler;
+    private final CallGraph calls;
+    private final long created = System.nanoTime();
+    //written by the compiler thread, the interpreter reads them at every call
+    private final AtomicReferenceArray<Compiled> compiled;
+    //only the interpreter's thread touches these
+    private final int[] invocations;
+    private final int[] backedges;
+    private final boolean[] queued;
+    private long interpretedNanos = 0;
+    private long compiledNanos = 0;
+    private long allCalls = 0;
+    private long compiledCalls = 0;
+    //shared with the compiler thread
+    private final List<Transition> transitions = new ArrayList<>();
+    private long compilingNanos = 0;
+
+    //Compiles on a thread of its own, which close() stops
+    TieredExecution(IrProgram program, long budget, int invocationThreshold, int backedgeThreshold) {
+        this(program, budget, invocationThreshold, backedgeThreshold, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ccal compiler");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    //Compiles with the executor given, eg. Runnable::run to compile at once on the interpreter's thread
+    TieredExecution(IrProgram program, long budget, int invocationThreshold, int backedgeThreshold, Executor compiler) {
+        this(program, budget, invocationThreshold, backedgeThreshold, compiler, false);
+    }
+
+    private TieredExecution(IrProgram program, long budget, int invocationThreshold, int backedgeThreshold,
+                            Executor compiler, boolean ownsCompiler) {
+        this.program = program;
+        this.budget = budget;
+        this.invocationThreshold = invocationThreshold;
+        this.backedgeThreshold = backedgeThreshold;
+        this.compiler = compiler;
+        this.ownsCompiler = ownsCompiler;
+        int count = program.getFunctions().size();
+        calls = new CallGraph(program);
+        compiled = new AtomicReferenceArray<>(count);
+        invocations = new int[count];
+        backedges = new int[count];
+        queued = new boolean[count];
+    }
+
+    IrInterpreter.Outcome run() {
+        long compiledBefore = compiledNanos;
+        long start = System.nanoTime();
+        IrInterpreter.Outcome outcome = new IrInterpreter(program, budget, this).run();
+        interpretedNanos += System.nanoTime() - start - (compiledNanos - compiledBefore);
+        return outcome;
+    }
+
+    @Override
+    public IrInterpreter.Callee onCall(int function) {
+        allCalls++;
+        Compiled code = compiled.get(function);
+        if (code != null) {
+            return code;
+        }
+        if (++invocations[function] >= invocationThreshold && !queued[function]) {
+            queue(function, "after " + invocations[function] + " calls");
+            //a compiler on this thread has already finished
+            return compiled.get(function);
+        }
+        return null;
+    }
+
+    @Override
+    public void onBackedge(int function) {
+        if (++backedges[function] >= backedgeThreshold && !queued[function] && !program.function(function).isMain()) {
+            queue(function, "after " + backedges[function] + " backedges");
+        }
+    }
+
+    private void queue(int function, String reason) {
+        queued[function] = true;
+        transition(function, INTERPRETED, QUEUED, reason);
+        try {
+            compiler.execute(() -> compile(function));
+        } catch (RejectedExecutionException e) {
+            transition(function, QUEUED, INTERPRETED, "the compiler has stopped");
+        }
+    }
+
+    //On the compiler thread. Whatever the backend or class definition throws fails just this function
+    private void compile(int function) {
+        long start = System.nanoTime();
+        try {
+            JvmBackend backend = JvmBackend.compile(program, calls, function);
+            long nanos = System.nanoTime() - start;
+            transition(function, QUEUED, COMPILED, String.format("in %.3f ms, %d methods in %d bytes", nanos / 1e6,
+                    backend.getMethods(), backend.getClassFile().length));
+            compiled.set(function, new Compiled(function, backend.getCallee()));
+        } catch (RuntimeException | LinkageError e) {
+            transition(function, QUEUED, FAILED, String.valueOf(e));
+        } finally {
+            synchronized (transitions) {
+                compilingNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    private void transition(int function, String from, String to, String detail) {
+        Transition transition = new Transition(System.nanoTime() - created, program.function(function).getName(), from, to, detail);
+        synchronized (transitions) {
+            transitions.add(transition);
+        }
+    }
+
+    List<Transition> getTransitions() {
+        synchronized (transitions) {
+            return new ArrayList<>(transitions);
+        }
+    }
+
+    //Functions the compiler has published code for so far
+    int compiledCount() {
+        int count = 0;
+        for (int f = 0; f < compiled.length(); f++) {
+            count += compiled.get(f) != null ? 1 : 0;
+        }
+        return count;
+    }
+
+    void report(ReportSink out) {
+        for (Transition transition : getTransitions()) {
+            out.println(transition.toString());
+        }
+        long compiling;
+        synchronized (transitions) {
+            compiling = compilingNanos;
+        }
+        out.println(String.format("%-16s %10.3f ms %12d calls", "interpreter", interpretedNanos / 1e6, allCalls - compiledCalls));
+        out.println(String.format("%-16s %10.3f ms %12d calls", "compiled code", compiledNanos / 1e6, compiledCalls));
+        out.println(String.format("%-16s %10.3f ms %12d functions", "compiler thread", compiling / 1e6, compiledCount()));
+    }
+
+    //Stops a compiler thread of its own, code compiled so far is still used
+    @Override
+    public void close() {
+        if (ownsCompiler) {
+            ((ExecutorService) compiler).shutdownNow();
+        }
+    }
+}
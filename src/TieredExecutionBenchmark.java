@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Times runs of TieredExecution against IrInterpreter as functions get compiled, and checks every run ends the same.
+//Usage: java TieredExecutionBenchmark [-invocations count] [-backedges count] [-runs count] [file...]
+//with no files a generated workload is used
+public class TieredExecutionBenchmark {
+
+    private static final long BUDGET = 1_000_000_000L;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        int invocationThreshold = TieredExecution.DEFAULT_INVOCATIONS;
+        int backedgeThreshold = TieredExecution.DEFAULT_BACKEDGES;
+        int runs = 5;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-invocations") && i + 1 < args.length) {
+                invocationThreshold = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-backedges") && i + 1 < args.length) {
+                backedgeThreshold = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-runs") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                System.out.println("Usage: java TieredExecutionBenchmark [-invocations count] [-backedges count] [-runs count] [file...]");
+                return;
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("10 functions and 100000 hot calls", () -> ProgramGenerator.generateHotCalls(10, 100000)));
+
+        boolean same = true;
+        ReportSink out = new WriterSink(System.out);
+        try {
+            for (Workload workload : Workload.select(files, false, generated)) {
+                IrProgram program = IrDump.lower(workload.parse());
+                if (program == null) {
+                    out.println(workload.getName() + ": has semantic errors");
+                    continue;
+                }
+                out.println("---- " + workload.getName() + " ----");
+                IrInterpreter interpreter = new IrInterpreter(program, BUDGET);
+                try (TieredExecution tiered = new TieredExecution(program, BUDGET, invocationThreshold, backedgeThreshold)) {
+                    for (int run = 1; run <= runs; run++) {
+                        long start = System.nanoTime();
+                        IrInterpreter.Outcome interpreted = interpreter.run();
+                        long interpreting = System.nanoTime() - start;
+                        start = System.nanoTime();
+                        IrInterpreter.Outcome outcome = tiered.run();
+                        long tiering = System.nanoTime() - start;
+                        out.println(String.format("run %-3d interpreter %10.3f ms, tiered %10.3f ms, %d functions compiled",
+                                run, interpreting / 1e6, tiering / 1e6, tiered.compiledCount()));
+                        if (!outcome.sameAs(interpreted)) {
+                            out.println("Outcomes differ: " + outcome.describe(program) + " and " + interpreted.describe(program));
+                            same = false;
+                        }
+                    }
+                    tiered.report(out);
+                }
+            }
+        } finally {
+            out.flush();
+        }
+        if (!same) {
+            System.exit(1);
+        }
+    }
+}
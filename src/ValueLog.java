@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+//Assignment history of one symbol. Each entry is a (key, value, type) triple of ids into the pool of the symbol's
+//scope (Scope.values()), so a value repeated in a scope like "x" or "y-1" is stored once and an entry costs three ints.
+class ValueLog {
+
+    private final IdentifierPool pool;
+    private int[] entries = new int[12];
+    private int size = 0;
+
+    ValueLog(IdentifierPool pool) {
+        this.pool = pool;
+    }
+
+    void add(String key, String type, String value) {
+        if ((size + 1) * 3 > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        int at = size * 3;
+        entries[at] = pool.intern(key);
+        entries[at + 1] = pool.intern(value);
+        entries[at + 2] = pool.intern(type);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //Values grouped by key in the order each key was first written, eg. {0:integer,result+x:integer}
+    String print() {
+        StringBuilder stringBuilder = new StringBuilder("{");
+        boolean[] printed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (printed[i]) {
+                continue;
+            }
+            int key = entries[i * 3];
+            for (int j = i; j < size; j++) {
+                if (!printed[j] && entries[j * 3] == key) {
+                    printed[j] = true;
+                    stringBuilder.append(pool.name(entries[j * 3 + 1])).append(":").append(pool.name(entries[j * 3 + 2])).append(",");
+                }
+            }
+        }
+        if (size > 0) {
+            stringBuilder.setLength(stringBuilder.length() - 1);
+        }
+        return stringBuilder.append("}").toString();
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Value numbering with copy propagation over functions in SSA form. An operation on the same operands as one
+//computed before it is replaced by that one's temp, with the operands of +, *, ==, !=, && and || taken in either order.
+//Copies of temps and constants are dropped and their temps replaced by what they copy, and so are PHIs whose
+//arguments are all the same. Globally, the walk goes down the dominator tree so anything computed in a dominating
+//block can be reused (Briggs, Cooper and Simpson's dominator based value numbering). Locally, only what the same
+//block computed is. Operations reading a global aren't numbered since a call or store can change it in between.
+final class ValueNumbering implements Pass {
+
+    private final boolean global;
+    private final boolean copies;
+    private int redundant = 0;
+    private int propagated = 0;
+
+    ValueNumbering(boolean global, boolean copies) {
+        this.global = global;
+        this.copies = copies;
+    }
+
+    //Operations dropped because the same value was already computed
+    int getRedundant() {
+        return redundant;
+    }
+
+    //Copies and PHIs dropped by using what they copy instead
+    int getPropagated() {
+        return propagated;
+    }
+
+    @Override
+    public String getName() {
+        return "values";
+    }
+
+    @Override
+    public List<String> getDependencies() {
+        return Collections.singletonList(PassManager.SSA);
+    }
+
+    @Override
+    public IrProgram run(IrProgram program, PassManager manager) {
+        return run(program);
+    }
+
+    @Override
+    public void report(ReportSink out) {
+        out.println("  " + (global ? "" : "locally, ") + redundant + " redundant, " + propagated + " copies propagated");
+    }
+
+    IrProgram run(IrProgram program) {
+        boolean[] globals = new boolean[program.symbolCount()];
+        for (int id = 0; id < globals.length; id++) {
+            globals[id] = program.isGlobal(id);
+        }
+        return program.transform(function -> run(function, globals));
+    }
+
+    private static final class Expression {
+
+        final int opcode;
+        final long left;
+        final long right;
+
+        Expression(Opcode opcode, long left, long right) {
+            this.opcode = opcode.ordinal();
+            //commutative operations keep their operands in one order
+            boolean swap = (opcode == Opcode.ADD || opcode == Opcode.MUL || opcode == Opcode.EQ || opcode == Opcode.NE
+                    || opcode == Opcode.AND || opcode == Opcode.OR) && left > right;
+            this.left = swap ? right : left;
+            this.right = swap ? left : right;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Expression)) {
+                return false;
+            }
+            Expression expression = (Expression) other;
+            return opcode == expression.opcode && left == expression.left && right == expression.right;
+        }
+
+        @Override
+        public int hashCode() {
+            return (opcode * 31 + Long.hashCode(left)) * 31 + Long.hashCode(right);
+        }
+    }
+
+    IrFunction run(IrFunction function, boolean[] globals) {
+        ControlFlowGraph graph = ControlFlowGraph.of(function);
+        DominatorTree tree = new DominatorTree(graph);
+        long[] replacements = new long[function.tempCount()]; //ABSENT while a temp stands for itself
+        boolean[] dropped = new boolean[function.size()];
+        Map<Expression, Long> available = new HashMap<>();
+        List<Expression> added = new ArrayList<>(); //undone when the walk leaves the block that added them
+        int[] addedStarts = new int[graph.blockCount()];
+
+        int[] stack = new int[graph.blockCount() * 2 + 1];
+        int depth = 0;
+        if (tree.order().length > 0) {
+            stack[depth++] = tree.order()[0];
+        }
+        while (depth > 0) {
+            int entry = stack[--depth];
+            if (entry < 0) {
+                int block = -entry - 1;
+                while (added.size() > addedStarts[block]) {
+                    available.remove(added.remove(added.size() - 1));
+                }
+                continue;
+            }
+            int block = entry;
+            addedStarts[block] = added.size();
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                Opcode opcode = function.opcode(i);
+                long dest = function.dest(i);
+                if (Operand.kind(dest) != Operand.TEMP) {
+                    continue;
+                }
+                if (opcode == Opcode.PHI) {
+                    long same = sameArgument(function, i, replacements);
+                    if (copies && !Operand.isAbsent(same)) {
+                        replacements[Operand.value(dest)] = same;
+                        dropped[i] = true;
+                        propagated++;
+                    }
+                    continue;
+                }
+                if (opcode == Opcode.COPY) {
+                    long source = resolve(function.left(i), replacements);
+                    if (copies && (Operand.kind(source) == Operand.TEMP || Operand.isConstant(source))) {
+                        replacements[Operand.value(dest)] = source;
+                        dropped[i] = true;
+                        propagated++;
+                    }
+                    continue;
+                }
+                if (!opcode.isUnary() && !opcode.isBinary()) {
+                    continue;
+                }
+                long left = resolve(function.left(i), replacements);
+                long right = opcode.isBinary() ? resolve(function.right(i), replacements) : Operand.ABSENT;
+                if (readsGlobal(left, globals) || readsGlobal(right, globals)) {
+                    continue;
+                }
+                Expression expression = new Expression(opcode, left, right);
+                Long existing = available.get(expression);
+                if (existing != null) {
+                    replacements[Operand.value(dest)] = existing;
+                    dropped[i] = true;
+                    redundant++;
+                } else {
+                    available.put(expression, dest);
+                    added.add(expression);
+                }
+            }
+            if (global) {
+                stack[depth++] = -block - 1;
+            } else {
+                while (added.size() > addedStarts[block]) {
+                    available.remove(added.remove(added.size() - 1));
+                }
+            }
+            int[] children = tree.children(block);
+            for (int c = children.length - 1; c >= 0; c--) {
+                stack[depth++] = children[c];
+            }
+        }
+
+        SsaRewriter rewriter = new SsaRewriter(function, graph);
+        for (int block = 0; block < graph.blockCount(); block++) {
+            if (!graph.isReachable(block)) {
+                continue;
+            }
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                if (dropped[i]) {
+                    continue;
+                }
+                Opcode opcode = function.opcode(i);
+                if (opcode == Opcode.PHI) {
+                    int phi = rewriter.emitPhi(block, i);
+                    for (int k = 0; k < function.phiArgumentCount(i); k++) {
+                        rewriter.getCode().setPhiArgument(phi, k, resolve(function.phiArgument(i, k), replacements));
+                    }
+                    continue;
+                }
+                long left = opcode.sources() > 0 ? resolve(function.left(i), replacements) : function.left(i);
+                long right = opcode.sources() > 1 ? resolve(function.right(i), replacements) : function.right(i);
+                rewriter.emit(block, opcode, function.dest(i), left, right);
+            }
+        }
+        return rewriter.finish();
+    }
+
+    //The argument every argument of the PHI resolves to, ignoring the PHI itself, or ABSENT if they differ or some
+    //haven't been numbered yet (they come round a loop)
+    private static long sameArgument(IrFunction function, int i, long[] replacements) {
+        long dest = function.dest(i);
+        long same = Operand.ABSENT;
+        for (int k = 0; k < function.phiArgumentCount(i); k++) {
+            long argument = function.phiArgument(i, k);
+            if (argument == dest) {
+                continue;
+            }
+            argument = resolve(argument, replacements);
+            if (argument == dest) {
+                continue;
+            }
+            if (Operand.kind(argument) == Operand.SYMBOL || (!Operand.isAbsent(same) && argument != same)) {
+                return Operand.ABSENT;
+            }
+            same = argument;
+        }
+        return same;
+    }
+
+    //What a temp stands for once copies and repeated operations are replaced, other operands as they are
+    private static long resolve(long operand, long[] replacements) {
+        while (Operand.kind(operand) == Operand.TEMP && !Operand.isAbsent(replacements[Operand.value(operand)])) {
+            operand = replacements[Operand.value(operand)];
+        }
+        return operand;
+    }
+
+    private static boolean readsGlobal(long operand, boolean[] globals) {
+        return Operand.kind(operand) == Operand.SYMBOL && globals[Operand.value(operand)];
+    }
+}
@@ -0,0 +1,5 @@
+//How much of a symbol's assignment history the Visitor keeps
+public enum ValueTracking {
+    FIRST, //only whether it was written and the first value, enough for the checks
+    HISTORY //every assignment in a compact log, for printing the full symbol table
+}
@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Counts how often the semantic checker visits each kind of node, every node should be visited at most once.
+//Usage: java VisitCounter [file...], with no files a generated programme and deeply nested expressions are used
+public class VisitCounter {
+
+    public static void main(String[] args) throws IOException {
+        List<Workload> generated = new ArrayList<>();
+        generated.add(Workload.generated("100 functions", () -> ProgramGenerator.generate(100)));
+        for (int depth : new int[]{10, 20, 40}) {
+            generated.add(Workload.generated("nested " + depth, () -> ProgramGenerator.generateNested(depth)));
+        }
+        boolean linear = true;
+        for (Workload workload : Workload.select(Arrays.asList(args), false, generated)) {
+            try {
+                linear &= report(workload.getName(), workload.parse());
+            } catch (ParseException e) {
+                System.out.println("---- " + workload.getName() + " could not be parsed ----");
+            }
+        }
+        if (!linear) {
+            System.exit(1);
+        }
+    }
+
+    //Print nodes and visits per kind, returns false if any kind was visited more often than it occurs
+    private static boolean report(String name, FlatTree tree) {
+        int[] nodes = new int[CCALParserTreeConstants.jjtNodeName.length];
+        for (int node = 0; node < tree.size(); node++) {
+            nodes[tree.kind(node)]++;
+        }
+        Visitor visitor = new Visitor(NullSink.INSTANCE);
+        visitor.countVisits();
+        visitor.check(tree);
+        int[] visits = visitor.getVisitCounts();
+
+        System.out.println("---- " + name + " ----");
+        System.out.println(String.format("%-18s %10s %10s", "kind", "nodes", "visits"));
+        boolean linear = true;
+        long totalNodes = 0;
+        long totalVisits = 0;
+        for (int kind = 0; kind < nodes.length; kind++) {
+            if (nodes[kind] == 0 && visits[kind] == 0) {
+                continue;
+            }
+            String mark = visits[kind] > nodes[kind] ? "  revisited" : "";
+            linear &= visits[kind] <= nodes[kind];
+            System.out.println(String.format("%-18s %10d %10d%s", CCALParserTreeConstants.jjtNodeName[kind], nodes[kind], visits[kind], mark));
+            totalNodes += nodes[kind];
+            totalVisits += visits[kind];
+        }
+        System.out.println(String.format("%-18s %10d %10d", "total", totalNodes, totalVisits));
+        return linear;
+    }
+}
@@ -1,15 +1,25 @@
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-public class Visitor implements CCALParserVisitor {
+//Semantic check of a programme. It walks the FlatTree with a cursor, statements as the walk enters them and
+//expressions by following node indices, and binds the symbol each name resolves to in the tree for IrBuilder.
+public class Visitor implements FlatTreeVisitor, CCALParserTreeConstants {
 
-    private HashMap<String, HashMap<String, Symbol>> symbolTable = new HashMap<>();
-    //Keep track of the scope we're in along with what the above scope was --> for nesting
     private static final String PROGRAMME = "Programme";
     private static final String MAIN = "Main";
-    private static final String INTEGER = "integer";
-    private static final String BOOLEAN = "boolean";
-    private String currentScope = PROGRAMME;
-    private String previousScope;
+    private static final String INTEGER = Operators.INTEGER;
+    private static final String BOOLEAN = Operators.BOOLEAN;
+    //Scope tree, functions and main hang off the programme scope. Every scope is also kept in creation order for printing
+    private final Scope programme;
+    private final List<Scope> scopes;
+    private Scope currentScope;
+    //Programme symbols with a slot below this are visible, a function checked on its own only sees what was declared before it
+    private int visibleGlobals = Integer.MAX_VALUE;
+    //Symbol of the function whose parameters are being declared
+    private Symbol currentFunction;
     //Is every variable both written to and read from?
     //Is every function called?
     private int functionsNotCalled = 0;
@@ -17,593 +27,717 @@ public class Visitor implements CCALParserVisitor {
     private List<ErrorMessage> errorList = new ArrayList<>();
     private List<String> variablesNotRead = new ArrayList<>();
     private List<String> variablesNotWritten = new ArrayList<>();
+    //Where the symbol table and semantic results get reported
+    private final ReportSink out;
+    //Assigned values are only kept in full when the symbol table is going to be printed with them
+    private final ValueTracking tracking;
+    //When set, function bodies are checked concurrently on this pool after their signatures are declared
+    private final ExecutorService functionPool;
+    //What a function body checked on its own does to programme symbols, applied in source order once every body is checked
+    private GlobalEffects deferred;
+    //Visits per node kind, indexed by CCALParserTreeConstants id. Only counted once countVisits() is called.
+    private int[] visitCounts;
+    //Programme being checked
+    private FlatTree tree;
 
-    @Override
-    public Object visit(SimpleNode node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    Visitor(ReportSink out) {
+        this(out, ValueTracking.FIRST, null);
     }
 
-    @Override
-    public Object visit(ASTProgramme node, Object data) {
-        symbolTable.put(currentScope, new HashMap<>());
-        node.childrenAccept(this, data);
-
-        //Print out the symbol table and perform the semantic checks once the programme is evaluated
-        System.out.println("-----Start Symbol Table-----");
-        Set scopes = symbolTable.keySet();
-        for (Object scope : scopes) { //Loop through each scope of the programme
-            String scopeName = (String) scope;
-            System.out.println("-----Start " + scopeName + " Scope-----");
-            Set symbols = symbolTable.get(scopeName).keySet();
-            if (symbols.size() == 0) {
-                System.out.println(" Nothing declared");
-            }
-            for (Object symbol : symbols) {
-                String symbolName = (String) symbol;
-                Symbol currentSymbol = symbolTable.get(scopeName).get(symbolName);
-                System.out.println(currentSymbol.getSymbolString());
-                if (currentSymbol.getSymbolType() == SymbolType.FUNC) { //so we know what variables of the symbol to access
-                    if (!currentSymbol.getIsCalled()) {
-                        functionsNotCalled++; //update counter if it has not been called
-                    }
-                } else {
-                    if (currentSymbol.getValues().size() == 0 && !currentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                        //a param doesn't matter here as we assume it's assigned from the variable that's passed in
-                        variablesNotWritten.add(currentSymbol.getName().image); //print out all assignments of this variable
-                    }
-                    if (!currentSymbol.getIsRead()) {
-                        variablesNotRead.add(currentSymbol.getName().image);
-                    }
-                }
-            }
-            System.out.println("-----End " + scopeName + " Scope-----"); //Show end of scope
-        }
-        System.out.println("-----End Symbol Table-----");
-
-        if (errorList.size() == 0) { //make sure there are no errors
-            isSematicError();
-            System.out.println("No errors found");
-            Representer representer = new Representer();
-            node.jjtAccept(representer, symbolTable);
-        } else { //print out errors from the object list
-            printErrorList();
-        }
-
-        return null;
+    Visitor(ReportSink out, ValueTracking tracking) {
+        this(out, tracking, null);
     }
 
-    @Override
-    public Object visit(ASTMain node, Object data) {
-        // update to currentScope of function
-        previousScope = currentScope;
-        currentScope = MAIN;
-        symbolTable.put(currentScope, new HashMap<>()); //create the hashmap for the main scope
-        node.childrenAccept(this, data);
-
-        // update currentScope to previous currentScope
-        currentScope = previousScope;
-        previousScope = null;
-        return null;
+    Visitor(ReportSink out, ValueTracking tracking, ExecutorService functionPool) {
+        this.out = out;
+        this.tracking = tracking;
+        this.functionPool = functionPool;
+        programme = new Scope(PROGRAMME, null);
+        scopes = new ArrayList<>();
+        currentScope = programme;
     }
 
-    @Override
-    public Object visit(ASTFunctionList node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
-    }
-
-    @Override
-    public Object visit(ASTFunction node, Object data) {
-        HashMap<String, Symbol> currentHashScopeMap = symbolTable.get(currentScope);
-        if (currentHashScopeMap == null) {
-            currentHashScopeMap = new HashMap<>();
-        }
-
-        Token functionType = (Token) node.jjtGetChild(0).jjtAccept(this, null); //get function type (eg. integer, boolean)
-        Token functionName = (Token) node.jjtGetChild(1).jjtAccept(this, null); //get function name
-        Symbol symbol = new Symbol(); //create symbol for this function
-        symbol.setName(functionName);
-        symbol.setType(functionType);
-        symbol.setScope(currentScope);
-        symbol.setSymbolType(SymbolType.FUNC);
-        symbol.setNumArgs(node.jjtGetChild(2).jjtGetNumChildren()); //get the number of arguments through it's children
-
-        //Check if the function already exists
-        if (currentHashScopeMap.containsKey(functionName.image)) {
-                //Throw an error if it does exist already with the same amount of parameters
-                errorList.add(new ErrorMessage(functionName.beginLine, functionName.beginColumn, "Function \"" + functionName.image + "\" already declared with " + symbol.getNumArgs() + " parameters"));
-        } else {
-            //otherwise update the symbol table with this new function
-            currentHashScopeMap.put(functionName.image, symbol);
-            symbolTable.put(currentScope, currentHashScopeMap);
+    //Checker for one function body, it shares the scope tree but keeps its own errors and writes to globals
+    private Visitor(Visitor parent) {
+        this.out = parent.out;
+        this.tracking = parent.tracking;
+        this.functionPool = null;
+        this.tree = parent.tree;
+        programme = parent.programme;
+        scopes = parent.scopes;
+        currentScope = programme;
+        deferred = new GlobalEffects();
+        if (parent.visitCounts != null) {
+            visitCounts = new int[parent.visitCounts.length];
         }
+    }
 
-        //Update current scope to function so we can evaluate it's children
-        previousScope = currentScope;
-        currentScope = functionName.image;
+    //Check a whole programme and report on it
+    void check(FlatTree tree) {
+        this.tree = tree;
+        tree.accept(this);
+    }
 
-        //Evaluate to functions params and body
-        node.jjtGetChild(2).jjtAccept(this, null);
-        node.jjtGetChild(3).jjtAccept(this, null);
+    int getErrorCount() {
+        return errorList.size();
+    }
 
-        //Revert back to current scope scope
-        currentScope = previousScope;
-        previousScope = null;
+    //Debugging aid, every node should be visited at most once so the counts can't exceed the number of nodes
+    void countVisits() {
+        visitCounts = new int[CCALParserTreeConstants.jjtNodeName.length];
+    }
 
-        return null;
+    int[] getVisitCounts() {
+        return visitCounts;
     }
 
-    @Override
-    public Object visit(ASTFunctionBody node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    //Check the subtree under a node, every visit of the checker starts here or in check()
+    private void visit(int node) {
+        tree.accept(this, node);
     }
 
-    @Override
-    public Object visit(ASTReturnStatement node, Object data) {
-        if (node.jjtGetNumChildren() > 0) {
-            Token returnedToken = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-            Node returnedNode = node.jjtGetChild(0);
-            if (returnedNode instanceof ASTVariable) {
-                HashMap<String, Symbol> currentSymbolTable = symbolTable.get(currentScope);
-                Symbol returnedSymbol = currentSymbolTable.get(returnedToken.image);
-                if (returnedSymbol == null) {
-                    currentSymbolTable = symbolTable.get(PROGRAMME);
-                    returnedSymbol = currentSymbolTable.get(returnedToken.image);
-                }
-                if (returnedSymbol.getValues().size() == 0 && !returnedSymbol.getSymbolType().equals(SymbolType.PARAM)) { //Make sure the value we're returning has a value
-                    //as the value would have come from a param if it's a function
-                    errorList.add(new ErrorMessage(returnedToken.beginLine, returnedToken.beginColumn, "Variable \"" + returnedToken.image + "\" has no value in currentScope \"" + currentScope + "\""));
-                }
-                returnedSymbol.setIsRead(true);
-                updateSymbol(returnedToken.image, returnedSymbol);
-            }
+    private void count(int node) {
+        if (visitCounts != null) {
+            visitCounts[tree.kind(node)]++;
         }
-        node.childrenAccept(this, data);
-        return null;
     }
 
-    @Override
-    public Object visit(ASTParamList node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    private void error(int node, String message) {
+        errorList.add(new ErrorMessage(tree.line(node), tree.column(node), message));
     }
 
-    @Override
-    public Object visit(ASTParam node, Object data) {
-        HashMap<String, Symbol> currentSymbolTable = symbolTable.get(currentScope);
-        if (currentSymbolTable == null) { //If this is the first param then the scope for the function won't be set yet
-            currentSymbolTable = new HashMap<>();
-        }
-
-        Token paramName = (Token) node.jjtGetChild(0).jjtAccept(this, null); //name of the parameter
-        Token paramType = (Token) node.jjtGetChild(1).jjtAccept(this, null); //type of parameter (eg. integer)
-        Symbol symbol = new Symbol(); //create symbol for the param
-        symbol.setName(paramName);
-        symbol.setType(paramType);
-        symbol.setScope(currentScope);
-        symbol.setSymbolType(SymbolType.PARAM);
-        currentSymbolTable.put(paramName.image, symbol);
-        symbolTable.put(currentScope, currentSymbolTable);
-
-        Token functionName = (Token) node.jjtGetParent().jjtGetParent().jjtGetChild(1).jjtAccept(this, null);
-        currentSymbolTable = symbolTable.get(currentScope);
-        Symbol functionSymbol = currentSymbolTable.get(functionName.image);
-        if (functionSymbol == null) {
-            currentSymbolTable = symbolTable.get(PROGRAMME);
-            functionSymbol = currentSymbolTable.get(functionName.image);
+    //Symbol a variable node refers to, the lookup walks the scope chain once and is then bound to the node
+    private Symbol resolve(int node) {
+        if (tree.kind(node) != JJTVARIABLE) {
+            return null;
         }
-        if (functionSymbol.getValues().containsKey(paramName.image)) { //check if the parameter is already in use for the function
-            errorList.add(new ErrorMessage(paramName.beginLine, paramName.beginColumn, "Duplicate parameter names, \"" + paramName.image + "\" for function \"" + functionName.image + "\""));
-        } else {
-            Variable variable = new Variable(functionSymbol.getType().toString(), paramName.image);
-            functionSymbol.addValue(paramName.image, variable);
-            updateSymbol(functionName.image, functionSymbol);
+        Symbol symbol = tree.symbol(node);
+        if (symbol == null) {
+            symbol = visible(currentScope.resolve(tree.identifier(node)));
+            tree.bind(node, symbol);
         }
-        return null;
+        return symbol;
     }
 
-    @Override
-    public Object visit(ASTStatementBlock node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    private Symbol global(int id) {
+        return visible(programme.lookupLocal(id));
     }
 
-    @Override
-    public Object visit(ASTIf node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    private Symbol visible(Symbol symbol) {
+        if (symbol != null && symbol.getScope() == programme && symbol.getSlot() >= visibleGlobals) {
+            return null;
+        }
+        return symbol;
     }
 
-    @Override
-    public Object visit(ASTWhile node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    private Symbol newSymbol() {
+        return newSymbol(currentScope);
     }
 
-    @Override
-    public Object visit(ASTCondition node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    private Symbol newSymbol(Scope scope) {
+        return tracking == ValueTracking.HISTORY ? new Symbol(scope.values()) : new Symbol();
     }
 
-    @Override
-    public Object visit(ASTSkip node, Object data) {
-        return node.jjtGetValue();
+    private boolean isDeferred(Symbol symbol) {
+        return deferred != null && symbol.getScope() == programme;
     }
 
-    @Override
-    public Object visit(ASTNot node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
-    }
-
-    @Override
-    public Object visit(ASTDeclarationList node, Object data) {
-        node.childrenAccept(this, data);
-        return null;
+    //Record an assignment, a function body being checked on its own holds writes to globals back until the merge
+    private void assign(Symbol symbol, String name, String type, String value) {
+        if (isDeferred(symbol)) {
+            deferred.writes.add(new GlobalWrite(symbol, name, type, value));
+            deferred.written.add(symbol);
+        } else {
+            symbol.addValue(name, type, value);
+        }
     }
 
-    @Override
-    public Object visit(ASTConstDeclaration node, Object data) {
-        HashMap<String, Symbol> currentScopeSymbolTable = symbolTable.get(currentScope);
-        if (currentScopeSymbolTable == null) {
-            currentScopeSymbolTable = new HashMap<>();
-        }
-        Token contantName = (Token) node.jjtGetChild(0).jjtAccept(this, null); //get the constant name
-        if (currentScopeSymbolTable.get(contantName.image) == null) { //Check that the constant hasn't been defined in the current scope
-            Token constantType = (Token) node.jjtGetChild(1).jjtAccept(this, null); //get the constant type (eg. integer)
-            Token contantValue = (Token) node.jjtGetChild(2).jjtAccept(this, null); //get the constant value
-            Symbol symbol = new Symbol(); //create a symbol for the constant
-            symbol.setName(contantName);
-            symbol.setType(constantType);
-            symbol.setScope(currentScope);
-            symbol.setSymbolType(SymbolType.CONST);
-            symbolTable.put(currentScope, currentScopeSymbolTable);
-            currentScopeSymbolTable.put(contantName.image, symbol);
-
-            if ((constantType.image.equals(INTEGER) && !isInt(contantValue.image)) || (constantType.image.equals(BOOLEAN) && !isBoolean(contantValue.image))) {
-                errorList.add(new ErrorMessage(contantName.beginLine, contantName.beginColumn, "Invalid type assigned to constant \"" + contantName.image + "\""));
-            } else {
-                Variable variable = new Variable(symbol.getType().toString(), contantValue.image.toLowerCase());
-                symbol.addValue(contantName.image, variable); //create new constant value
-            }
-            currentScopeSymbolTable.put(contantName.image, symbol);
+    private void markRead(Symbol symbol) {
+        if (isDeferred(symbol)) {
+            deferred.read.add(symbol);
         } else {
-            errorList.add(new ErrorMessage(contantName.beginLine, contantName.beginColumn, "CONST \"" + contantName.image + "\" already declared in currentScope \"" + currentScope + "\""));
+            symbol.setIsRead(true);
         }
-        symbolTable.put(currentScope, currentScopeSymbolTable); //update the symbol table with the updates made to the current scope
-        return null;
     }
 
-    @Override
-    public Object visit(ASTVarDeclaration node, Object data) {
-        Token varName = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-        //get the current scope map and check for existence of the var
-        HashMap<String, Symbol> currentScopeSymbolTable = symbolTable.get(currentScope);
-        if (currentScopeSymbolTable == null) {
-            currentScopeSymbolTable = new HashMap<>();
-        }
-        Symbol varSymbol = currentScopeSymbolTable.get(varName.image);
-        if (varSymbol == null) {
-            Token varType = (Token) node.jjtGetChild(1).jjtAccept(this, null);
-            Symbol symbol = new Symbol();
-            symbol.setName(varName);
-            symbol.setType(varType);
-            symbol.setScope(currentScope);
-            symbol.setSymbolType(SymbolType.VAR);
-            currentScopeSymbolTable.put(varName.image, symbol);
+    private void markCalled(Symbol symbol) {
+        if (isDeferred(symbol)) {
+            deferred.called.add(symbol);
         } else {
-            errorList.add(new ErrorMessage(varName.beginLine, varName.beginColumn, "VAR \"" + varName.image + "\" already declared in currentScope \"" + currentScope + "\""));
+            symbol.setIsCalled(true);
         }
-        symbolTable.put(currentScope, currentScopeSymbolTable);
-
-        return null;
     }
 
-    @Override
-    public Object visit(ASTFunctionCall node, Object data) {
-        Token functionName = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-        // check if function has been declared
-        HashMap<String, Symbol> functionSymbolTable = symbolTable.get(currentScope);
-        if (functionSymbolTable == null) {
-            functionSymbolTable = symbolTable.get(PROGRAMME);
-        }
-        Symbol functionSymbol = functionSymbolTable.get(functionName.image);
-        if (functionSymbol == null) {
-            functionSymbolTable = symbolTable.get(PROGRAMME);
-            functionSymbol = functionSymbolTable.get(functionName.image);
+    private boolean isWritten(Symbol symbol) {
+        if (symbol.isWritten()) {
+            return true;
         }
-        if (functionSymbol != null) {
-            // go to ArgList
-            if (node.jjtGetNumChildren() > 1) {
-                node.jjtGetChild(1).jjtAccept(this, null);
+        if (isDeferred(symbol)) {
+            if (deferred.written.contains(symbol)) {
+                return true;
             }
-            functionSymbol.setIsCalled(true);
-            updateSymbol(functionName.image, functionSymbol);
-        } else {
-            errorList.add(new ErrorMessage(functionName.beginLine, functionName.beginColumn, "Function \"" + functionName.image + "\" not declared in any scope"));
+            deferred.assumedUnwritten.add(symbol); //an earlier function may write it, checked at the merge
         }
-        return null;
+        return false;
+    }
+
+    private Scope enterScope(String name) {
+        Scope scope = new Scope(name, currentScope);
+        scopes.add(scope);
+        currentScope = scope;
+        return scope;
     }
 
+    private void exitScope() {
+        currentScope = currentScope.getParent();
+    }
+
+    //Returns whether the walk goes on into the node's children. Lists, blocks, if and while are checked through
+    //their children, names and literals need nothing on their own.
     @Override
-    public Object visit(ASTMinus node, Object data) {
-        Token variableName = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-        HashMap<String, Symbol> currentSymbolTable = symbolTable.get(currentScope);
-        Symbol variableSymbol = currentSymbolTable.get(variableName.image);
-        if (variableSymbol == null) {
-            currentSymbolTable = symbolTable.get(PROGRAMME);
-            variableSymbol = currentSymbolTable.get(variableName.image);
-        }
-        if (variableSymbol == null) {
-            errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Variable \"" + variableName.image + "\" not declared in any scope"));
-        } else if (variableSymbol.getValues().size() == 0 && !variableSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Variable \"" + variableName.image + "\" has no value in currentScope \"" + currentScope + "\""));
-        } else if (!variableSymbol.getType().image.equals(INTEGER)) {
-            errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Cannot create negative value from " + variableSymbol.getSymbolType() + " \"" + variableName.image + "\". Not of type integer"));
-        } else {
-            Variable variable = new Variable(variableSymbol.getType().toString(), "-" + variableName); //Assign the minus sign the the value here
-            variableSymbol.addValue(variableName.image, variable);
-            // set isRead value
-            variableSymbol.setIsRead(true);
-            variableSymbol.setIsCalled(true);
-            updateSymbol(variableName.image, variableSymbol);
+    public boolean enter(FlatTree.Cursor cursor) {
+        int node = cursor.node();
+        count(node);
+        switch (cursor.kind()) {
+            case JJTPROGRAMME:
+                scopes.add(programme);
+                return true;
+            case JJTMAIN:
+                enterScope(MAIN);
+                return true;
+            case JJTFUNCTIONLIST:
+                if (functionPool == null) {
+                    return true;
+                }
+                checkFunctionsConcurrently(node);
+                return false;
+            case JJTFUNCTION:
+                declareFunction(node);
+                visit(tree.child(node, 3));
+                exitScope();
+                return false;
+            case JJTRETURNSTATEMENT:
+                returnStatement(node);
+                return true;
+            case JJTPARAM:
+                param(node);
+                return false;
+            case JJTCONDITION:
+            case JJTNOT:
+                condition(node);
+                return false;
+            case JJTCONSTDECLARATION:
+                constDeclaration(node);
+                return false;
+            case JJTVARDECLARATION:
+                varDeclaration(node);
+                return false;
+            case JJTFUNCTIONCALL:
+                return functionCall(node);
+            case JJTARGUMENTLIST:
+                argumentList(node, tree.firstChild(cursor.parent()));
+                return true;
+            case JJTARG:
+                arg(node);
+                return false;
+            case JJTMINUS:
+                minus(node);
+                return false;
+            case JJTADD:
+            case JJTSUBTRACT:
+                performArithmatic(node, null);
+                return false;
+            case JJTASSIGNMENT:
+                assignment(node);
+                return false;
+            default:
+                if (Operators.isComparison(cursor.kind())) {
+                    isValidBooleanOperation(node);
+                    return false;
+                }
+                return true;
         }
-        return null;
     }
 
     @Override
-    public Object visit(ASTArgumentList node, Object data) {
-        Token functionName = (Token) node.jjtGetParent().jjtGetChild(0).jjtAccept(this, null);
-        HashMap<String, Symbol> mapTemp = symbolTable.get(PROGRAMME);
-        if (mapTemp != null) {
-            Symbol functionSymbol = mapTemp.get(functionName.image);
-            if (functionSymbol == null) {
-                // error, no such function
-                errorList.add(new ErrorMessage(functionName.beginLine, functionName.beginColumn, "No function called \"" + functionName.image + "\""));
-            } else {
-                // check for correct number of Args
-                int numArgsDeclared = functionSymbol.getNumArgs();
-                int numArgsPassed = node.jjtGetNumChildren();
-                if (numArgsDeclared != numArgsPassed) {
-                    errorList.add(new ErrorMessage(functionName.beginLine, functionName.beginColumn, "Function \"" + functionName.image + "\" has invalid number of arguments. Should have " + numArgsDeclared + " but called with " + numArgsPassed + " argument(s)"));
-                } else if (numArgsDeclared > 0) {
-                    //Loop through the functions arguments and evaluate them
-                    Object[] keys =  functionSymbol.getValues().keySet().toArray();
-                    String key = (String) keys[0];
-                    String type = functionSymbol.getValues().get(key).get(0).getType();
-                    for (int i = 0; i < node.jjtGetNumChildren(); i++) {
-                        Token argumentName = (Token) node.jjtGetChild(i).jjtGetChild(0).jjtAccept(this, null);
-                        Symbol argumentSymbol = mapTemp.get(argumentName.image);
-                        if (argumentSymbol == null) {
-                            mapTemp = symbolTable.get(currentScope);
-                            argumentSymbol = mapTemp.get(argumentName.image);
-                        }
-                        if (!argumentSymbol.getType().image.equals(type)) {
-                            errorList.add(new ErrorMessage(argumentName.beginLine, argumentName.beginColumn, "\"" + argumentName.image + "\" is of the wrong type for function \"" + functionName.image + "\""));
-                        }
-                        //if argument is variable then it is accessed
-                        if (argumentSymbol.getSymbolType() != SymbolType.NAS) {
-                            argumentSymbol.setIsRead(true);
-                            updateSymbol(argumentName.image, argumentSymbol);
-                        }
+    public void leave(FlatTree.Cursor cursor) {
+        if (cursor.kind() == JJTMAIN) {
+            exitScope();
+        } else if (cursor.kind() == JJTPROGRAMME) {
+            report();
+        }
+    }
+
+    //Print out the symbol table and perform the semantic checks once the programme is evaluated
+    private void report() {
+        if (out.isEnabled()) {
+            out.println("-----Start Symbol Table-----");
+        }
+        for (Scope symbols : scopes) { //Loop through each scope of the programme
+            String scopeName = symbols.getName();
+            if (out.isEnabled()) {
+                out.println("-----Start " + scopeName + " Scope-----");
+                if (symbols.size() == 0) {
+                    out.println(" Nothing declared");
+                }
+            }
+            for (int i = 0; i < symbols.size(); i++) {
+                Symbol currentSymbol = symbols.at(i);
+                if (out.isEnabled()) {
+                    out.println(currentSymbol.getSymbolString());
+                }
+                if (currentSymbol.getSymbolType() == SymbolType.FUNC) { //so we know what variables of the symbol to access
+                    if (!currentSymbol.getIsCalled()) {
+                        functionsNotCalled++; //update counter if it has not been called
+                    }
+                } else {
+                    if (!isWritten(currentSymbol) && !currentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                        //a param doesn't matter here as we assume it's assigned from the variable that's passed in
+                        variablesNotWritten.add(currentSymbol.getName()); //print out all assignments of this variable
+                    }
+                    if (!currentSymbol.getIsRead()) {
+                        variablesNotRead.add(currentSymbol.getName());
                     }
                 }
             }
+            if (out.isEnabled()) {
+                out.println("-----End " + scopeName + " Scope-----"); //Show end of scope
+            }
+        }
+        if (out.isEnabled()) {
+            out.println("-----End Symbol Table-----");
+        }
+
+        if (errorList.size() == 0) { //make sure there are no errors
+            isSematicError();
+            if (out.isEnabled()) {
+                out.println("No errors found");
+            }
+        } else { //print out errors from the object list
+            printErrorList();
         }
-        node.childrenAccept(this, data);
-        return null;
     }
 
-    @Override
-    public Object visit(ASTArg node, Object data) {
-        Token argumentName = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-        HashMap<String, Symbol> currentSymbolTable = symbolTable.get(currentScope);
-        Symbol argumentSymbol = currentSymbolTable.get(argumentName.image);
-        if (argumentSymbol == null) {
-            currentSymbolTable = symbolTable.get(PROGRAMME);
-            argumentSymbol = currentSymbolTable.get(argumentName.image);
+    //Declare every function and its parameters in order, then check the bodies at the same time. Each body gets
+    //its own Visitor, so errors and writes to globals are merged back in source order and the result is the same
+    //whatever order the bodies finish in.
+    private void checkFunctionsConcurrently(int node) {
+        List<Integer> functions = new ArrayList<>();
+        List<Visitor> workers = new ArrayList<>();
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int function = tree.firstChild(node); function != FlatTree.NONE; function = tree.nextSibling(function)) {
+            final int body = tree.child(function, 3);
+            final Visitor worker = new Visitor(this);
+            worker.declareFunction(function);
+            worker.visibleGlobals = programme.size();
+            worker.deferred.signatureErrors = worker.errorList.size();
+            functions.add(function);
+            workers.add(worker);
+            tasks.add(() -> {
+                worker.visit(body);
+                return null;
+            });
         }
-        if (argumentSymbol == null) {
-            errorList.add(new ErrorMessage(argumentName.beginLine, argumentName.beginColumn, "VAR or Const \"" + argumentName.image + "\" has not been declared in currentScope \"" + currentScope + "\""));
-        } else if (argumentSymbol.getValues().size() == 0 && !argumentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                errorList.add(new ErrorMessage(argumentName.beginLine, argumentName.beginColumn, "VAR \"" + argumentName.image + "\" has been declared in currentScope \"" + currentScope + "\", but has no value"));
-        } else {
-            argumentSymbol.setIsRead(true);
-            updateSymbol(argumentName.image, argumentSymbol);
+
+        try {
+            for (Future<Object> future : functionPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking functions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
         }
-        return null;
-    }
 
-    @Override
-    public Object visit(ASTVariable node, Object data) {
-        return node.jjtGetValue();
+        Set<Symbol> writtenSoFar = new HashSet<>();
+        for (int i = 0; i < workers.size(); i++) {
+            Visitor worker = workers.get(i);
+            if (!Collections.disjoint(worker.deferred.assumedUnwritten, writtenSoFar)) {
+                //an earlier function wrote a global this body read as unassigned, check it again now that the
+                //writes before it have been applied, which is what a sequential check would have seen
+                worker = recheckFunction(functions.get(i), worker);
+            }
+            GlobalEffects effects = worker.deferred;
+            errorList.addAll(worker.errorList);
+            if (visitCounts != null) {
+                for (int kind = 0; kind < visitCounts.length; kind++) {
+                    visitCounts[kind] += worker.visitCounts[kind];
+                }
+            }
+            for (GlobalWrite write : effects.writes) {
+                write.symbol.addValue(write.name, write.type, write.value);
+            }
+            for (Symbol symbol : effects.read) {
+                symbol.setIsRead(true);
+            }
+            for (Symbol symbol : effects.called) {
+                symbol.setIsCalled(true);
+            }
+            writtenSoFar.addAll(effects.written);
+        }
     }
 
-    @Override
-    public Object visit(ASTDigit node, Object data) {
-        return node.jjtGetValue();
-    }
+    //Check a function body again with a new worker, against a fresh copy of the function's parameters
+    private Visitor recheckFunction(int function, Visitor worker) {
+        Visitor again = new Visitor(this);
+        again.errorList.addAll(worker.errorList.subList(0, worker.deferred.signatureErrors));
+        Scope discarded = worker.currentScope;
+        Scope scope = new Scope(discarded.getName(), programme);
+        int params = tree.child(function, 2);
+        for (int slot = 0; slot < discarded.size(); slot++) {
+            Symbol param = discarded.at(slot);
+            if (param.getSymbolType() != SymbolType.PARAM) {
+                break; //parameters come first, the rest are the body's declarations
+            }
+            int name = tree.firstChild(tree.child(params, slot));
+            Symbol symbol = newSymbol(scope);
+            symbol.setName(param.getName());
+            symbol.setType(param.getType());
+            symbol.setSymbolType(SymbolType.PARAM);
+            scope.declare(tree.identifier(name), symbol);
+            tree.bind(name, symbol);
+        }
+        scopes.set(scopes.indexOf(discarded), scope);
+        int body = tree.child(function, 3);
+        forgetSymbols(body);
+
+        again.currentScope = scope;
+        again.visibleGlobals = worker.visibleGlobals;
+        again.visit(body);
+        return again;
+    }
+
+    //Drop the symbols bound to the variables of a subtree so they are resolved again
+    private void forgetSymbols(int node) {
+        tree.accept(new FlatTreeVisitor() {
+            @Override
+            public boolean enter(FlatTree.Cursor cursor) {
+                if (cursor.kind() == JJTVARIABLE) {
+                    tree.bind(cursor.node(), null);
+                }
+                return true;
+            }
 
-    @Override
-    public Object visit(ASTTypeValue node, Object data) {
-        return node.jjtGetValue();
+            @Override
+            public void leave(FlatTree.Cursor cursor) {}
+        }, node);
     }
 
+    //Add the function to the current scope and its parameters to a new scope, which is left as the current one
+    private void declareFunction(int node) {
+        int functionType = tree.child(node, 0); //get function type (eg. integer, boolean)
+        int functionName = tree.child(node, 1); //get function name
+        Symbol symbol = newSymbol(); //create symbol for this function
+        symbol.setName(tree.image(functionName));
+        symbol.setType(tree.image(functionType));
+        symbol.setSymbolType(SymbolType.FUNC);
+        symbol.setNumArgs(tree.childCount(tree.child(node, 2))); //get the number of arguments through it's children
 
-    @Override
-    public Object visit(ASTEqual node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+        //Check if the function already exists
+        if (!currentScope.declare(tree.identifier(functionName), symbol)) {
+                //Throw an error if it does exist already with the same amount of parameters
+                error(functionName, "Function \"" + tree.image(functionName) + "\" already declared with " + symbol.getNumArgs() + " parameters");
+        }
+        //parameters of a duplicate still go to the first declaration
+        currentFunction = currentScope.lookupLocal(tree.identifier(functionName));
+        tree.bind(functionName, currentFunction);
+
+        //Evaluate to functions params in the function's own scope
+        enterScope(tree.image(functionName));
+        visit(tree.child(node, 2));
+        currentFunction = null;
+    }
+
+    private void returnStatement(int node) {
+        int returnedNode = tree.firstChild(node);
+        if (returnedNode != FlatTree.NONE && tree.kind(returnedNode) == JJTVARIABLE) {
+            String returned = tree.image(returnedNode);
+            Symbol returnedSymbol = resolve(returnedNode);
+            if (returnedSymbol == null) {
+                error(returnedNode, "Variable \"" + returned + "\" not declared in any scope");
+                return;
+            }
+            if (!isWritten(returnedSymbol) && !returnedSymbol.getSymbolType().equals(SymbolType.PARAM)) { //Make sure the value we're returning has a value
+                //as the value would have come from a param if it's a function
+                error(returnedNode, "Variable \"" + returned + "\" has no value in currentScope \"" + currentScope.getName() + "\"");
+            }
+            markRead(returnedSymbol);
+        }
     }
 
-    @Override
-    public Object visit(ASTNotEqual node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
-    }
+    private void param(int node) {
+        int paramName = tree.child(node, 0); //name of the parameter
+        int paramType = tree.child(node, 1); //type of parameter (eg. integer)
+        String name = tree.image(paramName);
+        Symbol symbol = newSymbol(); //create symbol for the param
+        symbol.setName(name);
+        symbol.setType(tree.image(paramType));
+        symbol.setSymbolType(SymbolType.PARAM);
+        currentScope.declare(tree.identifier(paramName), symbol);
+        tree.bind(paramName, symbol);
 
-    @Override
-    public Object visit(ASTLessThan node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+        Symbol functionSymbol = currentFunction;
+        if (functionSymbol.hasParam(name)) { //check if the parameter is already in use for the function
+            error(paramName, "Duplicate parameter names, \"" + name + "\" for function \"" + functionSymbol.getName() + "\"");
+        } else {
+            functionSymbol.addParam(name);
+        }
     }
 
-    @Override
-    public Object visit(ASTLessThanEqual node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+    //The condition of an if or while, or what ~ negates, has to be boolean. A comparison checks its own operands,
+    //anything else is checked here, so a variable used on its own is resolved like any other operand
+    private void condition(int parentNode) {
+        int node = tree.firstChild(parentNode);
+        if (node == FlatTree.NONE) {
+            return;
+        }
+        int kind = tree.kind(node);
+        String image = tree.image(node);
+        String expected = Operators.operandType(JJTNOT); //a condition is held to what ~ takes
+        if (kind == JJTVARIABLE) {
+            Symbol symbol = resolve(node);
+            if (symbol == null) {
+                error(node, "Variable \"" + image + "\" not declared in any scope");
+                return;
+            }
+            if (!isWritten(symbol) && !symbol.getSymbolType().equals(SymbolType.PARAM)) {
+                error(node, "VAR \"" + image + "\" has no value in currentScope \"" + currentScope.getName() + "\"");
+            } else if (!symbol.getType().equals(expected)) {
+                error(node, symbol.getSymbolType() + " \"" + image + "\" is not of type " + expected);
+            }
+            markRead(symbol);
+            return;
+        }
+        visit(node);
+        String type;
+        if (kind == JJTFUNCTIONCALL) {
+            Symbol function = resolve(tree.firstChild(node));
+            type = function == null ? expected : function.getType(); //an undeclared function is reported already
+        } else {
+            type = Operators.resultType(kind);
+        }
+        if (type != null && !type.equals(expected)) {
+            error(firstToken(node), "Condition \"" + expressionText(node) + "\" is not of type " + expected);
+        }
     }
 
-    @Override
-    public Object visit(ASTGreaterThan node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+    //Leftmost node with a token under a node, where an error about the whole expression is reported
+    private int firstToken(int node) {
+        while (tree.token(node) == FlatTree.NO_TOKEN && tree.firstChild(node) != FlatTree.NONE) {
+            node = tree.firstChild(node);
+        }
+        return node;
     }
 
-    @Override
-    public Object visit(ASTGreaterThanEqual node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+    private void constDeclaration(int node) {
+        int contantName = tree.child(node, 0); //get the constant name
+        String name = tree.image(contantName);
+        if (currentScope.lookupLocal(tree.identifier(contantName)) == null) { //Check that the constant hasn't been defined in the current scope
+            String constantType = tree.image(tree.child(node, 1)); //get the constant type (eg. integer)
+            String contantValue = tree.image(tree.child(node, 2)); //get the constant value
+            Symbol symbol = newSymbol(); //create a symbol for the constant
+            symbol.setName(name);
+            symbol.setType(constantType);
+            symbol.setSymbolType(SymbolType.CONST);
+            currentScope.declare(tree.identifier(contantName), symbol);
+            tree.bind(contantName, symbol);
+
+            if ((constantType.equals(INTEGER) && !isInt(contantValue)) || (constantType.equals(BOOLEAN) && !isBoolean(contantValue))) {
+                error(contantName, "Invalid type assigned to constant \"" + name + "\"");
+            } else {
+                symbol.addValue(name, symbol.getType(), contantValue.toLowerCase()); //create new constant value
+            }
+        } else {
+            error(contantName, "CONST \"" + name + "\" already declared in currentScope \"" + currentScope.getName() + "\"");
+        }
     }
 
-    @Override
-    public Object visit(ASTOr node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+    private void varDeclaration(int node) {
+        int varName = tree.child(node, 0);
+        //check the current scope for existence of the var
+        Symbol varSymbol = currentScope.lookupLocal(tree.identifier(varName));
+        if (varSymbol == null) {
+            Symbol symbol = newSymbol();
+            symbol.setName(tree.image(varName));
+            symbol.setType(tree.image(tree.child(node, 1)));
+            symbol.setSymbolType(SymbolType.VAR);
+            currentScope.declare(tree.identifier(varName), symbol);
+            tree.bind(varName, symbol);
+        } else {
+            error(varName, "VAR \"" + tree.image(varName) + "\" already declared in currentScope \"" + currentScope.getName() + "\"");
+        }
     }
 
-    @Override
-    public Object visit(ASTAnd node, Object data) {
-        isValidBooleanOperation(node, data);
-        return null;
+    //Returns whether the arguments should be checked, which they are once the function is found
+    private boolean functionCall(int node) {
+        int functionName = tree.firstChild(node);
+        // check if function has been declared
+        Symbol functionSymbol = resolve(functionName);
+        if (functionSymbol == null) {
+            error(functionName, "Function \"" + tree.image(functionName) + "\" not declared in any scope");
+            return false;
+        }
+        markCalled(functionSymbol);
+        return true;
     }
 
-    @Override
-    public Object visit(ASTBoolean node, Object data) {
-        return node.jjtGetValue();
+    private void minus(int node) {
+        int variableName = tree.firstChild(node);
+        if (!Operators.isOperand(tree.kind(variableName))) { //negating a bracketed expression, check that instead
+            visit(variableName);
+            return;
+        }
+        String name = tree.image(variableName);
+        Symbol variableSymbol = resolve(variableName);
+        if (variableSymbol == null) {
+            error(variableName, "Variable \"" + name + "\" not declared in any scope");
+        } else if (!isWritten(variableSymbol) && !variableSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                error(variableName, "Variable \"" + name + "\" has no value in currentScope \"" + currentScope.getName() + "\"");
+        } else if (!variableSymbol.getType().equals(Operators.operandType(JJTMINUS))) {
+            error(variableName, "Cannot create negative value from " + variableSymbol.getSymbolType() + " \"" + name + "\". Not of type integer");
+        } else {
+            assign(variableSymbol, name, variableSymbol.getType(), "-" + name); //Assign the minus sign the the value here
+            // set isRead value
+            markRead(variableSymbol);
+            markCalled(variableSymbol);
+        }
     }
 
-    @Override
-    public Object visit(ASTAdd node, Object data) {
-        performArithmatic(node, data);
-        return null;
+    //The arguments of a call to the function named by functionName, each Arg is checked on its own afterwards
+    private void argumentList(int node, int functionName) {
+        String function = tree.image(functionName);
+        Symbol functionSymbol = global(tree.identifier(functionName));
+        if (functionSymbol == null) {
+            // error, no such function
+            error(functionName, "No function called \"" + function + "\"");
+        } else {
+            // check for correct number of Args
+            int numArgsDeclared = functionSymbol.getNumArgs();
+            int numArgsPassed = tree.childCount(node);
+            if (numArgsDeclared != numArgsPassed) {
+                error(functionName, "Function \"" + function + "\" has invalid number of arguments. Should have " + numArgsDeclared + " but called with " + numArgsPassed + " argument(s)");
+            } else if (numArgsDeclared > 0) {
+                //Loop through the functions arguments and evaluate them
+                String type = functionSymbol.getType(); //parameters take the function's type
+                for (int argument = tree.firstChild(node); argument != FlatTree.NONE; argument = tree.nextSibling(argument)) {
+                    int argumentName = tree.firstChild(argument);
+                    Symbol argumentSymbol = resolve(argumentName);
+                    if (argumentSymbol == null) {
+                        continue; //reported when the Arg itself is visited
+                    }
+                    if (!argumentSymbol.getType().equals(type)) {
+                        error(argumentName, "\"" + tree.image(argumentName) + "\" is of the wrong type for function \"" + function + "\"");
+                    }
+                    //if argument is variable then it is accessed
+                    if (argumentSymbol.getSymbolType() != SymbolType.NAS) {
+                        markRead(argumentSymbol);
+                    }
+                }
+            }
+        }
     }
 
-    @Override
-    public Object visit(ASTSubtract node, Object data) {
-        performArithmatic(node, data);
-        return null;
+    private void arg(int node) {
+        int argumentName = tree.firstChild(node);
+        String name = tree.image(argumentName);
+        Symbol argumentSymbol = resolve(argumentName);
+        if (argumentSymbol == null) {
+            error(argumentName, "VAR or Const \"" + name + "\" has not been declared in currentScope \"" + currentScope.getName() + "\"");
+        } else if (!isWritten(argumentSymbol) && !argumentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                error(argumentName, "VAR \"" + name + "\" has been declared in currentScope \"" + currentScope.getName() + "\", but has no value");
+        } else {
+            markRead(argumentSymbol);
+        }
     }
 
-    @Override
-    public Object visit(ASTAssignment node, Object data) {
-        HashMap<String, Symbol> currentScopeSymbolTable = symbolTable.get(currentScope);
-        if (currentScopeSymbolTable == null) {
-            currentScopeSymbolTable = new HashMap<>();
-        }
-        Token variableName = (Token) node.jjtGetChild(0).jjtAccept(this, null);
-        Symbol variableSymbol = currentScopeSymbolTable.get(variableName.image);
-        if (variableSymbol == null) { //if it's not in the current scope check the programmes scope
-            variableSymbol = symbolTable.get(PROGRAMME).get(variableName.image);
-        }
-        if (variableSymbol != null) { //If it's in the main programmes scope after the last check we're ok
-            Token assignedValue = (Token) node.jjtGetChild(1).jjtAccept(this, null);
-            Node assignedNode = node.jjtGetChild(1);
+    private void assignment(int node) {
+        int variableName = tree.child(node, 0);
+        String name = tree.image(variableName);
+        Symbol variableSymbol = resolve(variableName);
+        if (variableSymbol != null) { //declared in this scope or an enclosing one
+            int assignedNode = tree.child(node, 1);
+            String assignedValue = tree.image(assignedNode);
+            int assignedKind = tree.kind(assignedNode);
+            if (!Operators.isArithmetic(assignedKind)) {
+                visit(assignedNode); //sums are checked once below, with the symbol they're assigned to
+            }
             if(variableSymbol.getSymbolType().equals(SymbolType.CONST)){ //constants can't be reassigned
-                errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn,  " \"" + variableName + "\" cannot be reassigned a value as it is of type \"" + variableSymbol.getSymbolType() + "\""));
+                error(variableName,  " \"" + name + "\" cannot be reassigned a value as it is of type \"" + variableSymbol.getSymbolType() + "\"");
             }
-            if (assignedNode instanceof ASTVariable) {
-                Symbol assignedSymbol = symbolTable.get(currentScope).get(assignedValue.image);
-                if (assignedSymbol == null) {
-                    assignedSymbol = symbolTable.get(PROGRAMME).get(assignedValue.image);
-                }
-                if (assignedSymbol == null) {
-                    errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, variableSymbol.getSymbolType() + " \"" + assignedValue.image + "\" not declared in any scope \""));
-                } else if (!variableSymbol.getType().image.equals(assignedSymbol.getType().image)) {
-                    errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "\"" + variableName.image + "\" and \"" + assignedValue.image + "\" are not of same type"));
-                }
-                else  {
-                    Variable variable = new Variable(variableSymbol.getType().toString(), assignedValue.toString());
-                    variableSymbol.addValue(variableName.image, variable);
-                    currentScopeSymbolTable.put(variableName.image, variableSymbol);
-                    symbolTable.put(currentScope, currentScopeSymbolTable);
-                    assignedSymbol.setIsRead(true);
-                    updateSymbol(assignedValue.image, assignedSymbol);
+            switch (assignedKind) {
+                case JJTVARIABLE: {
+                    Symbol assignedSymbol = resolve(assignedNode);
+                    if (assignedSymbol == null) {
+                        error(variableName, variableSymbol.getSymbolType() + " \"" + assignedValue + "\" not declared in any scope \"");
+                    } else if (!variableSymbol.getType().equals(assignedSymbol.getType())) {
+                        error(variableName, "\"" + name + "\" and \"" + assignedValue + "\" are not of same type");
+                    }
+                    else  {
+                        assign(variableSymbol, name, variableSymbol.getType(), assignedValue);
+                        markRead(assignedSymbol);
+                    }
+                    break;
                 }
-            } else if (assignedNode instanceof ASTDigit) {
-                if (!variableSymbol.getType().image.equals(INTEGER)) {
-                    errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Cannot assign type Digit to \"" + variableName.image + "\""));
-                } else {
+                case JJTDIGIT:
+                    if (!variableSymbol.getType().equals(INTEGER)) {
+                        error(variableName, "Cannot assign type Digit to \"" + name + "\"");
+                    } else {
+                        // if its initial value has already been stored, leave it
+                        assign(variableSymbol, name, variableSymbol.getType(), assignedValue);
+                    }
+                    break;
+                case JJTBOOLEAN:
+                    if (!variableSymbol.getType().equals(BOOLEAN)) {
+                        error(variableName, "Cannot assign type boolean to \"" + name + "\"");
+                    }
                     // if its initial value has already been stored, leave it
-                    Variable variable = new Variable(variableSymbol.getType().toString(), assignedValue.toString());
-                    variableSymbol.addValue(variableName.image, variable);
-                    updateSymbol(variableName.image, variableSymbol);
-                }
-            } else if (assignedNode instanceof ASTBoolean) {
-                if (!variableSymbol.getType().image.equals(BOOLEAN)) {
-                    errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Cannot assign type boolean to \"" + variableName.image + "\""));
+                    assign(variableSymbol, name, variableSymbol.getType(), assignedValue);
+                    break;
+                case JJTFUNCTIONCALL:
+                case JJTMINUS: {
+                    String function = expressionText(tree.firstChild(assignedNode));
+                    // if its initial value has already been stored, leave it
+                    assign(variableSymbol, function, variableSymbol.getType(), function);
+                    break;
                 }
-                // if its initial value has already been stored, leave it
-                Variable variable = new Variable(variableSymbol.getType().toString(), assignedValue.toString());
-                variableSymbol.addValue(variableName.image, variable);
-                currentScopeSymbolTable.put(variableName.image, variableSymbol);
-                symbolTable.put(currentScope, currentScopeSymbolTable);
-            } else if (assignedNode instanceof ASTFunctionCall ||
-                    assignedNode instanceof ASTMinus) {
-                Token functionToken = (Token) assignedNode.jjtGetChild(0).jjtAccept(this, null);
-                // if its initial value has already been stored, leave it
-                Variable variable = new Variable(variableSymbol.getType().toString(), functionToken.toString());
-                variableSymbol.addValue(functionToken.image, variable);
-                currentScopeSymbolTable.put(variableName.image, variableSymbol);
-                symbolTable.put(currentScope, currentScopeSymbolTable);
-            }  else {
-                node.childrenAccept(this, variableSymbol);
+                default:
+                    count(assignedNode);
+                    performArithmatic(assignedNode, variableSymbol);
             }
         } else {
-            errorList.add(new ErrorMessage(variableName.beginLine, variableName.beginColumn, "Variable \"" + variableName.image + "\" not declared in currentScope \"" + currentScope + "\" or \"Programme\""));
-        }
-        return null;
-    }
-
-    //Place the symbol into the correct scope
-    private void updateSymbol(String symbolName, Symbol symbol) {
-        HashMap<String, Symbol> tempMap;
-        if (symbol.getScope().equals(currentScope)) {
-            tempMap = symbolTable.get(currentScope);
-            tempMap.put(symbolName, symbol);
-            symbolTable.put(currentScope, tempMap);
-        } else {
-            tempMap = symbolTable.get(symbol.getScope());
-            tempMap.put(symbolName, symbol);
-            symbolTable.put(symbol.getScope(), tempMap);
+            error(variableName, "Variable \"" + name + "\" not declared in currentScope \"" + currentScope.getName() + "\" or \"Programme\"");
         }
     }
 
     private void isSematicError() {
-        System.out.println("Semantic Check Results");
+        if (!out.isEnabled()) {
+            return;
+        }
+        out.println("Semantic Check Results");
         if (functionsNotCalled > 0) {
-            System.out.println(functionsNotCalled + " function(s) are declared but not used.");
+            out.println(functionsNotCalled + " function(s) are declared but not used.");
         }
         if (variablesNotWritten.size() > 0) {
             StringBuilder notWrittenVariables = new StringBuilder();
-            System.out.println(variablesNotWritten.size() + " variable(s) have not been initialised:");
+            out.println(variablesNotWritten.size() + " variable(s) have not been initialised:");
             for(String variable: variablesNotWritten){
                 notWrittenVariables.append(variable).append(",");
             }
             notWrittenVariables.deleteCharAt(notWrittenVariables.length()-1);
-            System.out.println(notWrittenVariables.toString());
+            out.println(notWrittenVariables.toString());
         }
         if (variablesNotRead.size() > 0) {
             StringBuilder notReadVariables = new StringBuilder();
-            System.out.println(variablesNotRead.size() + " variable(s) have not been accessed:");
+            out.println(variablesNotRead.size() + " variable(s) have not been accessed:");
             for(String variable: variablesNotRead){
                 notReadVariables.append(variable).append(",");
             }
             notReadVariables.deleteCharAt(notReadVariables.length()-1);
-            System.out.println(notReadVariables.toString());
+            out.println(notReadVariables.toString());
         }
     }
 
@@ -614,9 +748,12 @@ public class Visitor implements CCALParserVisitor {
         }
         errorList.clear();
         errorList.addAll(map.values()); //account for the nested calls from a parent node to add the same message twice
-        System.out.println(errorList.size() + " error(s).");
+        if (!out.isEnabled()) {
+            return;
+        }
+        out.println(errorList.size() + " error(s).");
         for (ErrorMessage errorMessage : errorList) {
-            System.out.println(errorMessage + "\n");
+            out.println(errorMessage + "\n");
         }
     }
 
@@ -635,173 +772,137 @@ public class Visitor implements CCALParserVisitor {
     }
 
     //Evaluate two sides of boolean operation eg. greater than, equals
-    private void isValidBooleanOperation(Node parentNode, Object data) {
+    private void isValidBooleanOperation(int parentNode) {
         String leftSymbolType = "";
-        Node leftNode = parentNode.jjtGetChild(0);
-        Token leftToken = (Token) parentNode.jjtGetChild(0).jjtAccept(this, null);
-        if (leftNode instanceof ASTVariable) {
+        int leftNode = tree.child(parentNode, 0);
+        String leftToken = tree.image(leftNode);
+        int leftKind = tree.kind(leftNode);
+        if (leftKind == JJTVARIABLE) {
             // check if var or const has been declared before
-            Symbol leftSymbol = symbolTable.get(currentScope).get(leftToken.image);
-            if (leftSymbol == null) {
-                leftSymbol = symbolTable.get(PROGRAMME).get(leftToken.image);
-            }
+            Symbol leftSymbol = resolve(leftNode);
             if (leftSymbol == null) {
                 // error if var or const has not been declared before
-                errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, leftToken.image + "\" not declared in any scope \""));
+                error(leftNode, leftToken + "\" not declared in any scope \"");
             } else {
-                leftSymbolType = leftSymbol.getType().image;
-                leftSymbol.setIsRead(true);
-                updateSymbol(leftToken.image, leftSymbol);
+                leftSymbolType = leftSymbol.getType();
+                markRead(leftSymbol);
 
-                if (leftSymbol.getValues().size() == 0 && !leftSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                        errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, leftToken.image + "\" has no value in scope \"" + currentScope + "\""));
+                if (!isWritten(leftSymbol) && !leftSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                        error(leftNode, leftToken + "\" has no value in scope \"" + currentScope.getName() + "\"");
                 }
             }
-        } else if (leftNode instanceof ASTDigit) {
-            leftSymbolType = INTEGER;
-        } else if (leftNode instanceof ASTBoolean) {
-            leftSymbolType = BOOLEAN;
+        } else if (Operators.isLiteral(leftKind)) {
+            leftSymbolType = Operators.resultType(leftKind);
+        } else {
+            visit(leftNode); //a nested comparison or expression
         }
 
-        Node rightNode = parentNode.jjtGetChild(1);
-        Token rightToken = (Token) parentNode.jjtGetChild(1).jjtAccept(this, null);
-        if (rightNode instanceof ASTVariable) {
+        int rightNode = tree.child(parentNode, 1);
+        String rightToken = tree.image(rightNode);
+        int rightKind = tree.kind(rightNode);
+        if (rightKind == JJTVARIABLE) {
             // check if var or const has been declared before
-            Symbol rightSymbol = symbolTable.get(currentScope).get(rightToken.image);
-            if (rightSymbol == null) {
-                rightSymbol = symbolTable.get(PROGRAMME).get(rightToken.image);
-            }
+            Symbol rightSymbol = resolve(rightNode);
             if (rightSymbol == null) {
                 // error if var or const has not been declared before
-                errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, "VAR or CONST \"" + rightToken.image + "\" not declared in any scope \""));
-            } else if (rightSymbol.getValues().size() == 0 && !rightSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                    errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, "VAR \"" + rightToken.image + "\" has no value in current scope \"" + currentScope + "\""));
-                rightSymbol.setIsRead(true);
-                updateSymbol(leftToken.image, rightSymbol);
-            } else if (!rightSymbol.getType().image.equals(leftSymbolType)) {
+                error(leftNode, "VAR or CONST \"" + rightToken + "\" not declared in any scope \"");
+            } else if (!isWritten(rightSymbol) && !rightSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                    error(leftNode, "VAR \"" + rightToken + "\" has no value in current scope \"" + currentScope.getName() + "\"");
+                markRead(rightSymbol);
+            } else if (!rightSymbol.getType().equals(leftSymbolType)) {
                 // error if is not a boolean
-                errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, rightSymbol.getSymbolType() + " \"" + rightToken.image + "\" is not of type " + leftSymbolType));
+                error(leftNode, rightSymbol.getSymbolType() + " \"" + rightToken + "\" is not of type " + leftSymbolType);
             }
 
-        } else if ((rightNode instanceof ASTDigit && !leftSymbolType.equals(INTEGER)) || (rightNode instanceof ASTBoolean && !leftSymbolType.equals(BOOLEAN))) {
+        } else if (Operators.isLiteral(rightKind) && !Operators.resultType(rightKind).equals(leftSymbolType)) {
             // error if number
-            errorList.add(new ErrorMessage(leftToken.beginLine, leftToken.beginColumn, "Invalid boolean using \"" + rightToken.image));
-        }
-        evaluateChildCondition(parentNode, data);
-    }
-
-    private void evaluateChildCondition(Node parentNode, Object data) {
-        //Allow for inner evaluation of child comparisons
-        if (parentNode instanceof ASTAnd) {
-            ASTAnd node = (ASTAnd) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTOr) {
-            ASTOr node = (ASTOr) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTGreaterThan) {
-            ASTGreaterThan node = (ASTGreaterThan) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTGreaterThanEqual) {
-            ASTGreaterThanEqual node = (ASTGreaterThanEqual) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTLessThan) {
-            ASTLessThan node = (ASTLessThan) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTLessThanEqual) {
-            ASTLessThanEqual node = (ASTLessThanEqual) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTEqual) {
-            ASTEqual node = (ASTEqual) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTNotEqual) {
-            ASTNotEqual node = (ASTNotEqual) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTNot) {
-            ASTNot node = (ASTNot) parentNode;
-            node.childrenAccept(this, data);
-        }
-    }
-
-    private void performArithmatic(Node parentNode, Object data) {
-        boolean isLeftNeg =false;
-        boolean isRightNeg = false;
-        Token leftToken = (Token) parentNode.jjtGetChild(0).jjtAccept(this, null);
-        if(leftToken == null) {
-            leftToken = (Token) parentNode.jjtGetChild(1).jjtGetChild(0).jjtAccept(this, null);
-            isLeftNeg = !isLeftNeg;
-        }
-        Node leftNode = parentNode.jjtGetChild(0);
-        if (isValidArithmetic(leftNode, leftToken)) {
-            evaluateArithmaticChildren(parentNode, data);
-        }
-
-        Token rightToken = (Token) parentNode.jjtGetChild(1).jjtAccept(this, null);
-        if(rightToken == null) {
-            rightToken = (Token) parentNode.jjtGetChild(1).jjtGetChild(0).jjtAccept(this, null);
-            isRightNeg = !isRightNeg;
-        }
-        Node rightNode = parentNode.jjtGetChild(1);
-        if (isValidArithmetic(rightNode, rightToken)) {
-            evaluateArithmaticChildren(parentNode, data);
-        }
-        String type = INTEGER;
-        String leftValue = leftToken.image;
-        String rightValue = rightToken.image;
-        if(isLeftNeg) leftValue = "-"+ leftToken.image;
-        if(isRightNeg) rightValue = "-"+ rightToken.image;
-        if(data != null){
-            Symbol symbol = (Symbol) data;
-            String binOP = "-";
-            if(parentNode instanceof ASTAdd){
-                binOP = "+";
-            }
-            Variable variable = new Variable(type,leftValue + binOP + rightValue);
-            symbol.addValue(symbol.getName().toString(),variable);
+            error(leftNode, "Invalid boolean using \"" + rightToken);
+        } else if (tree.firstChild(rightNode) != FlatTree.NONE) {
+            visit(rightNode);
+        }
+    }
 
+    //Check both sides of an addition or subtraction, each side is visited once. symbol is what the sum is assigned
+    //to, null if it isn't assigned.
+    private void performArithmatic(int parentNode, Symbol symbol) {
+        String type = Operators.operandType(tree.kind(parentNode));
+        String leftValue = arithmeticOperand(tree.child(parentNode, 0), type);
+        String rightValue = arithmeticOperand(tree.child(parentNode, 1), type);
+        if(symbol != null){
+            String binOP = Operators.symbol(tree.kind(parentNode));
+            assign(symbol, symbol.getName(), INTEGER, leftValue + binOP + rightValue);
         }
     }
 
-    private void evaluateArithmaticChildren(Node parentNode, Object data) {
-        if (parentNode instanceof ASTAdd) {
-            ASTAdd node = (ASTAdd) parentNode;
-            node.childrenAccept(this, data);
-        } else if (parentNode instanceof ASTSubtract) {
-            ASTSubtract node = (ASTSubtract) parentNode;
-            node.childrenAccept(this, data);
+    //Check one side of a sum against the type the operator takes, visiting it if it's an expression itself, and
+    //return how it's written
+    private String arithmeticOperand(int node, String type) {
+        if (Operators.isOperand(tree.kind(node))) {
+            isValidArithmetic(node, type);
+        } else if (tree.firstChild(node) != FlatTree.NONE) {
+            visit(node); //the inner expression isn't what gets assigned
         }
+        return expressionText(node);
     }
 
-    //Will throw appropriate errors and return back if it's something to recurse into
-    private boolean isValidArithmetic(Node node, Token token) {
-        if (node instanceof ASTVariable) {
-            HashMap<String, Symbol> currentScopeSymbolTable = symbolTable.get(currentScope);
-            Symbol currentSymbol = currentScopeSymbolTable.get(token.image);
-            if (currentSymbol == null) {
-                currentScopeSymbolTable = symbolTable.get(PROGRAMME);
-                currentSymbol = currentScopeSymbolTable.get(token.image);
-            }
+    //Source text of an operand, eg. -x or a+b, read straight from the tokens without visiting anything
+    private String expressionText(int node) {
+        int kind = tree.kind(node);
+        if (kind == JJTFUNCTIONCALL) {
+            return expressionText(tree.firstChild(node));
+        } else if (Operators.arity(kind) == 1) {
+            return Operators.symbol(kind) + expressionText(tree.firstChild(node));
+        } else if (Operators.arity(kind) == 2) {
+            return expressionText(tree.child(node, 0)) + Operators.symbol(kind) + expressionText(tree.child(node, 1));
+        }
+        String image = tree.image(node);
+        return image == null ? "" : image;
+    }
+
+    //Will throw appropriate errors for a variable, digit or boolean operand that isn't of the given type
+    private void isValidArithmetic(int node, String type) {
+        int kind = tree.kind(node);
+        String image = tree.image(node);
+        if (kind == JJTVARIABLE) {
+            Symbol currentSymbol = resolve(node);
             if (currentSymbol == null) {
-                errorList.add(new ErrorMessage(token.beginLine, token.beginColumn, "VAR or Const \"" + token.image + "\" not declared in currentScope \"" + currentScope + "\" or \"Programme\""));
-                return false;
-            } else if (currentSymbol.getValues().size() == 0 && !currentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
-                    errorList.add(new ErrorMessage(token.beginLine, token.beginColumn, "VAR \"" + token.image + "\" has no value in currentScope \"" + currentScope + "\""));
-                    return false;
-            } else if (!currentSymbol.getType().image.equals(INTEGER)) {
-                errorList.add(new ErrorMessage(token.beginLine, token.beginColumn, "Cannot add variable \"" + token.image + "\". Not of type Digit"));
-                return false;
+                error(node, "VAR or Const \"" + image + "\" not declared in currentScope \"" + currentScope.getName() + "\" or \"Programme\"");
+            } else if (!isWritten(currentSymbol) && !currentSymbol.getSymbolType().equals(SymbolType.PARAM)) {
+                    error(node, "VAR \"" + image + "\" has no value in currentScope \"" + currentScope.getName() + "\"");
+            } else if (!currentSymbol.getType().equals(type)) {
+                error(node, "Cannot add variable \"" + image + "\". Not of type Digit");
             } else {
                 // set isRead value
-                currentSymbol.setIsRead(true);
-                updateSymbol(token.image,currentSymbol);
+                markRead(currentSymbol);
             }
-        } else if (node instanceof ASTDigit) {
-            return false;
-        } else if (node instanceof ASTBoolean) {
-            // error if first child node is a boolean
-            errorList.add(new ErrorMessage(token.beginLine, token.beginColumn, "Cannot add value \"" + token.image + "\" (type boolean)"));
-            return false;
+        } else if (!Operators.resultType(kind).equals(type)) {
+            // error if the literal is of the wrong type, eg. a boolean
+            error(node, "Cannot add value \"" + image + "\" (type " + Operators.resultType(kind) + ")");
+        }
+    }
+
+    private static class GlobalEffects {
+        final List<GlobalWrite> writes = new ArrayList<>();
+        final Set<Symbol> written = new HashSet<>();
+        final Set<Symbol> read = new HashSet<>();
+        final Set<Symbol> called = new HashSet<>();
+        //globals the body treated as having no value, the body is only valid if no earlier function writes them
+        final Set<Symbol> assumedUnwritten = new HashSet<>();
+        int signatureErrors;
+    }
+
+    private static class GlobalWrite {
+        final Symbol symbol;
+        final String name;
+        final String type;
+        final String value;
+
+        GlobalWrite(Symbol symbol, String name, String type, String value) {
+            this.symbol = symbol;
+            this.name = name;
+            this.type = type;
+            this.value = value;
         }
-        return true;
     }
 
     private class ErrorMessage {
@@ -820,4 +921,4 @@ public class Visitor implements CCALParserVisitor {
             return "Error at line " + lineNumber + ", column " + columnNumber + ":\n" + errorMessage;
         }
     }
-}
\ No newline at end of file
+}
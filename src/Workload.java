@@ -0,0 +1,88 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+//A programme a tool runs over: a .ccal file, or generated source with a name to report it by. The checks and
+//benchmarks take files from the command line and otherwise run their own generated workloads, the checks after the
+//test*.ccal programmes. Generated source is only built when it is asked for.
+final class Workload {
+
+    private final String name;
+    private final Supplier<String> source; //null for a file
+
+    private Workload(String name, Supplier<String> source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    static Workload file(String path) {
+        return new Workload(path, null);
+    }
+
+    static Workload generated(String name, Supplier<String> source) {
+        return new Workload(name, source);
+    }
+
+    //count ProgramGenerator.generateRandom programmes of so many statements, named after their seeds from 0
+    static List<Workload> random(String name, int count, int statements) {
+        List<Workload> workloads = new ArrayList<>();
+        for (int seed = 0; seed < count; seed++) {
+            long from = seed;
+            workloads.add(generated(name + " " + seed, () -> ProgramGenerator.generateRandom(from, statements)));
+        }
+        return workloads;
+    }
+
+    //The test*.ccal programmes in the working directory, by name
+    static List<Workload> tests() {
+        List<Workload> workloads = new ArrayList<>();
+        File[] tests = new File(".").listFiles((directory, name) -> name.startsWith("test") && name.endsWith(".ccal"));
+        if (tests != null) {
+            Arrays.sort(tests);
+            for (File test : tests) {
+                workloads.add(file(test.getName()));
+            }
+        }
+        return workloads;
+    }
+
+    //The files given, or when there are none the generated workloads, after the test programmes if tests is set
+    static List<Workload> select(List<String> files, boolean tests, List<Workload> generated) {
+        List<Workload> workloads = new ArrayList<>();
+        if (!files.isEmpty()) {
+            for (String path : files) {
+                workloads.add(file(path));
+            }
+            return workloads;
+        }
+        if (tests) {
+            workloads.addAll(tests());
+        }
+        workloads.addAll(generated);
+        return workloads;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isFile() {
+        return source == null;
+    }
+
+    //The source text of a generated workload, null for a file
+    String getSource() {
+        return source == null ? null : source.get();
+    }
+
+    FlatTree parse() throws IOException, ParseException {
+        return source == null ? CCALParser.parse(new File(name)) : CCALParser.parse(source.get());
+    }
+
+    SimpleNode parseNodes() throws IOException, ParseException {
+        return source == null ? CCALParser.parseNodes(new File(name)) : CCALParser.parseNodes(source.get());
+    }
+}
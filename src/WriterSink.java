@@ -0,0 +1,54 @@
+import java.io.*;
+
+//Buffered sink over any writer or stream, lines are only pushed out on flush() or when the buffer fills up
+class WriterSink implements ReportSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Writer writer;
+
+    WriterSink(Writer writer) {
+        this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+    }
+
+    WriterSink(OutputStream out) {
+        this(new OutputStreamWriter(out));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void print(String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void println(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void println() {
+        print("\n");
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}